@@ -10,14 +10,15 @@ import io
 from datetime import datetime, timezone
 from typing import AsyncIterator
 
-from fastapi import APIRouter, UploadFile, File, HTTPException
-from fastapi.responses import FileResponse, StreamingResponse
+from fastapi import APIRouter, UploadFile, File, Header, HTTPException, Request
+from fastapi.responses import FileResponse, Response, StreamingResponse
 
 from app.settings import settings
 from app.llm import ollama_chat_with_image, ollama_chat_with_image_v2, LLMUnavailableError
 from app.ocr_v2 import build_passport_v2_response, build_passport_v2_error_response
 from app.events import event_bus
 from app.db import get_db
+from app.idempotency import IDEMPOTENCY_HEADER, run_once
 from app.schemas import AppErrorLogIn
 
 
@@ -62,6 +63,30 @@ def normalize_mrz_container(container: dict) -> dict:
     return updated
 
 
+MRZ_CHECK_DIGIT_KEYS = (
+    "document_number_check_digit",
+    "date_of_birth_check_digit",
+    "date_of_expiry_check_digit",
+)
+
+
+def _extract_check_digits(src: dict) -> dict[str, str]:
+    """
+    Контрольные цифры MRZ (ICAO 9303), если модель их вернула: клиент по ним проверяет
+    и исправляет ключи до NFC. Передаётся один символ MRZ как есть (буква вместо цифры —
+    типичная ошибка OCR, её исправляет клиент), остальное отбрасывается.
+    """
+    digits: dict[str, str] = {}
+    for key in MRZ_CHECK_DIGIT_KEYS:
+        value = src.get(key)
+        if value is None:
+            continue
+        value = str(value).strip().upper()
+        if re.fullmatch(r"[0-9A-Z]", value):
+            digits[key] = value
+    return digits
+
+
 def extract_mrz(llm_text: str) -> dict | None:
     """
     Извлекает MRZ-поля, ожидаемые мобильным клиентом.
@@ -92,11 +117,13 @@ def extract_mrz(llm_text: str) -> dict | None:
                 date_of_expiry = parse_date_to_yymmdd(str(src["date_of_expiry"]))
                 if date_of_birth is None or date_of_expiry is None:
                     continue
-                return normalize_mrz_container({
+                mrz = {
                     "document_number": str(src["document_number"]),
                     "date_of_birth": date_of_birth,
                     "date_of_expiry": date_of_expiry,
-                })
+                }
+                mrz.update(_extract_check_digits(src))
+                return normalize_mrz_container(mrz)
     except Exception:
         pass
 
@@ -251,8 +278,18 @@ async def _recognize_v2_impl(image: UploadFile):
 
 
 @router.post("/recognize")
-async def recognize_passport(image: UploadFile = File(...)):
-    return await _recognize_impl(image)
+async def recognize_passport(
+    image: UploadFile = File(...),
+    idempotency_key: str | None = Header(default=None, alias=IDEMPOTENCY_HEADER),
+):
+    # A retried upload returns the first recognition instead of running the LLM again;
+    # errors are not stored, so a retry after one still recognizes.
+    return await run_once(
+        "recognize",
+        idempotency_key,
+        lambda: _recognize_impl(image),
+        should_store=lambda result: "error" not in result,
+    )
 
 
 @router.post("/ocr/passport/v2")
@@ -264,7 +301,47 @@ async def recognize_passport_v2(image: UploadFile = File(...)):
 # NFC
 # ============================================================
 
-async def _nfc_impl(payload: dict):
+NFC_MULTIPART = "multipart/form-data"
+
+
+async def _read_nfc_body(request: Request) -> tuple[dict, bytes | None]:
+    """
+    Тело /nfc: JSON или multipart/form-data мобилки (части dg1, dg2, mrz_keys, format),
+    где DG2 идёт без base64. На другие типы содержимого отвечает 415, чтобы клиент
+    повторил запрос в JSON.
+    """
+    content_type = request.headers.get("content-type", "").split(";")[0].strip().lower()
+    if content_type == NFC_MULTIPART:
+        form = await request.form()
+        dg2 = form.get("dg2")
+        if dg2 is None or isinstance(dg2, str):
+            raise HTTPException(status_code=422, detail="Invalid dg2")
+        try:
+            mrz_keys = json.loads(form.get("mrz_keys") or "")
+        except (TypeError, ValueError):
+            mrz_keys = None
+        if not isinstance(mrz_keys, dict):
+            raise HTTPException(status_code=422, detail="Invalid mrz_keys")
+        payload = {"mrz_keys": mrz_keys, "format": form.get("format") or "raw"}
+        return payload, await dg2.read()
+    if content_type and content_type != "application/json" and not content_type.endswith("+json"):
+        raise HTTPException(
+            status_code=415,
+            detail=(
+                f"Unsupported content type {content_type}: "
+                f"expected application/json or {NFC_MULTIPART}"
+            ),
+        )
+    try:
+        payload = json.loads(await request.body())
+    except ValueError:
+        payload = None
+    if not isinstance(payload, dict):
+        raise HTTPException(status_code=422, detail="Invalid JSON body")
+    return payload, None
+
+
+async def _nfc_impl(payload: dict, dg2_bytes: bytes | None = None):
     scan_id = str(uuid.uuid4())
 
     # Extract passport/MRZ data - support multiple field names for compatibility
@@ -276,13 +353,20 @@ async def _nfc_impl(payload: dict):
     if not isinstance(passport, dict) or not passport:
         raise HTTPException(status_code=422, detail="Invalid passport")
 
-    # Extract face image - support raw DG2 format from NFC chip
+    # Extract face image - support raw DG2 format from NFC chip (base64 in JSON or multipart)
     face_b64 = payload.get("face_image_b64")
     dg2_b64 = payload.get("dg2_raw_b64")
 
     face_bytes = None
 
-    if isinstance(face_b64, str) and face_b64:
+    if dg2_bytes is not None:
+        face_bytes = _extract_face_from_dg2(dg2_bytes)
+        if face_bytes is None:
+            raise HTTPException(
+                status_code=422,
+                detail="Invalid dg2: could not extract face image from DG2",
+            )
+    elif isinstance(face_b64, str) and face_b64:
         try:
             face_bytes = base64.b64decode(face_b64, validate=True)
         except (binascii.Error, ValueError) as e:
@@ -365,16 +449,27 @@ async def _nfc_impl(payload: dict):
 
 
 @router.post("/nfc")
-async def passport_nfc(payload: dict):
-    return await _nfc_impl(payload)
+async def passport_nfc(
+    request: Request,
+    idempotency_key: str | None = Header(default=None, alias=IDEMPOTENCY_HEADER),
+):
+    payload, dg2_bytes = await _read_nfc_body(request)
+    # A retried upload returns the scan_id of the first one instead of storing a duplicate scan.
+    return await run_once("nfc", idempotency_key, lambda: _nfc_impl(payload, dg2_bytes))
 
 
 @router.get("/nfc/{scan_id}/face.jpg")
-async def get_nfc_face(scan_id: str):
+async def get_nfc_face(scan_id: str, request: Request):
     face_path = os.path.join(settings.files_dir, f"{scan_id}_face.jpg")
     if not os.path.exists(face_path):
         raise HTTPException(status_code=404, detail="Face image not found")
-    return FileResponse(face_path, media_type="image/jpeg")
+    # Validator for the client face cache: a revalidation costs a 304 instead of the JPEG.
+    stat = os.stat(face_path)
+    etag = f'"{stat.st_mtime_ns:x}-{stat.st_size:x}"'
+    if_none_match = request.headers.get("if-none-match", "")
+    if etag in [tag.strip() for tag in if_none_match.split(",")]:
+        return Response(status_code=304, headers={"ETag": etag})
+    return FileResponse(face_path, media_type="image/jpeg", headers={"ETag": etag})
 
 
 # ============================================================
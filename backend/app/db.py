@@ -34,6 +34,19 @@ DDL = [
     );
     """,
 
+    # -------------------------
+    # Idempotency keys of retried POSTs (/nfc, /recognize)
+    # -------------------------
+    """
+    CREATE TABLE IF NOT EXISTS idempotency_keys (
+        endpoint TEXT NOT NULL,
+        idempotency_key TEXT NOT NULL,
+        ts_utc TEXT NOT NULL,
+        response_json TEXT NOT NULL,
+        PRIMARY KEY (endpoint, idempotency_key)
+    );
+    """,
+
     # -------------------------
     # HTTP API request logs
     # -------------------------
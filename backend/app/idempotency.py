@@ -0,0 +1,95 @@
+from __future__ import annotations
+
+import asyncio
+import json
+from datetime import datetime, timedelta, timezone
+from typing import Any, Awaitable, Callable, Dict, Optional, Tuple
+
+from app.db import get_db
+
+
+IDEMPOTENCY_HEADER = "Idempotency-Key"
+KEY_TTL = timedelta(hours=24)
+MAX_KEY_LENGTH = 128
+
+
+class _KeyLock:
+    """Lock for one (endpoint, key) pair, dropped once nobody waits on it."""
+
+    def __init__(self) -> None:
+        self.lock = asyncio.Lock()
+        self.users = 0
+
+
+_locks: Dict[Tuple[str, str], _KeyLock] = {}
+
+
+async def run_once(
+    endpoint: str,
+    key: Optional[str],
+    compute: Callable[[], Awaitable[Dict[str, Any]]],
+    should_store: Callable[[Dict[str, Any]], bool] = lambda result: True,
+) -> Dict[str, Any]:
+    """
+    Runs `compute` once per Idempotency-Key: a retried POST gets the stored response of the first
+    attempt instead of creating another scan or running the LLM again.
+
+    Attempts with the same key are serialized, so a retry that arrives while the first attempt is
+    still running waits for its result. Requests without a usable key are always computed; results
+    rejected by `should_store` (and exceptions) are not remembered, so a retry computes again.
+    """
+    key = (key or "").strip()
+    if not key or len(key) > MAX_KEY_LENGTH:
+        return await compute()
+
+    slot = _locks.setdefault((endpoint, key), _KeyLock())
+    slot.users += 1
+    try:
+        async with slot.lock:
+            stored = await _load(endpoint, key)
+            if stored is not None:
+                return stored
+            result = await compute()
+            if should_store(result):
+                await _store(endpoint, key, result)
+            return result
+    finally:
+        slot.users -= 1
+        if slot.users == 0:
+            _locks.pop((endpoint, key), None)
+
+
+async def _load(endpoint: str, key: str) -> Optional[Dict[str, Any]]:
+    cutoff = (datetime.now(timezone.utc) - KEY_TTL).isoformat()
+    async with get_db() as conn:
+        cursor = await conn.execute(
+            """
+            SELECT response_json FROM idempotency_keys
+            WHERE endpoint = ? AND idempotency_key = ? AND ts_utc >= ?
+            """,
+            (endpoint, key, cutoff),
+        )
+        row = await cursor.fetchone()
+    return json.loads(row[0]) if row else None
+
+
+async def _store(endpoint: str, key: str, result: Dict[str, Any]) -> None:
+    now = datetime.now(timezone.utc)
+    async with get_db() as conn:
+        await conn.execute(
+            "DELETE FROM idempotency_keys WHERE ts_utc < ?",
+            ((now - KEY_TTL).isoformat(),),
+        )
+        await conn.execute(
+            """
+            INSERT OR REPLACE INTO idempotency_keys (
+                endpoint,
+                idempotency_key,
+                ts_utc,
+                response_json
+            )
+            VALUES (?, ?, ?, ?)
+            """,
+            (endpoint, key, now.isoformat(), json.dumps(result, ensure_ascii=False)),
+        )
+        await conn.commit()
@@ -24,6 +24,8 @@ def build_prompt_for_passport_recognition() -> str:
         "Task: read the passport image and extract MRZ keys required for BAC.\n"
         "Return ONLY a JSON object with the exact keys:\n"
         "document_number, date_of_birth, date_of_expiry\n"
+        "If the MRZ check digit printed after a field is readable, also return it as\n"
+        "document_number_check_digit, date_of_birth_check_digit, date_of_expiry_check_digit.\n"
         "Use YYMMDD for dates. No markdown, no extra text.\n"
     )
 
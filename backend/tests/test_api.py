@@ -82,6 +82,65 @@ def test_recognize_mobile_success(client, monkeypatch):
     }
 
 
+def test_recognize_mobile_passes_check_digits(client, monkeypatch):
+    async def fake_ollama(image_bytes: bytes):
+        return "req-1", json.dumps(
+            {
+                "document_number": "L898902C3",
+                "date_of_birth": "740812",
+                "date_of_expiry": "120415",
+                "document_number_check_digit": 6,
+                "date_of_birth_check_digit": "2",
+                "date_of_expiry_check_digit": "s",
+                "personal_number_check_digit": "1",
+            }
+        )
+
+    monkeypatch.setattr(api_module, "ollama_chat_with_image", fake_ollama)
+
+    response = client.post(
+        "/recognize",
+        files={"image": ("passport.jpg", b"fake-image", "image/jpeg")},
+    )
+
+    assert response.status_code == 200
+    assert response.json() == {
+        "document_number": "L898902C3",
+        "date_of_birth": "740812",
+        "date_of_expiry": "120415",
+        "document_number_check_digit": "6",
+        "date_of_birth_check_digit": "2",
+        "date_of_expiry_check_digit": "S",
+    }
+
+
+def test_recognize_mobile_drops_malformed_check_digits(client, monkeypatch):
+    async def fake_ollama(image_bytes: bytes):
+        return "req-1", json.dumps(
+            {
+                "document_number": "L898902C3",
+                "date_of_birth": "740812",
+                "date_of_expiry": "120415",
+                "document_number_check_digit": "66",
+                "date_of_birth_check_digit": None,
+            }
+        )
+
+    monkeypatch.setattr(api_module, "ollama_chat_with_image", fake_ollama)
+
+    response = client.post(
+        "/recognize",
+        files={"image": ("passport.jpg", b"fake-image", "image/jpeg")},
+    )
+
+    assert response.status_code == 200
+    assert response.json() == {
+        "document_number": "L898902C3",
+        "date_of_birth": "740812",
+        "date_of_expiry": "120415",
+    }
+
+
 def test_recognize_passport_v2_success(client, monkeypatch):
     async def fake_ollama_v2(image_bytes: bytes):
         return "req-v2-1", json.dumps(
@@ -253,6 +312,11 @@ def test_store_nfc_and_fetch_face_integration(client):
     face_response = client.get(f"/nfc/{scan_id}/face.jpg")
     assert face_response.status_code == 200
     assert face_response.content == face_bytes
+    etag = face_response.headers["etag"]
+    revalidated = client.get(f"/nfc/{scan_id}/face.jpg", headers={"If-None-Match": etag})
+    assert revalidated.status_code == 304
+    assert revalidated.headers["etag"] == etag
+    assert revalidated.content == b""
     rows = fetch_rows(
         settings_module.settings.db_path,
         "SELECT * FROM nfc_scans WHERE scan_id = ?",
@@ -276,6 +340,72 @@ def test_store_nfc_and_fetch_face_integration(client):
     ]
 
 
+def test_store_nfc_retry_with_same_idempotency_key_returns_original_scan(client):
+    payload = {
+        "passport": {"document_number": "123456789"},
+        "face_image_b64": base64.b64encode(JPEG_BYTES).decode("ascii"),
+    }
+    headers = {"Idempotency-Key": "6f1c2a9e-retry"}
+
+    first = client.post("/nfc", json=payload, headers=headers)
+    retry = client.post("/nfc", json=payload, headers=headers)
+    other = client.post("/nfc", json=payload, headers={"Idempotency-Key": "another-key"})
+
+    assert first.status_code == 200
+    assert retry.status_code == 200
+    assert retry.json() == first.json()
+    assert other.json()["scan_id"] != first.json()["scan_id"]
+    rows = fetch_rows(settings_module.settings.db_path, "SELECT scan_id FROM nfc_scans")
+    assert len(rows) == 2
+
+
+def test_store_nfc_failed_attempt_is_not_remembered(client):
+    headers = {"Idempotency-Key": "bad-then-good"}
+
+    invalid = client.post("/nfc", json={"passport": {}}, headers=headers)
+    valid = client.post(
+        "/nfc",
+        json={
+            "passport": {"document_number": "123456789"},
+            "face_image_b64": base64.b64encode(JPEG_BYTES).decode("ascii"),
+        },
+        headers=headers,
+    )
+
+    assert invalid.status_code == 422
+    assert valid.status_code == 200
+    assert "scan_id" in valid.json()
+
+
+def test_recognize_retry_with_same_idempotency_key_runs_llm_once(client, monkeypatch):
+    calls = []
+
+    async def fake_ollama(image_bytes: bytes):
+        calls.append(image_bytes)
+        if len(calls) == 1:
+            raise api_module.LLMUnavailableError("LLM is starting")
+        return "req-1", json.dumps(
+            {
+                "document_number": "123456789",
+                "date_of_birth": "1990-01-01",
+                "date_of_expiry": "2030-01-01",
+            }
+        )
+
+    monkeypatch.setattr(api_module, "ollama_chat_with_image", fake_ollama)
+    files = {"image": ("passport.jpg", b"fake-image", "image/jpeg")}
+    headers = {"Idempotency-Key": "recognize-retry"}
+
+    failed = client.post("/recognize", files=files, headers=headers)
+    recognized = client.post("/recognize", files=files, headers=headers)
+    retried = client.post("/recognize", files=files, headers=headers)
+
+    assert "error" in failed.json()
+    assert recognized.json()["document_number"] == "123456789"
+    assert retried.json() == recognized.json()
+    assert len(calls) == 2
+
+
 def _fetch_error_log(db_path: str, request_id: str):
     with sqlite3.connect(db_path) as conn:
         conn.row_factory = sqlite3.Row
@@ -427,6 +557,53 @@ def test_store_nfc_raw_format_with_mrz_keys_and_dg2(client):
     assert payload["passport"]["mrz"]["date_of_expiry"] == "310503"
 
 
+def test_store_nfc_multipart_raw_format_extracts_face_from_dg2(client):
+    """Test the multipart upload of the mobile client: DG1/DG2 as binary parts, mrz_keys as JSON."""
+    mrz_keys = {
+        "document_number": "764507757",
+        "date_of_birth": "810809",
+        "date_of_expiry": "310503",
+    }
+    response = client.post(
+        "/nfc",
+        files={
+            "dg1": ("dg1.bin", b"dg1-data", "application/octet-stream"),
+            "dg2": ("dg2.bin", DG2_WITH_JPEG, "application/octet-stream"),
+            "mrz_keys": (None, json.dumps(mrz_keys), "application/json"),
+        },
+        data={"format": "raw"},
+    )
+
+    assert response.status_code == 200
+    payload = response.json()
+    assert payload["passport"]["mrz"]["document_number"] == "764507757"
+    face_response = client.get(payload["face_image_url"].removeprefix("/api"))
+    assert face_response.content == JPEG_BYTES
+
+
+def test_store_nfc_multipart_without_dg2_returns_error_payload(client):
+    response = client.post(
+        "/nfc",
+        files={"mrz_keys": (None, json.dumps({"document_number": "1"}), "application/json")},
+        data={"format": "raw"},
+    )
+
+    assert response.status_code == 422
+    assert response.json() == {"detail": "Invalid dg2"}
+
+
+def test_store_nfc_unsupported_content_type_returns_415(client):
+    response = client.post(
+        "/nfc",
+        content=b"dg2",
+        headers={"Content-Type": "application/octet-stream"},
+    )
+
+    assert response.status_code == 415
+    rows = fetch_rows(settings_module.settings.db_path, "SELECT * FROM nfc_scans")
+    assert rows == []
+
+
 def test_store_nfc_raw_format_extracts_face_from_dg2(client):
     """Test that face image is correctly extracted from DG2 and can be fetched."""
     response = client.post(
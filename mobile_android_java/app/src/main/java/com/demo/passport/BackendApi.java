@@ -1,47 +1,178 @@
 package com.demo.passport;
 
-import android.util.Base64;
+import android.content.ContentResolver;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.File;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import okhttp3.*;
 
 import java.io.IOException;
 
 public final class BackendApi {
-    private static final long DEFAULT_ERROR_REPORT_INTERVAL_MS = 5000;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    /** One connection per concurrent call type (recognize/nfc, face, errors) stays pooled between scans. */
+    private static final int MAX_IDLE_CONNECTIONS = 3;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final MediaType JPEG = MediaType.parse("image/jpeg");
+    private static final UploadQualityController uploadQuality = new UploadQualityController();
+    private static final GzipRequestInterceptor requestCompression = new GzipRequestInterceptor(
+            new HashSet<>(Arrays.asList("/nfc", "/errors")),
+            GzipRequestInterceptor.DEFAULT_MIN_BYTES,
+            BackendConfig::isRequestCompressionEnabled
+    );
+    private static final ConnectionWarmer connectionWarmer =
+            new ConnectionWarmer(ConnectionWarmer.DEFAULT_MIN_INTERVAL_MS);
     private static final OkHttpClient client = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .addInterceptor(PolicyCall.TIMEOUT_INTERCEPTOR)
+            .addInterceptor(requestCompression)
+            .eventListenerFactory(UploadMetricsListener.factory(uploadQuality, connectionWarmer))
+            // Defaults for untagged calls (warm-up); backend endpoints use their EndpointPolicy.
             .connectTimeout(120, TimeUnit.SECONDS)
             .writeTimeout(120, TimeUnit.SECONDS)
             .readTimeout(120, TimeUnit.SECONDS)
             .callTimeout(120, TimeUnit.SECONDS)
             .build();
-    private static final Gson gson = new Gson();
-    private static volatile long errorReportIntervalMs = DEFAULT_ERROR_REPORT_INTERVAL_MS;
-    private static volatile long lastErrorReportAtMs = 0;
+    private static final OkHttpClient http1Client = client.newBuilder()
+            .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+            .build();
+    private static final H2cFallbackInterceptor h2cFallback = new H2cFallbackInterceptor(http1Client);
+    private static final OkHttpClient h2cClient = buildH2cClient();
+    private static final Gson gson = ResponseAdapters.register(new GsonBuilder()).create();
+    private static final ErrorReporter errorReporter = new ErrorReporter(
+            BackendApi::postErrorReport,
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "error-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }),
+            ErrorReporter.DEFAULT_CAPACITY,
+            ErrorReporter.DEFAULT_FLUSH_THRESHOLD
+    );
     private static volatile DebugListener debugListener;
+    private static volatile String multipartRejectedBaseUrl;
 
     public interface Callback<T> {
         void onSuccess(T value);
         void onError(String message);
+
+        /**
+         * Called for every failed call with the reason attached; the default hands the message to
+         * {@link #onError(String)}. Override it to tell transient failures from rejected requests.
+         */
+        default void onFailure(Failure failure) {
+            onError(failure.message);
+        }
     }
 
+    /**
+     * Why a call failed: the message shown to the user and the HTTP status, if any response arrived.
+     */
+    public static final class Failure {
+        /** {@link #httpCode} when no response arrived (connection lost, timeout). */
+        static final int NO_RESPONSE = 0;
+
+        public final String message;
+        /** Status of the response, also for 2xx responses that could not be used; or {@link #NO_RESPONSE}. */
+        public final int httpCode;
+
+        Failure(String message, int httpCode) {
+            this.message = message;
+            this.httpCode = httpCode;
+        }
+
+        /**
+         * True for failures worth retrying later: no response at all, or HTTP 408, 429 or 5xx.
+         * Unusable responses and other 4xx will not go away on retry.
+         */
+        public boolean isTransient() {
+            return httpCode == NO_RESPONSE || httpCode == 408 || httpCode == 429 || httpCode >= 500;
+        }
+    }
+
+    /**
+     * Receives API responses for the debug panel. {@code rawResponse} is built only when
+     * {@link Supplier#get()} is called and is capped at {@link BackendConfig#getDebugCaptureMaxChars()}.
+     */
     public interface DebugListener {
-        void onDebugResponse(String source, String rawResponse);
+        void onDebugResponse(String source, Supplier<String> rawResponse);
     }
 
     public static void setDebugListener(DebugListener listener) {
         debugListener = listener;
     }
 
+    /**
+     * Opens a pooled connection to the backend ahead of the next call; cheap to call on every
+     * state transition since repeated calls within {@link ConnectionWarmer#DEFAULT_MIN_INTERVAL_MS} are ignored.
+     */
+    public static void prewarmConnection() {
+        HttpUrl baseUrl = HttpUrl.parse(BackendConfig.getBaseUrl());
+        if (baseUrl != null) {
+            connectionWarmer.warm(clientFor(baseUrl), BackendConfig.getBaseUrl());
+        }
+    }
+
+    /**
+     * Receives, for every finished call, whether it reused a pooled (warm) connection.
+     */
+    static void setConnectionReuseListener(ConnectionWarmer.Listener listener) {
+        connectionWarmer.setListener(listener);
+    }
+
+    /**
+     * Receives original and compressed sizes of every gzipped /nfc and /errors upload.
+     */
+    static void setCompressionListener(GzipRequestInterceptor.Listener listener) {
+        requestCompression.setListener(listener);
+    }
+
+    /**
+     * Network-adaptive settings for photo preprocessing, fed by measurements of previous calls.
+     */
+    static UploadQualityController getUploadQualityController() {
+        return uploadQuality;
+    }
+
     public static void recognizePassport(byte[] jpegBytes, Callback<Models.MRZKeys> cb) {
-        RequestBody fileBody = RequestBody.create(jpegBytes, MediaType.parse("image/jpeg"));
+        recognizePassport(RequestBody.create(jpegBytes, JPEG), cb);
+    }
+
+    /**
+     * Uploads the photo straight from disk: OkHttp copies the file through an Okio source
+     * while writing the multipart body, so the JPEG is never held on the heap.
+     */
+    public static void recognizePassport(File jpegFile, Callback<Models.MRZKeys> cb) {
+        recognizePassport(RequestBody.create(jpegFile, JPEG), cb);
+    }
+
+    /**
+     * Same as {@link #recognizePassport(File, Callback)} for photos exposed via a content Uri.
+     */
+    public static void recognizePassport(ContentResolver resolver, Uri jpegUri, Callback<Models.MRZKeys> cb) {
+        recognizePassport(new ContentUriRequestBody(resolver, jpegUri, JPEG), cb);
+    }
 
+    private static void recognizePassport(RequestBody fileBody, Callback<Models.MRZKeys> cb) {
         MultipartBody body = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
 
@@ -54,7 +185,7 @@ public final class BackendApi {
                 .post(body)
                 .build();
 
-        client.newCall(req).enqueue(new okhttp3.Callback() {
+        enqueue(req, EndpointPolicy.RECOGNIZE, new okhttp3.Callback() {
             @Override
             public void onFailure(@NonNull Call call, IOException e) {
                 String message = "HTTP failure: " + e.getMessage();
@@ -65,14 +196,16 @@ public final class BackendApi {
                         buildRequestContext(req, null, null),
                         null
                 );
-                cb.onError(message);
+                cb.onFailure(new Failure(message, Failure.NO_RESPONSE));
             }
 
             @Override
             public void onResponse(@NonNull Call call, Response resp) throws IOException {
-                String s = resp.body() != null ? resp.body().string() : "";
-                emitDebugResponse("recognize", s);
+                ResponseBody body = resp.body();
+                DebugListener debug = sampledDebugListener();
                 if (!resp.isSuccessful()) {
+                    String s = body != null ? body.string() : "";
+                    emitDebugResponse(debug, "recognize", s);
                     String message = "HTTP " + resp.code() + ": " + s;
                     reportError(
                             message,
@@ -80,50 +213,52 @@ public final class BackendApi {
                             buildRequestContext(req, resp.code(), s),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
-                JsonObject obj;
+                // The text is only materialized when the debug panel is going to show it.
+                String raw = debug != null ? (body != null ? body.string() : "") : null;
+                emitDebugResponse(debug, "recognize", raw);
+                Models.RecognizeResponse parsed;
                 try {
-                    obj = gson.fromJson(s, JsonObject.class);
+                    parsed = readResponse(body, raw, Models.RecognizeResponse.class);
                 } catch (Exception e) {
                     String message = "RECOGNIZE_ERROR: invalid JSON: " + e.getMessage();
                     reportError(
                             message,
                             stackTraceToString(e),
-                            buildRequestContext(req, resp.code(), s),
+                            buildParsedResponseContext(req, resp.code(), raw),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
 
                 // Ожидаем либо поля, либо error
-                if (obj.has("error")) {
-                    String message = "RECOGNIZE_ERROR: " + obj.get("error").toString();
+                if (parsed.error != null) {
+                    String message = "RECOGNIZE_ERROR: " + parsed.error.toString();
                     reportError(
                             message,
                             null,
-                            buildRequestContext(req, resp.code(), s),
+                            buildParsedResponseContext(req, resp.code(), raw),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
 
-                Models.MRZKeys mrz = parseMrz(obj);
-                if (mrz == null) {
+                if (parsed.mrz == null) {
                     String message = "RECOGNIZE_ERROR: missing MRZ fields";
                     reportError(
                             message,
                             null,
-                            buildRequestContext(req, resp.code(), s),
+                            buildParsedResponseContext(req, resp.code(), raw),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
-                cb.onSuccess(mrz);
+                cb.onSuccess(parsed.mrz);
             }
         });
     }
@@ -135,7 +270,7 @@ public final class BackendApi {
                 .post(RequestBody.create(json, MediaType.parse("application/json")))
                 .build();
 
-        client.newCall(req).enqueue(new okhttp3.Callback() {
+        enqueue(req, EndpointPolicy.NFC, new okhttp3.Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 String message = "HTTP failure: " + e.getMessage();
@@ -146,7 +281,7 @@ public final class BackendApi {
                         buildRequestContext(req, null, null),
                         null
                 );
-                cb.onError(message);
+                cb.onFailure(new Failure(message, Failure.NO_RESPONSE));
             }
 
             @Override
@@ -161,7 +296,7 @@ public final class BackendApi {
                             buildRequestContext(req, resp.code(), s),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
                 cb.onSuccess(null);
@@ -176,7 +311,84 @@ public final class BackendApi {
                 .post(RequestBody.create(json, MediaType.parse("application/json")))
                 .build();
 
-        client.newCall(req).enqueue(new okhttp3.Callback() {
+        enqueue(req, EndpointPolicy.NFC, nfcScanCallback(req, cb));
+    }
+
+    /**
+     * Sends the raw format payload for {@code result}, streaming base64 of DG1/DG2 into the request
+     * (see {@link NfcRawRequestBody}) instead of serializing a {@link JsonObject}.
+     */
+    public static void sendNfcRawAndParse(Models.NfcRawResult result, Callback<Models.NfcScanResponse> cb) {
+        sendNfcRawAndParse(result, null, cb);
+    }
+
+    /**
+     * As {@link #sendNfcRawAndParse(Models.NfcRawResult, Callback)}, sent with {@code idempotencyKey}
+     * so that uploading the same scan again returns the scan the backend already stored.
+     */
+    static void sendNfcRawAndParse(
+            Models.NfcRawResult result,
+            @Nullable String idempotencyKey,
+            Callback<Models.NfcScanResponse> cb
+    ) {
+        Request req = withIdempotencyKey(new Request.Builder(), idempotencyKey)
+                .url(BackendConfig.getBaseUrl() + "/nfc")
+                .post(NfcPayloadBuilder.buildRawBody(result))
+                .build();
+
+        enqueue(req, EndpointPolicy.NFC, nfcScanCallback(req, cb));
+    }
+
+    /**
+     * Uploads DG1/DG2 as binary multipart parts (see {@link NfcPayloadBuilder#buildRawMultipart}).
+     * If the server answers 415 the scan is re-sent with the JSON raw contract, and the base URL
+     * is remembered so later uploads go straight to JSON.
+     */
+    public static void sendNfcRawMultipartAndParse(
+            Models.NfcRawResult result,
+            Callback<Models.NfcScanResponse> cb
+    ) {
+        sendNfcRawMultipartAndParse(result, null, cb);
+    }
+
+    static void sendNfcRawMultipartAndParse(
+            Models.NfcRawResult result,
+            @Nullable String idempotencyKey,
+            Callback<Models.NfcScanResponse> cb
+    ) {
+        String baseUrl = BackendConfig.getBaseUrl();
+        if (baseUrl.equals(multipartRejectedBaseUrl)) {
+            sendNfcRawAndParse(result, idempotencyKey, cb);
+            return;
+        }
+        Request req = withIdempotencyKey(new Request.Builder(), idempotencyKey)
+                .url(baseUrl + "/nfc")
+                .post(NfcPayloadBuilder.buildRawMultipart(result))
+                .build();
+        okhttp3.Callback scanCallback = nfcScanCallback(req, cb);
+
+        enqueue(req, EndpointPolicy.NFC, new okhttp3.Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                scanCallback.onFailure(call, e);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response resp) throws IOException {
+                if (resp.code() != HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                    scanCallback.onResponse(call, resp);
+                    return;
+                }
+                resp.close();
+                multipartRejectedBaseUrl = baseUrl;
+                emitDebugResponse("nfc", "HTTP 415: multipart upload rejected, retrying as JSON");
+                sendNfcRawAndParse(result, idempotencyKey, cb);
+            }
+        });
+    }
+
+    private static okhttp3.Callback nfcScanCallback(Request req, Callback<Models.NfcScanResponse> cb) {
+        return new okhttp3.Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 String message = "HTTP failure: " + e.getMessage();
@@ -187,14 +399,16 @@ public final class BackendApi {
                         buildRequestContext(req, null, null),
                         null
                 );
-                cb.onError(message);
+                cb.onFailure(new Failure(message, Failure.NO_RESPONSE));
             }
 
             @Override
             public void onResponse(Call call, Response resp) throws IOException {
-                String s = resp.body() != null ? resp.body().string() : "";
-                emitDebugResponse("nfc", s);
+                ResponseBody body = resp.body();
+                DebugListener debug = sampledDebugListener();
                 if (!resp.isSuccessful()) {
+                    String s = body != null ? body.string() : "";
+                    emitDebugResponse(debug, "nfc", s);
                     String message = "HTTP " + resp.code() + ": " + s;
                     reportError(
                             message,
@@ -202,51 +416,75 @@ public final class BackendApi {
                             buildRequestContext(req, resp.code(), s),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
-                JsonObject obj;
+                String raw = debug != null ? (body != null ? body.string() : "") : null;
+                emitDebugResponse(debug, "nfc", raw);
+                Models.NfcScanResponse result;
                 try {
-                    obj = gson.fromJson(s, JsonObject.class);
+                    result = readResponse(body, raw, Models.NfcScanResponse.class);
                 } catch (Exception e) {
                     String message = "NFC_ERROR: invalid JSON: " + e.getMessage();
                     reportError(
                             message,
                             stackTraceToString(e),
-                            buildRequestContext(req, resp.code(), s),
+                            buildParsedResponseContext(req, resp.code(), raw),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
 
-                if (!obj.has("scan_id") || !obj.has("face_image_url") || !obj.has("passport")) {
+                if (result.scan_id == null || result.face_image_url == null || result.passport == null) {
                     String message = "NFC_ERROR: missing response fields";
                     reportError(
                             message,
                             null,
-                            buildRequestContext(req, resp.code(), s),
+                            buildParsedResponseContext(req, resp.code(), raw),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
-                Models.NfcScanResponse result = new Models.NfcScanResponse();
-                result.scan_id = obj.get("scan_id").getAsString();
-                result.face_image_url = obj.get("face_image_url").getAsString();
-                result.passport = obj.getAsJsonObject("passport");
                 cb.onSuccess(result);
             }
-        });
+        };
     }
 
     public static void fetchFaceImage(String url, Callback<byte[]> cb) {
-        Request req = new Request.Builder()
+        fetchFaceImage(url, null, new Callback<FaceCache.Download>() {
+            @Override
+            public void onSuccess(FaceCache.Download value) {
+                cb.onSuccess(value.bytes);
+            }
+
+            @Override
+            public void onError(String message) {
+                cb.onError(message);
+            }
+
+            @Override
+            public void onFailure(Failure failure) {
+                cb.onFailure(failure);
+            }
+        });
+    }
+
+    /**
+     * Conditional download for {@link FaceCache}: with {@code etag} set, a 304 completes with
+     * {@link FaceCache.Download#notModified} and no bytes.
+     */
+    static void fetchFaceImage(String url, @Nullable String etag, Callback<FaceCache.Download> cb) {
+        Request.Builder builder = new Request.Builder()
                 .url(url)
-                .get()
-                .build();
+                .get();
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        Request req = builder.build();
 
-        client.newCall(req).enqueue(new okhttp3.Callback() {
+        enqueue(req, EndpointPolicy.FACE, new okhttp3.Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 String message = "HTTP failure: " + e.getMessage();
@@ -257,72 +495,66 @@ public final class BackendApi {
                         buildRequestContext(req, null, null),
                         null
                 );
-                cb.onError(message);
+                cb.onFailure(new Failure(message, Failure.NO_RESPONSE));
             }
 
             @Override
             public void onResponse(@NonNull Call call, Response resp) throws IOException {
+                if (resp.code() == 304 && etag != null) {
+                    resp.close();
+                    emitDebugResponse("face", "HTTP 304: served from face cache");
+                    cb.onSuccess(new FaceCache.Download(new byte[0], etag, true));
+                    return;
+                }
                 byte[] bytes = resp.body() != null ? resp.body().bytes() : new byte[0];
-                String debugPayload = bytes.length == 0 ? "" : Base64.encodeToString(bytes, Base64.NO_WRAP);
-                emitDebugResponse("face", debugPayload);
+                DebugListener debug = sampledDebugListener();
+                if (debug != null) {
+                    debug.onDebugResponse("face", DebugCapture.ofBinary(bytes, BackendConfig.getDebugCaptureMaxChars()));
+                }
                 if (!resp.isSuccessful()) {
                     String message = "HTTP " + resp.code();
                     reportError(
                             message,
                             null,
-                            buildRequestContext(req, resp.code(), debugPayload),
+                            buildFaceErrorContext(req, resp, bytes),
                             null
                     );
-                    cb.onError(message);
+                    cb.onFailure(new Failure(message, resp.code()));
                     return;
                 }
-                cb.onSuccess(bytes);
+                cb.onSuccess(new FaceCache.Download(bytes, resp.header("ETag"), false));
             }
         });
     }
 
+    /**
+     * Queues an error for {@code /errors}; identical errors are coalesced and sent in batches
+     * (see {@link ErrorReporter}). {@code cb}, if given, completes when the report is sent.
+     */
     public static void reportError(
             String errorMessage,
             String stacktrace,
             JsonObject contextJson,
             Callback<Void> cb
     ) {
-        if (!shouldReportError()) {
-            if (cb != null) {
-                cb.onSuccess(null);
-            }
-            return;
-        }
-        JsonObject payload = new JsonObject();
-        payload.addProperty("platform", "android");
-        payload.addProperty("error_message", errorMessage);
-        if (stacktrace != null) {
-            payload.addProperty("stacktrace", stacktrace);
-        }
-        if (contextJson != null) {
-            payload.add("context_json", contextJson);
-        }
+        errorReporter.report(errorMessage, stacktrace, contextJson, cb);
+    }
 
+    private static void postErrorReport(JsonObject payload, Callback<Void> cb) {
         String json = gson.toJson(payload);
         Request req = new Request.Builder()
                 .url(BackendConfig.getBaseUrl() + "/errors")
                 .post(RequestBody.create(json, MediaType.parse("application/json")))
                 .build();
 
-        client.newCall(req).enqueue(new okhttp3.Callback() {
+        enqueue(req, EndpointPolicy.ERRORS, new okhttp3.Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                if (cb != null) {
-                    cb.onError("HTTP failure: " + e.getMessage());
-                }
+                cb.onError("HTTP failure: " + e.getMessage());
             }
 
             @Override
             public void onResponse(Call call, Response resp) {
-                if (cb == null) {
-                    resp.close();
-                    return;
-                }
                 if (!resp.isSuccessful()) {
                     cb.onError("HTTP " + resp.code());
                 } else {
@@ -334,43 +566,129 @@ public final class BackendApi {
     }
 
     static void setErrorReportIntervalMsForTesting(long intervalMs) {
-        errorReportIntervalMs = intervalMs;
+        errorReporter.setFlushIntervalMs(intervalMs);
+    }
+
+    static void resetErrorReporterForTesting() {
+        errorReporter.reset();
+    }
+
+    static void resetNfcUploadModeForTesting() {
+        multipartRejectedBaseUrl = null;
+    }
+
+    static void resetProtocolFallbackForTesting() {
+        h2cFallback.reset();
     }
 
-    static void resetErrorReportDebounceForTesting() {
-        lastErrorReportAtMs = 0;
-        errorReportIntervalMs = DEFAULT_ERROR_REPORT_INTERVAL_MS;
+    static void resetRequestCompressionForTesting() {
+        requestCompression.setListener(null);
+        requestCompression.resetHosts();
     }
 
-    private static boolean shouldReportError() {
-        long now = System.currentTimeMillis();
-        if (now - lastErrorReportAtMs < errorReportIntervalMs) {
-            return false;
+    /**
+     * All clients share one connection pool and dispatcher; they differ only in protocols.
+     * With {@link BackendConfig.ProtocolMode#H2_PRIOR_KNOWLEDGE}, calls to cleartext hosts are
+     * multiplexed over a single HTTP/2 connection, unless the host turned out to be HTTP/1.1 only.
+     */
+    private static OkHttpClient clientFor(HttpUrl url) {
+        switch (BackendConfig.getProtocolMode()) {
+            case HTTP_1_1:
+                return http1Client;
+            case H2_PRIOR_KNOWLEDGE:
+                // Prior knowledge is cleartext only; TLS hosts negotiate h2 via ALPN instead.
+                if (url.isHttps()) {
+                    return client;
+                }
+                return h2cFallback.usesHttp1(url) ? http1Client : h2cClient;
+            case HTTP_2:
+            default:
+                return client;
         }
-        lastErrorReportAtMs = now;
-        return true;
+    }
+
+    /** Without a key, {@link EndpointPolicy#prepare} mints one per call. */
+    private static Request.Builder withIdempotencyKey(Request.Builder builder, @Nullable String idempotencyKey) {
+        return idempotencyKey != null ? builder.header(EndpointPolicy.IDEMPOTENCY_KEY_HEADER, idempotencyKey) : builder;
+    }
+
+    private static Call newCall(Request req) {
+        return clientFor(req.url()).newCall(req);
+    }
+
+    private static void enqueue(Request req, EndpointPolicy policy, okhttp3.Callback callback) {
+        new PolicyCall(BackendApi::newCall, policy.prepare(req), policy).enqueue(callback);
+    }
+
+    private static OkHttpClient buildH2cClient() {
+        OkHttpClient.Builder builder = client.newBuilder()
+                .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        // First, so a fallback retry goes through the HTTP/1.1 client's own interceptors.
+        builder.interceptors().add(0, h2cFallback);
+        return builder.build();
     }
 
     private static void emitDebugResponse(String source, String response) {
-        DebugListener listener = debugListener;
+        emitDebugResponse(source, () -> response);
+    }
+
+    private static void emitDebugResponse(String source, Supplier<String> response) {
+        emitDebugResponse(sampledDebugListener(), source, response);
+    }
+
+    private static void emitDebugResponse(@Nullable DebugListener listener, String source, @Nullable String response) {
+        if (response != null) {
+            emitDebugResponse(listener, source, () -> response);
+        }
+    }
+
+    private static void emitDebugResponse(@Nullable DebugListener listener, String source, Supplier<String> response) {
         if (listener != null) {
-            listener.onDebugResponse(source, response);
+            listener.onDebugResponse(source, new DebugCapture(response, BackendConfig.getDebugCaptureMaxChars()));
         }
     }
 
-    private static Models.MRZKeys parseMrz(JsonObject obj) {
-        JsonObject mrzObj = obj;
-        if (obj.has("mrz") && obj.get("mrz").isJsonObject()) {
-            mrzObj = obj.getAsJsonObject("mrz");
+    /**
+     * @return the debug listener if this response is captured, null when none is set or it is sampled out
+     */
+    @Nullable
+    private static DebugListener sampledDebugListener() {
+        DebugListener listener = debugListener;
+        if (listener == null) {
+            return null;
         }
-        if (!mrzObj.has("document_number") || !mrzObj.has("date_of_birth") || !mrzObj.has("date_of_expiry")) {
+        double sampleRate = BackendConfig.getDebugCaptureSampleRate();
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
             return null;
         }
-        Models.MRZKeys mrz = new Models.MRZKeys();
-        mrz.document_number = mrzObj.get("document_number").getAsString();
-        mrz.date_of_birth = mrzObj.get("date_of_birth").getAsString();
-        mrz.date_of_expiry = mrzObj.get("date_of_expiry").getAsString();
-        return mrz;
+        return listener;
+    }
+
+    /**
+     * Reads a 2xx body with the adapter registered in {@link ResponseAdapters}: from {@code raw} when
+     * debug capture already read it, otherwise straight from the body's character stream.
+     */
+    private static <T> T readResponse(@Nullable ResponseBody body, @Nullable String raw, Class<T> type)
+            throws IOException {
+        Reader source = raw != null ? new StringReader(raw) : body != null ? body.charStream() : new StringReader("");
+        try (Reader reader = source) {
+            T value = gson.fromJson(reader, type);
+            if (value == null) {
+                throw new JsonParseException("empty body");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Context for a 2xx body that failed validation; its text is only at hand when debug capture kept it.
+     */
+    private static JsonObject buildParsedResponseContext(Request req, int httpStatus, @Nullable String raw) {
+        JsonObject context = buildRequestContext(req, httpStatus, raw);
+        if (raw == null) {
+            context.addProperty("response_body_omitted", "streamed");
+        }
+        return context;
     }
 
     private static JsonObject buildRequestContext(Request req, Integer httpStatus, String responseBody) {
@@ -380,9 +698,22 @@ public final class BackendApi {
         if (httpStatus != null) {
             context.addProperty("http_status", httpStatus);
         }
-        if (responseBody != null) {
-            context.addProperty("response_body", responseBody);
+        ErrorPayloads.putResponseBody(context, responseBody, BackendConfig.getErrorResponseBodyPrefixChars());
+        return context;
+    }
+
+    /**
+     * Text error pages (JSON, HTML) are kept like other bodies; image bytes are described by size only.
+     */
+    private static JsonObject buildFaceErrorContext(Request req, Response resp, byte[] bytes) {
+        MediaType type = resp.body() != null ? resp.body().contentType() : null;
+        boolean text = type != null
+                && ("text".equals(type.type()) || type.subtype().contains("json") || type.subtype().contains("xml"));
+        if (text) {
+            return buildRequestContext(req, resp.code(), new String(bytes, StandardCharsets.UTF_8));
         }
+        JsonObject context = buildRequestContext(req, resp.code(), null);
+        ErrorPayloads.putBinaryResponse(context, bytes.length, type != null ? type.toString() : null);
         return context;
     }
 
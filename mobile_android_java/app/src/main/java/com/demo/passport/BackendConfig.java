@@ -1,8 +1,37 @@
 package com.demo.passport;
 
 public final class BackendConfig {
+    /**
+     * HTTP protocols used for backend calls.
+     */
+    public enum ProtocolMode {
+        /** HTTP/1.1 only. */
+        HTTP_1_1,
+        /** HTTP/2 when a TLS server offers it via ALPN, HTTP/1.1 otherwise (OkHttp default). */
+        HTTP_2,
+        /**
+         * Cleartext HTTP/2 without negotiation (h2c) for LAN deployments; all calls share one
+         * multiplexed connection. Hosts that only speak HTTP/1.1 are detected and fall back to it.
+         */
+        H2_PRIOR_KNOWLEDGE
+    }
+
     public static final String DEFAULT_BASE_URL = "http://192.168.1.125:30450";
+    public static final int DEFAULT_ERROR_RESPONSE_BODY_PREFIX_CHARS = 512;
+    public static final int DEFAULT_DEBUG_CAPTURE_MAX_CHARS = 64 * 1024;
+    public static final int DEFAULT_MAX_BAC_ATTEMPTS = 3;
     private static volatile String baseUrl = DEFAULT_BASE_URL;
+    private static volatile boolean photoPreprocessingEnabled = true;
+    private static volatile boolean mrzCropEnabled = true;
+    private static volatile int maxBacAttempts = DEFAULT_MAX_BAC_ATTEMPTS;
+    private static volatile boolean nfcMultipartUploadEnabled = false;
+    private static volatile boolean requestCompressionEnabled = false;
+    private static volatile boolean serverFaceVerificationEnabled = false;
+    private static volatile ProtocolMode protocolMode = ProtocolMode.HTTP_2;
+    private static volatile int errorResponseBodyPrefixChars = DEFAULT_ERROR_RESPONSE_BODY_PREFIX_CHARS;
+    private static volatile int debugCaptureMaxChars = DEFAULT_DEBUG_CAPTURE_MAX_CHARS;
+    private static volatile double debugCaptureSampleRate = 1.0;
+    private static volatile boolean debugCaptureEnabled = false;
 
     public static String getBaseUrl() {
         return baseUrl;
@@ -12,5 +41,126 @@ public final class BackendConfig {
         baseUrl = newBaseUrl;
     }
 
+    /**
+     * Whether the captured photo is downscaled and recompressed before /recognize.
+     */
+    public static boolean isPhotoPreprocessingEnabled() {
+        return photoPreprocessingEnabled;
+    }
+
+    public static void setPhotoPreprocessingEnabled(boolean enabled) {
+        photoPreprocessingEnabled = enabled;
+    }
+
+    /**
+     * Whether only the located MRZ band is uploaded to /recognize (full page on low confidence).
+     */
+    public static boolean isMrzCropEnabled() {
+        return mrzCropEnabled;
+    }
+
+    public static void setMrzCropEnabled(boolean enabled) {
+        mrzCropEnabled = enabled;
+    }
+
+    /**
+     * How many PACE/BAC attempts one NFC session may spend on candidate keys. Kept small: some chips
+     * count failed attempts and slow down or lock access.
+     */
+    public static int getMaxBacAttempts() {
+        return maxBacAttempts;
+    }
+
+    public static void setMaxBacAttempts(int attempts) {
+        maxBacAttempts = Math.max(1, attempts);
+    }
+
+    /**
+     * Whether /nfc receives DG1/DG2 as binary multipart parts instead of base64 JSON.
+     * Off by default; servers that answer 415 are switched back to JSON automatically.
+     */
+    public static boolean isNfcMultipartUploadEnabled() {
+        return nfcMultipartUploadEnabled;
+    }
+
+    public static void setNfcMultipartUploadEnabled(boolean enabled) {
+        nfcMultipartUploadEnabled = enabled;
+    }
+
+    /**
+     * Whether large /nfc and /errors bodies are sent with {@code Content-Encoding: gzip}.
+     * Off by default; a host answering 415/400 to a compressed body gets plain bodies from then on.
+     */
+    public static boolean isRequestCompressionEnabled() {
+        return requestCompressionEnabled;
+    }
+
+    public static void setRequestCompressionEnabled(boolean enabled) {
+        requestCompressionEnabled = enabled;
+    }
+
+    /**
+     * Whether RESULT waits for the face stored by the backend instead of showing the one decoded from DG2.
+     */
+    public static boolean isServerFaceVerificationEnabled() {
+        return serverFaceVerificationEnabled;
+    }
+
+    public static void setServerFaceVerificationEnabled(boolean enabled) {
+        serverFaceVerificationEnabled = enabled;
+    }
+
+    public static ProtocolMode getProtocolMode() {
+        return protocolMode;
+    }
+
+    public static void setProtocolMode(ProtocolMode mode) {
+        protocolMode = mode == null ? ProtocolMode.HTTP_2 : mode;
+    }
+
+    /**
+     * How much of a failed call's response body is copied into its /errors report.
+     */
+    public static int getErrorResponseBodyPrefixChars() {
+        return errorResponseBodyPrefixChars;
+    }
+
+    public static void setErrorResponseBodyPrefixChars(int chars) {
+        errorResponseBodyPrefixChars = Math.max(0, chars);
+    }
+
+    /**
+     * Upper bound on a response copied to the debug listener; larger bodies are cut.
+     */
+    public static int getDebugCaptureMaxChars() {
+        return debugCaptureMaxChars;
+    }
+
+    public static void setDebugCaptureMaxChars(int chars) {
+        debugCaptureMaxChars = Math.max(0, chars);
+    }
+
+    /**
+     * Share of responses passed to the debug listener, from 0 (none) to 1 (all).
+     */
+    public static double getDebugCaptureSampleRate() {
+        return debugCaptureSampleRate;
+    }
+
+    public static void setDebugCaptureSampleRate(double rate) {
+        debugCaptureSampleRate = Math.max(0.0, Math.min(1.0, rate));
+    }
+
+    /**
+     * Whether the debug panel captures API responses; off by default, switched on from the panel.
+     */
+    public static boolean isDebugCaptureEnabled() {
+        return debugCaptureEnabled;
+    }
+
+    public static void setDebugCaptureEnabled(boolean enabled) {
+        debugCaptureEnabled = enabled;
+    }
+
     private BackendConfig() {}
 }
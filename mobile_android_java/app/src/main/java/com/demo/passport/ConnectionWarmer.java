@@ -0,0 +1,124 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Opens a pooled connection to the backend ahead of the next real request.
+ *
+ * A HEAD request to the base URL pays for DNS, TCP and TLS while the user is still busy
+ * (framing the page, holding the card); any status code leaves a reusable keep-alive connection.
+ * Real calls report through {@link #recordCall} whether they got a pooled connection or had to connect.
+ */
+final class ConnectionWarmer {
+    static final long DEFAULT_MIN_INTERVAL_MS = 2000;
+
+    interface Listener {
+        void onConnectionUsed(String path, boolean reused);
+    }
+
+    /** Tag marking warm-up requests so they are not counted as real calls. */
+    private static final class Warmup {
+    }
+
+    private static final Warmup WARMUP = new Warmup();
+
+    private final long minIntervalMs;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private final AtomicInteger reusedCalls = new AtomicInteger();
+    private final AtomicInteger newConnectionCalls = new AtomicInteger();
+    private volatile long lastWarmAtMs;
+    private volatile Listener listener;
+
+    ConnectionWarmer(long minIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sends a warm-up HEAD to {@code baseUrl} unless one is running or was sent recently.
+     *
+     * @return true if a request was started
+     */
+    boolean warm(@NonNull OkHttpClient client, @NonNull String baseUrl) {
+        long now = System.currentTimeMillis();
+        if (now - lastWarmAtMs < minIntervalMs || !inFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        lastWarmAtMs = now;
+        Request request;
+        try {
+            request = new Request.Builder()
+                    .url(baseUrl + "/")
+                    .head()
+                    .tag(Warmup.class, WARMUP)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            inFlight.set(false);
+            return false;
+        }
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                inFlight.set(false);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                response.close();
+                inFlight.set(false);
+            }
+        });
+        return true;
+    }
+
+    static boolean isWarmup(@NonNull Request request) {
+        return request.tag(Warmup.class) != null;
+    }
+
+    /**
+     * Called once per finished call that acquired a connection.
+     */
+    void recordCall(@NonNull Request request, boolean reused) {
+        if (isWarmup(request)) {
+            return;
+        }
+        if (reused) {
+            reusedCalls.incrementAndGet();
+        } else {
+            newConnectionCalls.incrementAndGet();
+        }
+        Listener current = listener;
+        if (current != null) {
+            current.onConnectionUsed(request.url().encodedPath(), reused);
+        }
+    }
+
+    int getReusedCalls() {
+        return reusedCalls.get();
+    }
+
+    int getNewConnectionCalls() {
+        return newConnectionCalls.get();
+    }
+
+    void reset() {
+        reusedCalls.set(0);
+        newConnectionCalls.set(0);
+        lastWarmAtMs = 0;
+        listener = null;
+    }
+}
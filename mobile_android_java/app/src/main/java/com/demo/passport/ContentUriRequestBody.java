@@ -0,0 +1,77 @@
+package com.demo.passport;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body backed by a content {@link Uri}.
+ * The stream is opened on every {@link #writeTo} call and copied segment by segment,
+ * so the photo is never materialized as a byte array.
+ */
+final class ContentUriRequestBody extends RequestBody {
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final MediaType contentType;
+    private final long contentLength;
+
+    ContentUriRequestBody(
+            @NonNull ContentResolver resolver,
+            @NonNull Uri uri,
+            @Nullable MediaType contentType
+    ) {
+        this.resolver = resolver;
+        this.uri = uri;
+        this.contentType = contentType;
+        this.contentLength = queryLength(resolver, uri);
+    }
+
+    /**
+     * Returns the size reported by the provider, or -1 if it is unknown.
+     */
+    static long queryLength(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        try (AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r")) {
+            if (descriptor == null) {
+                return -1;
+            }
+            long length = descriptor.getLength();
+            return length == AssetFileDescriptor.UNKNOWN_LENGTH ? -1 : length;
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        try (Source source = Okio.source(input)) {
+            sink.writeAll(source);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lazy, size-bounded copy of an API response handed to {@link BackendApi.DebugListener}.
+ *
+ * Nothing is formatted until {@link #get()} or {@link #preview()} is first called, and each result
+ * is cached. {@link #get()} is cut to {@code maxChars}; {@link #preview()} is the short form shown
+ * in the debug panel and is built from its first {@link #PREVIEW_CHARS} only, so the full copy is
+ * made when someone opens it. Binary bodies keep just the prefix that can be shown, not the body.
+ */
+final class DebugCapture implements Supplier<String> {
+    static final int PREVIEW_CHARS = 1024;
+
+    /** Room left after a cut Base64 body for the size suffix. */
+    private static final int SIZE_SUFFIX_RESERVE = 32;
+
+    private static final AtomicInteger binaryEncodings = new AtomicInteger();
+
+    @Nullable
+    private final Supplier<String> source;
+    /** Binary capture: the leading bytes that fit in {@code maxChars}, and the body size. */
+    @Nullable
+    private final byte[] binaryHead;
+    private final int binaryLength;
+    private final int maxChars;
+    private volatile String value;
+    private volatile String preview;
+
+    DebugCapture(@NonNull Supplier<String> source, int maxChars) {
+        this.source = source;
+        this.binaryHead = null;
+        this.binaryLength = 0;
+        this.maxChars = Math.max(0, maxChars);
+    }
+
+    private DebugCapture(@NonNull byte[] bytes, int maxChars) {
+        this.source = null;
+        this.maxChars = Math.max(0, maxChars);
+        this.binaryHead = Arrays.copyOf(bytes, Math.min(bytes.length, prefixBytes(this.maxChars)));
+        this.binaryLength = bytes.length;
+    }
+
+    @NonNull
+    static DebugCapture of(@NonNull String text) {
+        return new DebugCapture(() -> text, BackendConfig.getDebugCaptureMaxChars());
+    }
+
+    /**
+     * Capture of a binary body shown as Base64: the first bytes that fit in {@code maxChars},
+     * followed by the total size when the body is cut. Only those bytes are copied and kept.
+     */
+    @NonNull
+    static DebugCapture ofBinary(@NonNull byte[] bytes, int maxChars) {
+        return new DebugCapture(bytes, maxChars);
+    }
+
+    @Override
+    @NonNull
+    public String get() {
+        String current = value;
+        if (current == null) {
+            if (binaryHead != null) {
+                current = encodeBinary(maxChars);
+            } else {
+                String raw = source.get();
+                current = raw == null ? "" : cut(raw, maxChars);
+            }
+            value = current;
+        }
+        return current;
+    }
+
+    /**
+     * First {@link #PREVIEW_CHARS} characters of {@link #get()}, with the full length appended when cut.
+     */
+    @NonNull
+    String preview() {
+        String current = preview;
+        if (current == null) {
+            if (binaryHead != null) {
+                current = encodeBinary(Math.min(PREVIEW_CHARS, maxChars));
+            } else {
+                String full = value;
+                if (full == null) {
+                    full = source.get();
+                    full = full == null ? "" : full;
+                }
+                int length = Math.min(full.length(), maxChars);
+                current = length <= PREVIEW_CHARS
+                        ? cut(full, length)
+                        : cut(full, PREVIEW_CHARS) + "… (" + length + " символов, нажмите для просмотра)";
+            }
+            preview = current;
+        }
+        return current;
+    }
+
+    boolean isTruncatedPreview() {
+        if (binaryHead != null) {
+            return prefixBytes(Math.min(PREVIEW_CHARS, maxChars)) < binaryLength;
+        }
+        return preview().length() > PREVIEW_CHARS;
+    }
+
+    static int getBinaryEncodingsForTesting() {
+        return binaryEncodings.get();
+    }
+
+    /**
+     * Base64 of the leading bytes that fit in {@code chars}, with the body size appended when cut.
+     */
+    private String encodeBinary(int chars) {
+        if (binaryLength == 0) {
+            return "";
+        }
+        binaryEncodings.incrementAndGet();
+        int prefixBytes = Math.min(binaryHead.length, prefixBytes(chars));
+        String encoded = Base64.getEncoder().encodeToString(
+                prefixBytes == binaryHead.length ? binaryHead : Arrays.copyOf(binaryHead, prefixBytes));
+        return prefixBytes == binaryLength ? encoded : encoded + "… (" + binaryLength + " bytes)";
+    }
+
+    private static int prefixBytes(int chars) {
+        return Math.max(0, chars - SIZE_SUFFIX_RESERVE) / 4 * 3;
+    }
+
+    private static String cut(String text, int chars) {
+        if (text.length() <= chars) {
+            return text;
+        }
+        int end = chars;
+        if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,80 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Finds the encoded face image inside raw DG2 bytes without a full ICAO 9303 / ISO 19794-5 parse.
+ *
+ * JPEG is taken from the first SOI marker up to the following EOI marker (or the end of DG2).
+ * JPEG2000 is recognized by the JP2 signature box or a bare codestream, and runs to the end of DG2;
+ * Android cannot decode it, so callers fall back to the server-converted copy.
+ */
+final class Dg2FaceLocator {
+    private static final byte[] JPEG_SOI = {(byte) 0xFF, (byte) 0xD8};
+    private static final byte[] JP2_SIGNATURE = {0x00, 0x00, 0x00, 0x0C, 0x6A, 0x50};
+    private static final byte[] J2K_CODESTREAM = {(byte) 0xFF, 0x4F, (byte) 0xFF, 0x51};
+
+    enum Format {
+        JPEG,
+        JPEG2000,
+        /** No image signature found; the bytes are passed on as they are. */
+        UNKNOWN
+    }
+
+    static final class Range {
+        final Format format;
+        final int offset;
+        final int length;
+
+        Range(Format format, int offset, int length) {
+            this.format = format;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @return location of the face image, or null if DG2 contains no recognizable image
+     */
+    @Nullable
+    static Range locate(@Nullable byte[] dg2) {
+        if (dg2 == null || dg2.length == 0) {
+            return null;
+        }
+        int jpegOffset = indexOf(dg2, JPEG_SOI, 0);
+        if (jpegOffset >= 0) {
+            int jpegEnd = dg2.length;
+            for (int i = jpegOffset + 2; i < dg2.length - 1; i++) {
+                if (dg2[i] == (byte) 0xFF && dg2[i + 1] == (byte) 0xD9) {
+                    jpegEnd = i + 2;
+                    break;
+                }
+            }
+            return new Range(Format.JPEG, jpegOffset, jpegEnd - jpegOffset);
+        }
+        int jp2Offset = indexOf(dg2, JP2_SIGNATURE, 0);
+        if (jp2Offset < 0) {
+            jp2Offset = indexOf(dg2, J2K_CODESTREAM, 0);
+        }
+        if (jp2Offset >= 0) {
+            return new Range(Format.JPEG2000, jp2Offset, dg2.length - jp2Offset);
+        }
+        return null;
+    }
+
+    static int indexOf(@NonNull byte[] haystack, @NonNull byte[] needle, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private Dg2FaceLocator() {}
+}
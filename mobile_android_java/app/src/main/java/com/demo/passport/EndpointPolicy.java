@@ -0,0 +1,133 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import okhttp3.Request;
+
+/**
+ * Timeouts, retries and hedging for one backend endpoint.
+ *
+ * Policies are attached to requests as a tag by {@link #prepare(Request)}; {@link PolicyCall} runs the
+ * retries and hedges, and {@link PolicyCall#TIMEOUT_INTERCEPTOR} applies the per-endpoint timeouts.
+ */
+final class EndpointPolicy {
+    /** Photo upload: LLM recognition can take a while, one retry on a dropped connection. */
+    static final EndpointPolicy RECOGNIZE = new EndpointPolicy("recognize", 10_000, 60_000, 90_000, 1, 500, true, 0);
+    /** Chip data upload: fail fast enough to let the operator rescan, retry transient resets twice. */
+    static final EndpointPolicy NFC = new EndpointPolicy("nfc", 10_000, 20_000, 45_000, 2, 500, true, 0);
+    /** Face image GET: idempotent, so slow calls are hedged after the 95th latency percentile. */
+    static final EndpointPolicy FACE = new EndpointPolicy("face", 5_000, 10_000, 15_000, 2, 250, false, 0.95);
+    /** Error reports: best effort, never hold a connection for long. */
+    static final EndpointPolicy ERRORS = new EndpointPolicy("errors", 5_000, 10_000, 15_000, 1, 1_000, true, 0);
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    /** Hedging needs a latency history before the percentile means anything. */
+    static final int MIN_HEDGE_SAMPLES = 10;
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    final String name;
+    final long connectTimeoutMs;
+    /** Read and write timeout per socket operation. */
+    final long ioTimeoutMs;
+    /** Upper bound for one attempt including connect, upload and response. */
+    final long callTimeoutMs;
+    final int maxRetries;
+    final long baseBackoffMs;
+    final boolean idempotencyKey;
+    /** Latency percentile after which an idempotent GET is duplicated; 0 disables hedging. */
+    final double hedgePercentile;
+    final LatencyTracker latency = new LatencyTracker(50);
+
+    EndpointPolicy(
+            String name,
+            long connectTimeoutMs,
+            long ioTimeoutMs,
+            long callTimeoutMs,
+            int maxRetries,
+            long baseBackoffMs,
+            boolean idempotencyKey,
+            double hedgePercentile
+    ) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 1)");
+        }
+        this.name = name;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.ioTimeoutMs = ioTimeoutMs;
+        this.callTimeoutMs = callTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMs = baseBackoffMs;
+        this.idempotencyKey = idempotencyKey;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Tags the request with this policy and, for POSTs, adds an {@code Idempotency-Key}
+     * that every retry of the request reuses.
+     */
+    @NonNull
+    Request prepare(@NonNull Request request) {
+        Request.Builder builder = request.newBuilder().tag(EndpointPolicy.class, this);
+        if (idempotencyKey && "POST".equals(request.method()) && request.header(IDEMPOTENCY_KEY_HEADER) == null) {
+            builder.header(IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        }
+        return builder.build();
+    }
+
+    boolean hedges(@NonNull Request request) {
+        return hedgePercentile > 0 && "GET".equals(request.method());
+    }
+
+    /**
+     * "Full jitter" exponential backoff: uniform in [0, min(max, base * 2^attempt)].
+     *
+     * @param attempt zero-based retry number
+     */
+    long backoffDelayMs(int attempt, @NonNull Random random) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, baseBackoffMs << Math.min(attempt, 16));
+        return ceiling <= 0 ? 0 : (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    /**
+     * Delay after which a duplicate request is sent, or -1 while there are too few samples.
+     */
+    long hedgeDelayMs() {
+        return latency.percentile(hedgePercentile, MIN_HEDGE_SAMPLES);
+    }
+
+    /**
+     * Ring buffer of recent call latencies.
+     */
+    static final class LatencyTracker {
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyTracker(int capacity) {
+            samples = new long[capacity];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
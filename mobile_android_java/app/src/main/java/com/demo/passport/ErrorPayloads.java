@@ -0,0 +1,107 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Keeps {@code /errors} payloads small: stack traces are fingerprinted, response bodies truncated,
+ * binary bodies described by size only.
+ */
+final class ErrorPayloads {
+    private static final int FINGERPRINT_HEX_CHARS = 16;
+    /** Length of the body prefix checked for control characters before a body counts as text. */
+    private static final int BINARY_SNIFF_CHARS = 512;
+
+    /**
+     * Hash of the exception classes and frames of {@code stacktrace}. Exception messages (ports,
+     * timeouts, ids) are left out so the same failure always gets the same fingerprint.
+     */
+    @NonNull
+    static String fingerprint(@NonNull String stacktrace) {
+        StringBuilder normalized = new StringBuilder();
+        boolean firstLine = true;
+        for (String line : stacktrace.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("at ")) {
+                normalized.append(trimmed).append('\n');
+            } else if (firstLine || trimmed.startsWith("Caused by:")) {
+                normalized.append(exceptionClass(trimmed)).append('\n');
+            }
+            firstLine = false;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(normalized.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < FINGERPRINT_HEX_CHARS / 2; i++) {
+                hex.append(String.format(Locale.US, "%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(normalized.toString().hashCode());
+        }
+    }
+
+    /**
+     * Adds {@code response_body} cut to {@code prefixChars}, plus {@code response_body_length} when
+     * the body was cut. Binary-looking bodies are replaced by their length.
+     */
+    static void putResponseBody(@NonNull JsonObject context, @Nullable String body, int prefixChars) {
+        if (body == null) {
+            return;
+        }
+        if (looksBinary(body)) {
+            context.addProperty("response_body_omitted", "binary");
+            context.addProperty("response_body_length", body.length());
+            return;
+        }
+        if (body.length() <= prefixChars) {
+            context.addProperty("response_body", body);
+            return;
+        }
+        int end = Math.max(0, prefixChars);
+        if (end > 0 && Character.isHighSurrogate(body.charAt(end - 1))) {
+            end--;
+        }
+        context.addProperty("response_body", body.substring(0, end));
+        context.addProperty("response_body_length", body.length());
+        context.addProperty("response_body_truncated", true);
+    }
+
+    /**
+     * Describes a binary response (such as the face JPEG) without inlining it.
+     */
+    static void putBinaryResponse(@NonNull JsonObject context, long byteLength, @Nullable String contentType) {
+        context.addProperty("response_body_omitted", "binary");
+        context.addProperty("response_body_bytes", byteLength);
+        if (contentType != null) {
+            context.addProperty("response_content_type", contentType);
+        }
+    }
+
+    static boolean looksBinary(@NonNull String body) {
+        int limit = Math.min(body.length(), BINARY_SNIFF_CHARS);
+        for (int i = 0; i < limit; i++) {
+            char c = body.charAt(i);
+            if (c == '\u0000' || c == '\uFFFD' || (c < 0x20 && c != '\n' && c != '\r' && c != '\t')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String exceptionClass(String line) {
+        String withoutCause = line.startsWith("Caused by:") ? line.substring("Caused by:".length()).trim() : line;
+        int colon = withoutCause.indexOf(':');
+        return colon >= 0 ? withoutCause.substring(0, colon) : withoutCause;
+    }
+
+    private ErrorPayloads() {}
+}
@@ -0,0 +1,308 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces error reports before they are sent to {@code /errors}.
+ *
+ * Identical errors (same message, stack trace and context) are grouped with an occurrence count and
+ * first/last timestamps. Groups are flushed on a timer, at most once per flush interval, or as soon as
+ * {@code flushThreshold} distinct groups are waiting; the first error after a quiet period goes out at
+ * once. At most {@code capacity} groups are kept: the oldest is dropped and its occurrences are added
+ * to a suppressed count sent with the next flush. The queue and counters are updated with CAS; a group
+ * takes an occurrence and its callback under its own monitor, so a flush never seals it in between.
+ *
+ * A stack trace is sent in full until a report carrying it has been delivered in this process; later
+ * reports carry just {@code context_json.stacktrace_fingerprint}.
+ */
+final class ErrorReporter {
+    static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+    static final int DEFAULT_CAPACITY = 50;
+    static final int DEFAULT_FLUSH_THRESHOLD = 20;
+
+    interface Sender {
+        void send(JsonObject payload, BackendApi.Callback<Void> cb);
+    }
+
+    private static final class Group {
+        final String key;
+        final String errorMessage;
+        final String stacktrace;
+        final JsonObject context;
+        final long firstSeenMs;
+        /** Guarded by {@code this}; final once the group is sealed. */
+        private long lastSeenMs;
+        /** Occurrences so far, or -1 once the group is taken by a flush or dropped; guarded by {@code this}. */
+        private int count = 1;
+        final Queue<BackendApi.Callback<Void>> callbacks = new ConcurrentLinkedQueue<>();
+
+        Group(String key, String errorMessage, String stacktrace, JsonObject context, long nowMs,
+              @Nullable BackendApi.Callback<Void> cb) {
+            this.key = key;
+            this.errorMessage = errorMessage;
+            this.stacktrace = stacktrace;
+            this.context = context;
+            this.firstSeenMs = nowMs;
+            this.lastSeenMs = nowMs;
+            if (cb != null) {
+                callbacks.add(cb);
+            }
+        }
+
+        /**
+         * Counts one more occurrence and queues its callback, or returns false if the group is sealed.
+         */
+        synchronized boolean add(long nowMs, @Nullable BackendApi.Callback<Void> cb) {
+            if (count < 0) {
+                return false;
+            }
+            count++;
+            lastSeenMs = Math.max(lastSeenMs, nowMs);
+            if (cb != null) {
+                callbacks.add(cb);
+            }
+            return true;
+        }
+
+        /**
+         * @return the final occurrence count, or -1 if someone else sealed the group first
+         */
+        synchronized int seal() {
+            int sealed = count;
+            count = -1;
+            return sealed;
+        }
+
+        synchronized long lastSeenMs() {
+            return lastSeenMs;
+        }
+    }
+
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+    private final int capacity;
+    private final int flushThreshold;
+    private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final Queue<Group> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /** Fingerprints whose full stack trace was already sent in this process. */
+    private final Set<String> sentTraces = ConcurrentHashMap.newKeySet();
+    private volatile long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+    private volatile long lastFlushAtMs;
+
+    ErrorReporter(
+            @NonNull Sender sender,
+            @NonNull ScheduledExecutorService executor,
+            int capacity,
+            int flushThreshold
+    ) {
+        this.sender = sender;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.flushThreshold = flushThreshold;
+    }
+
+    void setFlushIntervalMs(long intervalMs) {
+        flushIntervalMs = intervalMs;
+    }
+
+    /**
+     * Queues one occurrence; {@code cb}, if given, completes when the group holding it is sent
+     * (or fails if the group is dropped).
+     */
+    void report(
+            @NonNull String errorMessage,
+            @Nullable String stacktrace,
+            @Nullable JsonObject context,
+            @Nullable BackendApi.Callback<Void> cb
+    ) {
+        long now = System.currentTimeMillis();
+        String key = errorMessage + '\u0000' + stacktrace + '\u0000' + context;
+        while (true) {
+            Group existing = groups.get(key);
+            if (existing != null) {
+                if (existing.add(now, cb)) {
+                    return;
+                }
+                // Sealed by a concurrent flush: start a new group.
+                groups.remove(key, existing);
+                continue;
+            }
+            Group created = new Group(key, errorMessage, stacktrace, context, now, cb);
+            if (groups.putIfAbsent(key, created) == null) {
+                order.add(created);
+                int waiting = size.incrementAndGet();
+                while (waiting > capacity && dropOldest()) {
+                    waiting = size.get();
+                }
+                scheduleFlush(waiting >= flushThreshold);
+                return;
+            }
+        }
+    }
+
+    long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    int getPendingGroups() {
+        return size.get();
+    }
+
+    /**
+     * Sends up to {@code flushThreshold} waiting groups now.
+     */
+    void flush() {
+        List<Group> batch = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        while (batch.size() < flushThreshold) {
+            Group group = order.poll();
+            if (group == null) {
+                break;
+            }
+            int count = group.seal();
+            if (count < 0) {
+                continue;
+            }
+            groups.remove(group.key, group);
+            size.decrementAndGet();
+            batch.add(group);
+            counts.add(count);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        lastFlushAtMs = System.currentTimeMillis();
+        long suppressedNow = suppressed.getAndSet(0);
+        for (int i = 0; i < batch.size(); i++) {
+            Group group = batch.get(i);
+            send(group, counts.get(i), i == 0 ? suppressedNow : 0);
+        }
+        if (size.get() > 0) {
+            scheduleFlush(false);
+        }
+    }
+
+    /**
+     * Drops all waiting reports and restores the default interval.
+     */
+    void reset() {
+        Group group;
+        while ((group = order.poll()) != null) {
+            group.seal();
+        }
+        groups.clear();
+        size.set(0);
+        suppressed.set(0);
+        sentTraces.clear();
+        lastFlushAtMs = 0;
+        flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+        // A timer still pending finds nothing to send.
+        flushScheduled.set(false);
+    }
+
+    private boolean dropOldest() {
+        Group oldest = order.poll();
+        if (oldest == null) {
+            return false;
+        }
+        int count = oldest.seal();
+        if (count > 0) {
+            groups.remove(oldest.key, oldest);
+            size.decrementAndGet();
+            suppressed.addAndGet(count);
+            BackendApi.Callback<Void> cb;
+            while ((cb = oldest.callbacks.poll()) != null) {
+                cb.onError("Error report dropped: queue full");
+            }
+        }
+        return true;
+    }
+
+    private void scheduleFlush(boolean immediately) {
+        if (immediately) {
+            executor.execute(this::flush);
+            return;
+        }
+        long delayMs = Math.max(0, lastFlushAtMs + flushIntervalMs - System.currentTimeMillis());
+        if (delayMs == 0 && !flushScheduled.get()) {
+            // Quiet period is over: send on the caller's thread, the HTTP call itself is async.
+            flush();
+            return;
+        }
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.schedule(() -> {
+            flushScheduled.set(false);
+            flush();
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(Group group, int count, long suppressedCount) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("platform", "android");
+        payload.addProperty("error_message", group.errorMessage);
+        String fingerprint = group.stacktrace != null ? ErrorPayloads.fingerprint(group.stacktrace) : null;
+        // Marked as sent only once the server has it, so a failed POST does not lose the trace for good.
+        boolean withTrace = fingerprint != null && !sentTraces.contains(fingerprint);
+        if (withTrace) {
+            payload.addProperty("stacktrace", group.stacktrace);
+        }
+        JsonObject context = group.context;
+        if (fingerprint != null || count > 1 || suppressedCount > 0) {
+            context = context != null ? context.deepCopy() : new JsonObject();
+        }
+        if (fingerprint != null) {
+            context.addProperty("stacktrace_fingerprint", fingerprint);
+        }
+        if (count > 1 || suppressedCount > 0) {
+            context.addProperty("occurrences", count);
+            context.addProperty("first_seen_ms", group.firstSeenMs);
+            context.addProperty("last_seen_ms", group.lastSeenMs());
+            if (suppressedCount > 0) {
+                context.addProperty("suppressed_count", suppressedCount);
+            }
+        }
+        if (context != null) {
+            payload.add("context_json", context);
+        }
+        sender.send(payload, new BackendApi.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                if (withTrace) {
+                    sentTraces.add(fingerprint);
+                }
+                BackendApi.Callback<Void> cb;
+                while ((cb = group.callbacks.poll()) != null) {
+                    cb.onSuccess(null);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                BackendApi.Callback<Void> cb;
+                while ((cb = group.callbacks.poll()) != null) {
+                    cb.onError(message);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,214 @@
+package com.demo.passport;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared decoder for face images shown in {@link ImageView}s.
+ *
+ * Decoding runs on one worker thread: image bounds are read first, {@code inSampleSize} is chosen
+ * for the target view, and the pixels go into a pooled bitmap via {@code inBitmap} when one is
+ * large enough. Only the finished bitmap is posted to the UI thread. Bitmaps taken off screen are
+ * handed back with {@link #release} for reuse.
+ */
+final class FaceBitmapDecoder {
+    /** Bitmaps kept for reuse; a face at view size is a few hundred KB. */
+    private static final int POOL_SIZE = 3;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static FaceBitmapDecoder instance;
+
+    interface Callback {
+        /** Runs on the UI thread; {@code bitmap} is null if the image cannot be decoded. */
+        void onDecoded(@Nullable Bitmap bitmap);
+    }
+
+    private final ExecutorService executor;
+    /** Guarded by itself. */
+    private final ArrayDeque<Bitmap> pool = new ArrayDeque<>();
+
+    @NonNull
+    static synchronized FaceBitmapDecoder getInstance() {
+        if (instance == null) {
+            instance = new FaceBitmapDecoder(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "face-decode");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        return instance;
+    }
+
+    FaceBitmapDecoder(@NonNull ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Decodes {@code length} bytes at {@code offset} off the UI thread, sized for {@code target},
+     * and posts the result through {@code target}. Call on the UI thread, which owns the view's size.
+     */
+    void decodeInto(
+            @NonNull ImageView target,
+            @NonNull byte[] data,
+            int offset,
+            int length,
+            @NonNull Callback cb
+    ) {
+        decodeInto(target, data, offset, length, targetWidth(target), targetHeight(target), cb);
+    }
+
+    /**
+     * As {@link #decodeInto(ImageView, byte[], int, int, Callback)} with a size read earlier on the UI
+     * thread, so it can be called from any thread.
+     */
+    void decodeInto(
+            @NonNull ImageView target,
+            @NonNull byte[] data,
+            int offset,
+            int length,
+            int reqWidth,
+            int reqHeight,
+            @NonNull Callback cb
+    ) {
+        executor.execute(() -> {
+            Bitmap bitmap = decode(data, offset, length, reqWidth, reqHeight);
+            target.post(() -> cb.onDecoded(bitmap));
+        });
+    }
+
+    /**
+     * Decodes on the worker thread, for callers that are not tied to a view.
+     */
+    @NonNull
+    CompletableFuture<Bitmap> decodeAsync(@NonNull byte[] data, int offset, int length, int reqWidth, int reqHeight) {
+        return CompletableFuture.supplyAsync(() -> decode(data, offset, length, reqWidth, reqHeight), executor);
+    }
+
+    /**
+     * Decodes on the calling thread; use from background threads only.
+     */
+    @Nullable
+    Bitmap decode(@NonNull byte[] data, int offset, int length, int reqWidth, int reqHeight) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, reqWidth, reqHeight);
+        options.inMutable = true;
+        int width = decodedSize(bounds.outWidth, options.inSampleSize);
+        int height = decodedSize(bounds.outHeight, options.inSampleSize);
+        options.inBitmap = takeReusable((long) width * height * BYTES_PER_PIXEL);
+        try {
+            return BitmapFactory.decodeByteArray(data, offset, length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap was rejected (e.g. config mismatch): decode into a new one.
+            options.inBitmap = null;
+            try {
+                return BitmapFactory.decodeByteArray(data, offset, length, options);
+            } catch (RuntimeException retryError) {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a bitmap that is no longer displayed anywhere to the reuse pool.
+     */
+    void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (pool) {
+            if (pool.size() >= POOL_SIZE) {
+                pool.pollFirst();
+            }
+            pool.addLast(bitmap);
+        }
+    }
+
+    /**
+     * Largest power of two that keeps both sides at or above the requested size.
+     */
+    static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sample = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sample;
+        }
+        while (width / (sample * 2) >= reqWidth && height / (sample * 2) >= reqHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    @Nullable
+    private Bitmap takeReusable(long byteCount) {
+        synchronized (pool) {
+            Iterator<Bitmap> it = pool.iterator();
+            while (it.hasNext()) {
+                Bitmap candidate = it.next();
+                if (candidate.isRecycled()) {
+                    it.remove();
+                } else if (candidate.getAllocationByteCount() >= byteCount) {
+                    it.remove();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Side length BitmapFactory produces for {@code size} at {@code inSampleSize}, used to size the
+     * pooled bitmap.
+     */
+    static int decodedSize(int size, int inSampleSize) {
+        return (size + inSampleSize - 1) / inSampleSize;
+    }
+
+    /**
+     * The embedded JPEG of {@code dg2}. Otherwise all of DG2, tagged {@link Dg2FaceLocator.Format#UNKNOWN},
+     * which BitmapFactory still gets a try at; a JPEG2000 face then fails to decode and callers use
+     * the server copy.
+     */
+    @NonNull
+    static Dg2FaceLocator.Range decodableRange(@NonNull byte[] dg2) {
+        Dg2FaceLocator.Range face = Dg2FaceLocator.locate(dg2);
+        if (face != null && face.format == Dg2FaceLocator.Format.JPEG) {
+            return face;
+        }
+        return new Dg2FaceLocator.Range(Dg2FaceLocator.Format.UNKNOWN, 0, dg2.length);
+    }
+
+    /** Laid-out size, or the fixed size from the layout before the first layout pass. */
+    static int targetWidth(ImageView view) {
+        if (view.getWidth() > 0) {
+            return view.getWidth();
+        }
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        return params != null && params.width > 0 ? params.width : view.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    static int targetHeight(ImageView view) {
+        if (view.getHeight() > 0) {
+            return view.getHeight();
+        }
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        return params != null && params.height > 0 ? params.height : view.getResources().getDisplayMetrics().heightPixels;
+    }
+}
@@ -0,0 +1,445 @@
+package com.demo.passport;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Two-tier cache for server face images, keyed by {@code face_image_url} (which embeds the scan id).
+ *
+ * A byte-bounded LRU in memory sits in front of a size-capped directory on disk. Entries younger
+ * than the freshness window are served without a request; older ones are revalidated with
+ * {@code If-None-Match}, and a 304 serves the cached bytes. Concurrent {@link #get} calls for the
+ * same URL share one lookup and at most one request. Disk errors are treated as misses.
+ *
+ * Face images are personal data: on disk they are AES-GCM encrypted with an Android Keystore key (as
+ * in {@link NfcOutbox}), and without a key there is no disk tier. No entry is served or kept longer
+ * than {@code maxAgeMs} after it was downloaded, however often it is revalidated.
+ */
+final class FaceCache {
+    static final long DEFAULT_MEMORY_BYTES = 4L * 1024 * 1024;
+    static final long DEFAULT_DISK_BYTES = 8L * 1024 * 1024;
+    static final long DEFAULT_FRESH_MS = 10 * 60 * 1000;
+    static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000;
+    private static final String TAG = "FaceCache";
+    private static final String DIRECTORY = "face_cache";
+    private static final String KEY_ALIAS = "face_cache";
+    private static final String SUFFIX = ".sealed";
+
+    private static FaceCache instance;
+
+    /**
+     * Downloads a face; {@code etag}, when set, makes the request conditional.
+     */
+    interface Fetcher {
+        void fetch(String url, @Nullable String etag, BackendApi.Callback<Download> cb);
+    }
+
+    /** Result of one face request: new bytes, or {@link #notModified} after a 304. */
+    static final class Download {
+        final byte[] bytes;
+        @Nullable
+        final String etag;
+        final boolean notModified;
+
+        Download(byte[] bytes, @Nullable String etag, boolean notModified) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.notModified = notModified;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] bytes;
+        @Nullable
+        final String etag;
+        final long storedAtMs;
+        volatile long validatedAtMs;
+
+        Entry(byte[] bytes, @Nullable String etag, long storedAtMs, long validatedAtMs) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.storedAtMs = storedAtMs;
+            this.validatedAtMs = validatedAtMs;
+        }
+    }
+
+    private final File directory;
+    /** Null when no Keystore key is available: then nothing is written to disk. */
+    @Nullable
+    private final SecretKey diskKey;
+    private final Fetcher fetcher;
+    private final Executor executor;
+    private final long memoryLimitBytes;
+    private final long diskLimitBytes;
+    private final long freshMs;
+    private final long maxAgeMs;
+    /** Access-ordered; guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    /** Callers waiting on the lookup in progress for a URL; guarded by itself. */
+    private final Map<String, List<BackendApi.Callback<byte[]>>> inFlight = new HashMap<>();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+
+    /**
+     * Process-wide cache in the app's cache directory, downloading through {@link BackendApi}.
+     * Does Keystore I/O on first use; if no key can be had, the cache stays in memory only.
+     */
+    @NonNull
+    static synchronized FaceCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            Executor executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "face-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+            SecretKey diskKey;
+            try {
+                diskKey = KeystoreCipher.keystoreKey(KEY_ALIAS);
+            } catch (IOException | GeneralSecurityException e) {
+                Log.e(TAG, "Disk tier unavailable", e);
+                diskKey = null;
+            }
+            instance = new FaceCache(
+                    directory,
+                    diskKey,
+                    BackendApi::fetchFaceImage,
+                    executor,
+                    DEFAULT_MEMORY_BYTES,
+                    DEFAULT_DISK_BYTES,
+                    DEFAULT_FRESH_MS,
+                    DEFAULT_MAX_AGE_MS
+            );
+            // Also removes faces left in plaintext by earlier versions.
+            executor.execute(instance::purgeDisk);
+        }
+        return instance;
+    }
+
+    FaceCache(
+            @NonNull File directory,
+            @Nullable SecretKey diskKey,
+            @NonNull Fetcher fetcher,
+            @NonNull Executor executor,
+            long memoryLimitBytes,
+            long diskLimitBytes,
+            long freshMs,
+            long maxAgeMs
+    ) {
+        this.directory = directory;
+        this.diskKey = diskKey;
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.diskLimitBytes = diskLimitBytes;
+        this.freshMs = freshMs;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Delivers the face at {@code url} from memory, disk or the network; {@code cb} runs on the
+     * cache thread or an OkHttp thread.
+     */
+    void get(@NonNull String url, @NonNull BackendApi.Callback<byte[]> cb) {
+        synchronized (inFlight) {
+            List<BackendApi.Callback<byte[]>> waiting = inFlight.get(url);
+            if (waiting != null) {
+                waiting.add(cb);
+                coalesced.incrementAndGet();
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(cb);
+            inFlight.put(url, waiting);
+        }
+        lookups.incrementAndGet();
+        executor.execute(() -> load(url));
+    }
+
+    /**
+     * Share of lookups answered without downloading the image (fresh hits and 304 revalidations).
+     */
+    double getHitRatio() {
+        long total = lookups.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    long getBytesServedFromCache() {
+        return bytesFromCache.get();
+    }
+
+    /** Calls that joined a lookup already in progress for the same URL. */
+    long getCoalescedRequests() {
+        return coalesced.get();
+    }
+
+    private void load(String url) {
+        Entry cached = memoryGet(url);
+        if (cached == null) {
+            cached = readDisk(url);
+            if (cached != null) {
+                memoryPut(url, cached);
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.storedAtMs >= maxAgeMs) {
+            memoryRemove(url);
+            fileFor(url).delete();
+            cached = null;
+        }
+        if (cached != null && now - cached.validatedAtMs < freshMs) {
+            serveCached(url, cached);
+            return;
+        }
+        Entry stale = cached;
+        fetcher.fetch(url, stale != null ? stale.etag : null, new BackendApi.Callback<Download>() {
+            @Override
+            public void onSuccess(Download download) {
+                if (download.notModified && stale != null) {
+                    stale.validatedAtMs = System.currentTimeMillis();
+                    executor.execute(() -> touchDisk(url, stale.validatedAtMs));
+                    serveCached(url, stale);
+                    return;
+                }
+                long downloadedAtMs = System.currentTimeMillis();
+                Entry fresh = new Entry(download.bytes, download.etag, downloadedAtMs, downloadedAtMs);
+                memoryPut(url, fresh);
+                executor.execute(() -> writeDisk(url, fresh));
+                complete(url, download.bytes, null);
+            }
+
+            @Override
+            public void onError(String message) {
+                complete(url, null, message);
+            }
+        });
+    }
+
+    private void serveCached(String url, Entry entry) {
+        hits.incrementAndGet();
+        bytesFromCache.addAndGet(entry.bytes.length);
+        complete(url, entry.bytes, null);
+    }
+
+    private void complete(String url, @Nullable byte[] bytes, @Nullable String error) {
+        List<BackendApi.Callback<byte[]>> waiting;
+        synchronized (inFlight) {
+            waiting = inFlight.remove(url);
+        }
+        if (waiting == null) {
+            return;
+        }
+        for (BackendApi.Callback<byte[]> cb : waiting) {
+            if (error != null) {
+                cb.onError(error);
+            } else {
+                cb.onSuccess(bytes);
+            }
+        }
+    }
+
+    private synchronized Entry memoryGet(String url) {
+        return memory.get(url);
+    }
+
+    private synchronized void memoryRemove(String url) {
+        Entry previous = memory.remove(url);
+        if (previous != null) {
+            memoryBytes -= previous.bytes.length;
+        }
+    }
+
+    private synchronized void memoryPut(String url, Entry entry) {
+        Entry previous = memory.remove(url);
+        if (previous != null) {
+            memoryBytes -= previous.bytes.length;
+        }
+        if (entry.bytes.length > memoryLimitBytes) {
+            return;
+        }
+        memory.put(url, entry);
+        memoryBytes += entry.bytes.length;
+        Iterator<Entry> eldest = memory.values().iterator();
+        while (memoryBytes > memoryLimitBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().bytes.length;
+            eldest.remove();
+        }
+    }
+
+    // Disk record: long storedAtMs and long validatedAtMs in the clear, then IV and AES-GCM ciphertext
+    // of (boolean hasEtag, UTF etag, image bytes).
+    private static final int HEADER_BYTES = 16;
+
+    @Nullable
+    private Entry readDisk(String url) {
+        File file = fileFor(url);
+        if (diskKey == null || !file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long storedAtMs = in.readLong();
+            long validatedAtMs = in.readLong();
+            if (System.currentTimeMillis() - storedAtMs >= maxAgeMs) {
+                file.delete();
+                return null;
+            }
+            byte[] record = new byte[(int) (file.length() - HEADER_BYTES)];
+            in.readFully(record);
+            DataInputStream plain = new DataInputStream(
+                    new ByteArrayInputStream(KeystoreCipher.open(diskKey, record)));
+            String etag = plain.readBoolean() ? plain.readUTF() : null;
+            byte[] bytes = new byte[plain.available()];
+            plain.readFully(bytes);
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(bytes, etag, storedAtMs, validatedAtMs);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeDisk(String url, Entry entry) {
+        if (diskKey == null || entry.bytes.length > diskLimitBytes
+                || (!directory.isDirectory() && !directory.mkdirs())) {
+            return;
+        }
+        File file = fileFor(url);
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            ByteArrayOutputStream plain = new ByteArrayOutputStream(entry.bytes.length + 64);
+            DataOutputStream data = new DataOutputStream(plain);
+            data.writeBoolean(entry.etag != null);
+            if (entry.etag != null) {
+                data.writeUTF(entry.etag);
+            }
+            data.write(entry.bytes);
+            out.writeLong(entry.storedAtMs);
+            out.writeLong(entry.validatedAtMs);
+            out.write(KeystoreCipher.seal(diskKey, plain.toByteArray()));
+        } catch (IOException | GeneralSecurityException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    private void touchDisk(String url, long validatedAtMs) {
+        File file = fileFor(url);
+        if (!file.isFile()) {
+            return;
+        }
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(8);
+            out.writeLong(validatedAtMs);
+        } catch (IOException e) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes expired files, leftovers of interrupted writes, and, without a key, every file.
+     */
+    void purgeDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (diskKey == null || !file.getName().endsWith(SUFFIX) || isExpired(file, now)) {
+                file.delete();
+            }
+        }
+    }
+
+    private boolean isExpired(File file, long nowMs) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return nowMs - in.readLong() >= maxAgeMs;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Deletes expired files, then least recently used ones until the directory fits {@link #diskLimitBytes}.
+     */
+    private void trimDisk() {
+        purgeDisk();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= diskLimitBytes) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= diskLimitBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File fileFor(String url) {
+        return new File(directory, sha256(url) + SUFFIX);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * Gzips large request bodies for selected endpoints and sets {@code Content-Encoding: gzip}.
+ *
+ * Compression is negotiated per host: if a compressed request is answered with 415 or 400,
+ * the host is remembered as not supporting it and the request is retried once uncompressed.
+ * Each compressed upload reports its original and wire sizes to the {@link Listener}.
+ */
+final class GzipRequestInterceptor implements Interceptor {
+    /** Below this the gzip header and lost Content-Length outweigh the savings. */
+    static final long DEFAULT_MIN_BYTES = 1024;
+
+    interface Listener {
+        void onRequestCompressed(String path, long originalBytes, long compressedBytes);
+    }
+
+    interface Settings {
+        boolean isEnabled();
+    }
+
+    /** Endpoint suffixes such as {@code /nfc}, so a base URL with a path prefix still matches. */
+    private final Set<String> paths;
+    private final long minBytes;
+    private final Settings settings;
+    private final Set<String> rejectingHosts = ConcurrentHashMap.newKeySet();
+    private volatile Listener listener;
+
+    GzipRequestInterceptor(@NonNull Set<String> paths, long minBytes, @NonNull Settings settings) {
+        this.paths = paths;
+        this.minBytes = minBytes;
+        this.settings = settings;
+    }
+
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    boolean isHostRejecting(@NonNull String hostKey) {
+        return rejectingHosts.contains(hostKey);
+    }
+
+    void resetHosts() {
+        rejectingHosts.clear();
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        String hostKey = hostKey(request);
+        if (body == null
+                || !settings.isEnabled()
+                || request.header("Content-Encoding") != null
+                || !matchesPath(request.url().encodedPath())
+                || rejectingHosts.contains(hostKey)
+                || body.contentLength() < minBytes) {
+            return chain.proceed(request);
+        }
+
+        Request compressed = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), new GzipRequestBody(body, request.url().encodedPath(), listener))
+                .build();
+        Response response = chain.proceed(compressed);
+        if (response.code() != 415 && response.code() != 400) {
+            return response;
+        }
+        rejectingHosts.add(hostKey);
+        response.close();
+        return chain.proceed(request);
+    }
+
+    private boolean matchesPath(String encodedPath) {
+        for (String path : paths) {
+            if (encodedPath.endsWith(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hostKey(Request request) {
+        return request.url().host() + ":" + request.url().port();
+    }
+
+    /**
+     * Streams the original body through a {@link GzipSink}; the compressed length is only known
+     * after writing, so the request goes out chunked.
+     */
+    private static final class GzipRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final String path;
+        @Nullable
+        private final Listener listener;
+
+        GzipRequestBody(RequestBody delegate, String path, @Nullable Listener listener) {
+            this.delegate = delegate;
+            this.path = path;
+            this.listener = listener;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(@NonNull BufferedSink sink) throws IOException {
+            CountingSink compressedCount = new CountingSink(sink);
+            GzipSink gzip = new GzipSink(compressedCount);
+            CountingSink originalCount = new CountingSink(gzip);
+            BufferedSink buffered = Okio.buffer(originalCount);
+            delegate.writeTo(buffered);
+            buffered.emit();
+            // Finishes the deflater and writes the gzip trailer; the counting sink keeps the request sink open.
+            gzip.close();
+            if (listener != null) {
+                listener.onRequestCompressed(path, originalCount.bytesWritten, compressedCount.bytesWritten);
+            }
+        }
+    }
+
+    /**
+     * Counts bytes passing through; closing it only flushes, so the wrapped sink stays open.
+     */
+    private static final class CountingSink extends ForwardingSink {
+        long bytesWritten;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(@NonNull Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            bytesWritten += byteCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Falls back to HTTP/1.1 for hosts that do not speak cleartext HTTP/2 (h2c prior knowledge).
+ *
+ * An HTTP/1.1-only server just drops the HTTP/2 preface, which OkHttp reports as a plain
+ * IOException. Such a failure only counts as a preface rejection while no h2c response has ever
+ * arrived from the host; once one has, every later failure is a real one and goes to the caller.
+ * Bodyless requests (the warm-up HEAD, face GETs) are replayed once over HTTP/1.1. Requests with a
+ * body are never replayed: the host is probed with a HEAD over HTTP/1.1 instead, and the original
+ * error is rethrown. Either way the host is switched to HTTP/1.1 only if the HTTP/1.1 call
+ * succeeds; a real outage fails both and changes nothing.
+ */
+final class H2cFallbackInterceptor implements Interceptor {
+    private final OkHttpClient http1Client;
+    private final Set<String> http1Hosts = ConcurrentHashMap.newKeySet();
+    private final Set<String> h2cHosts = ConcurrentHashMap.newKeySet();
+
+    H2cFallbackInterceptor(@NonNull OkHttpClient http1Client) {
+        this.http1Client = http1Client;
+    }
+
+    boolean usesHttp1(@NonNull HttpUrl url) {
+        return http1Hosts.contains(hostKey(url));
+    }
+
+    void reset() {
+        http1Hosts.clear();
+        h2cHosts.clear();
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = hostKey(request.url());
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled() || isConnectFailure(e) || h2cHosts.contains(host)) {
+                throw e;
+            }
+            Request http1Request = request.body() == null
+                    ? request
+                    : new Request.Builder().url(request.url().resolve("/")).head().build();
+            Response http1Response;
+            try {
+                http1Response = http1Client.newCall(http1Request).execute();
+            } catch (IOException retryFailure) {
+                e.addSuppressed(retryFailure);
+                throw e;
+            }
+            http1Hosts.add(host);
+            if (http1Request != request) {
+                http1Response.close();
+                throw e;
+            }
+            return http1Response;
+        }
+        h2cHosts.add(host);
+        return response;
+    }
+
+    private static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException
+                || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException
+                || e instanceof SocketTimeoutException;
+    }
+
+    private static String hostKey(HttpUrl url) {
+        return url.host() + ":" + url.port();
+    }
+}
@@ -0,0 +1,76 @@
+package com.demo.passport;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * AES-GCM for data the app keeps on disk, with keys held in the Android Keystore.
+ *
+ * A sealed record is the 12-byte IV followed by the ciphertext and tag.
+ */
+final class KeystoreCipher {
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+    static final int GCM_IV_BYTES = 12;
+
+    /**
+     * The AES key stored under {@code alias}, created on first use.
+     */
+    @NonNull
+    static SecretKey keystoreKey(@NonNull String alias) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("AndroidKeyStore");
+        keyStore.load(null);
+        Key existing = keyStore.getKey(alias, null);
+        if (existing instanceof SecretKey) {
+            return (SecretKey) existing;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, "AndroidKeyStore");
+        generator.init(new KeyGenParameterSpec.Builder(
+                alias, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    @NonNull
+    static byte[] seal(@NonNull SecretKey key, @NonNull byte[] plain) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        // No IV passed: Keystore keys require a provider-generated random IV.
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        if (iv.length != GCM_IV_BYTES) {
+            throw new GeneralSecurityException("Unexpected GCM IV length " + iv.length);
+        }
+        byte[] sealed = cipher.doFinal(plain);
+        byte[] record = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, record, 0, iv.length);
+        System.arraycopy(sealed, 0, record, iv.length, sealed.length);
+        return record;
+    }
+
+    @NonNull
+    static byte[] open(@NonNull SecretKey key, @NonNull byte[] record) throws GeneralSecurityException {
+        if (record.length <= GCM_IV_BYTES) {
+            throw new GeneralSecurityException("Record too short");
+        }
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, record, 0, GCM_IV_BYTES));
+        return cipher.doFinal(record, GCM_IV_BYTES, record.length - GCM_IV_BYTES);
+    }
+
+    private KeystoreCipher() {}
+}
@@ -3,7 +3,8 @@ package com.demo.passport;
 import android.app.PendingIntent;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.nfc.NfcAdapter;
 import android.nfc.Tag;
@@ -11,13 +12,17 @@ import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.util.TypedValue;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
 
@@ -29,8 +34,11 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -48,6 +56,8 @@ public class MainActivity extends AppCompatActivity {
         ERROR
     }
     private static final int REQUEST_TAKE_PHOTO = 1001;
+    private static final String OUTBOX_QUEUED_MESSAGE =
+            "Сервер недоступен: данные чипа сохранены и будут отправлены автоматически";
 
     private NfcAdapter nfcAdapter;
     private Button btnTakePhoto;
@@ -61,18 +71,26 @@ public class MainActivity extends AppCompatActivity {
     private TextView textBirthDate;
     private TextView textExpiryDate;
     private ImageView imageFace;
+    private Switch switchDebugCapture;
     private TextView textDebugRecognize;
     private TextView textDebugNfc;
     private TextView textDebugFace;
     private State currentState = State.CAMERA;
     private Models.MRZKeys mrzKeys;
     private String lastErrorMessage;
-    private String lastRecognizeResponse;
-    private String lastNfcResponse;
-    private String lastFaceResponse;
+    /** Bitmap in {@link #imageFace}, handed back to {@link FaceBitmapDecoder} when replaced. */
+    private Bitmap shownFace;
+    /** Size of {@link #imageFace}, read on the UI thread for decodes started from other threads. */
+    private volatile int faceTargetWidth;
+    private volatile int faceTargetHeight;
+    private volatile DebugCapture lastRecognizeResponse;
+    private volatile DebugCapture lastNfcResponse;
+    private volatile DebugCapture lastFaceResponse;
     private String pendingPhotoPath;
     private Uri pendingPhotoUri;
     private ExecutorService nfcExecutor;
+    private ExecutorService photoExecutor;
+    private volatile NfcOutboxDrainer outboxDrainer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -92,9 +110,21 @@ public class MainActivity extends AppCompatActivity {
         textExpiryDate = findViewById(R.id.textExpiryDate);
         imageFace = findViewById(R.id.imageFace);
         imageFace.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        updateFaceTargetSize();
+        imageFace.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) ->
+                updateFaceTargetSize());
+        switchDebugCapture = findViewById(R.id.textDebugTitle);
+        switchDebugCapture.setChecked(BackendConfig.isDebugCaptureEnabled());
+        switchDebugCapture.setOnCheckedChangeListener((button, checked) -> {
+            BackendConfig.setDebugCaptureEnabled(checked);
+            updateDebugListener();
+        });
         textDebugRecognize = findViewById(R.id.textDebugRecognize);
         textDebugNfc = findViewById(R.id.textDebugNfc);
         textDebugFace = findViewById(R.id.textDebugFace);
+        textDebugRecognize.setOnClickListener(v -> showFullDebugResponse("Ответ /recognize", lastRecognizeResponse));
+        textDebugNfc.setOnClickListener(v -> showFullDebugResponse("Ответ /nfc", lastNfcResponse));
+        textDebugFace.setOnClickListener(v -> showFullDebugResponse("Ответ face", lastFaceResponse));
 
         btnTakePhoto.setOnClickListener(v -> {
             Log.d(TAG, "Take photo clicked");
@@ -111,14 +141,26 @@ public class MainActivity extends AppCompatActivity {
 
         nfcAdapter = NfcAdapter.getDefaultAdapter(this);
         nfcExecutor = Executors.newSingleThreadExecutor();
+        photoExecutor = Executors.newSingleThreadExecutor();
+        nfcExecutor.execute(() -> {
+            // Uploads scans queued before the app was last killed.
+            NfcOutboxDrainer drainer = NfcOutboxDrainer.getInstance(this);
+            outboxDrainer = drainer;
+            if (drainer != null) {
+                drainer.requestDrain();
+            }
+        });
+        BackendApi.setCompressionListener((path, originalBytes, compressedBytes) ->
+                Log.i(TAG, "gzip " + path + ": " + originalBytes + " -> " + compressedBytes + " bytes"));
+        BackendApi.setConnectionReuseListener((path, reused) ->
+                Log.i(TAG, path + (reused ? ": reused warm connection" : ": opened new connection")));
         setState(State.CAMERA);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        BackendApi.setDebugListener(this::handleDebugResponse);
-        updateDebugPanel();
+        updateDebugListener();
     }
 
     @Override
@@ -127,12 +169,30 @@ public class MainActivity extends AppCompatActivity {
         BackendApi.setDebugListener(null);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Cached faces wait for a re-tap only while the app is in front.
+        NfcRetapCache retapCache = NfcRetapCache.getInstance();
+        if (retapCache != null) {
+            retapCache.clear();
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (nfcExecutor != null) {
             nfcExecutor.shutdownNow();
         }
+        if (photoExecutor != null) {
+            photoExecutor.shutdownNow();
+        }
+        if (imageFace != null) {
+            imageFace.setImageDrawable(null);
+        }
+        FaceBitmapDecoder.getInstance().release(shownFace);
+        shownFace = null;
     }
 
     @Override
@@ -212,9 +272,8 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         File photoFile = new File(pendingPhotoPath);
-        byte[] bytes;
         try {
-            bytes = PhotoCaptureUtils.readImageBytes(photoFile);
+            PhotoCaptureUtils.requireImageFile(photoFile);
         } catch (IllegalArgumentException e) {
             lastErrorMessage = "Фото слишком маленькое (нужно > 500KB)";
             setState(State.ERROR);
@@ -224,30 +283,30 @@ public class MainActivity extends AppCompatActivity {
             setState(State.ERROR);
             return;
         }
-        sendPhotoForRecognition(bytes);
+        sendPhotoForRecognition(photoFile);
     }
 
-    private void sendPhotoForRecognition(byte[] jpegBytes) {
+    private void sendPhotoForRecognition(File photoFile) {
         lastErrorMessage = null;
         setState(State.PHOTO_SENDING);
-        BackendApi.recognizePassport(jpegBytes, new BackendApi.Callback<Models.MRZKeys>() {
+        if (photoExecutor == null) {
+            photoExecutor = Executors.newSingleThreadExecutor();
+        }
+        photoExecutor.execute(() -> uploadPhotoInBackground(photoFile));
+    }
+
+    private void uploadPhotoInBackground(File photoFile) {
+        File uploadFile = preparePhotoForUpload(photoFile);
+        BackendApi.recognizePassport(uploadFile, new BackendApi.Callback<Models.MRZKeys>() {
             @Override
             public void onSuccess(Models.MRZKeys value) {
-                runOnUiThread(() -> {
-                    mrzKeys = normalizeMrzKeys(value);
-                    String validationError = validateMrzKeys(mrzKeys);
-                    if (validationError != null) {
-                        lastErrorMessage = validationError;
-                        setState(State.ERROR);
-                        return;
-                    }
-                    lastErrorMessage = null;
-                    setState(State.NFC_WAIT);
-                });
+                deleteUploadCopy(uploadFile, photoFile);
+                runOnUiThread(() -> applyRecognizedMrz(value));
             }
 
             @Override
             public void onError(String message) {
+                deleteUploadCopy(uploadFile, photoFile);
                 runOnUiThread(() -> {
                     lastErrorMessage = message;
                     setState(State.ERROR);
@@ -256,6 +315,116 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void applyRecognizedMrz(Models.MRZKeys value) {
+        mrzKeys = normalizeMrzKeys(value);
+        Models.MRZKeys correction = mrzKeys == null ? null : MrzKeyCorrector.check(mrzKeys).best();
+        if (correction != null) {
+            offerMrzCorrection(mrzKeys, correction);
+            return;
+        }
+        String validationError = validateMrzKeys(mrzKeys);
+        if (validationError != null) {
+            lastErrorMessage = validationError;
+            setState(State.ERROR);
+            return;
+        }
+        lastErrorMessage = null;
+        setState(State.NFC_WAIT);
+    }
+
+    /**
+     * Recognized keys failed their check digits but a confusion-corrected reading passes: ask before
+     * using it, or let the user fix the fields by hand.
+     */
+    private void offerMrzCorrection(Models.MRZKeys recognized, Models.MRZKeys correction) {
+        new AlertDialog.Builder(this)
+                .setTitle("Контрольные цифры MRZ не совпадают")
+                .setMessage("Похоже, при распознавании перепутаны символы. Исправленный вариант:\n\n"
+                        + describeCorrection(recognized, correction))
+                .setCancelable(false)
+                .setPositiveButton("Исправить", (dialog, which) -> {
+                    mrzKeys = correction;
+                    lastErrorMessage = null;
+                    setState(State.NFC_WAIT);
+                })
+                .setNegativeButton("Ввести вручную", (dialog, which) -> {
+                    inputDocumentNumber.setText(recognized.document_number);
+                    inputBirthDate.setText(recognized.date_of_birth);
+                    inputExpiryDate.setText(recognized.date_of_expiry);
+                    lastErrorMessage = "Проверьте MRZ-поля и нажмите “Проверка через чип”";
+                    setState(State.ERROR);
+                })
+                .show();
+    }
+
+    static String describeCorrection(Models.MRZKeys recognized, Models.MRZKeys correction) {
+        StringBuilder text = new StringBuilder();
+        appendCorrectedField(text, "Номер документа", recognized.document_number, correction.document_number);
+        appendCorrectedField(text, "Дата рождения", recognized.date_of_birth, correction.date_of_birth);
+        appendCorrectedField(text, "Срок действия", recognized.date_of_expiry, correction.date_of_expiry);
+        return text.toString().trim();
+    }
+
+    private static void appendCorrectedField(StringBuilder text, String label, String recognized, String corrected) {
+        text.append(label).append(": ").append(corrected);
+        if (!corrected.equals(recognized)) {
+            text.append(" (распознано ").append(recognized).append(')');
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Prepares the file for /recognize: downscale (options chosen from measured network speed),
+     * then crop to the MRZ band. Each stage falls back to its input if disabled, unsure or failing.
+     */
+    private File preparePhotoForUpload(File photoFile) {
+        File downscaled = downscalePhoto(photoFile);
+        File cropped = cropToMrz(downscaled);
+        if (cropped != downscaled) {
+            deleteUploadCopy(downscaled, photoFile);
+        }
+        return cropped;
+    }
+
+    private File downscalePhoto(File photoFile) {
+        if (!BackendConfig.isPhotoPreprocessingEnabled()) {
+            return photoFile;
+        }
+        PhotoPreprocessor.Options options = BackendApi.getUploadQualityController().currentOptions();
+        try {
+            PhotoPreprocessor.Result result = PhotoPreprocessor.process(photoFile, getCacheDir(), options);
+            Log.i(TAG, result.toString());
+            return result.outputFile;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Photo preprocessing failed, uploading original", e);
+            return photoFile;
+        }
+    }
+
+    private File cropToMrz(File photoFile) {
+        if (!BackendConfig.isMrzCropEnabled()) {
+            return photoFile;
+        }
+        try {
+            MrzCropper.Result result = MrzCropper.crop(photoFile, getCacheDir());
+            if (result == null) {
+                Log.i(TAG, "MRZ band not found with enough confidence, uploading full page");
+                return photoFile;
+            }
+            Log.i(TAG, result.toString());
+            return result.outputFile;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "MRZ crop failed, uploading full page", e);
+            return photoFile;
+        }
+    }
+
+    private static void deleteUploadCopy(File uploadFile, File photoFile) {
+        if (!uploadFile.equals(photoFile) && !uploadFile.delete()) {
+            Log.w(TAG, "Failed to delete upload copy " + uploadFile.getName());
+        }
+    }
+
     private void setState(State newState) {
         State previousState = currentState;
         if ((newState == State.NFC_WAIT || newState == State.NFC_READING) && nfcAdapter == null) {
@@ -279,32 +448,94 @@ public class MainActivity extends AppCompatActivity {
         textExpiryDate.setText(uiState.expiryDate);
         updateNfcDispatch(NfcDispatchTransition.from(previousState, newState));
         updateManualInputControls();
+        if (newState != previousState && shouldPrewarmConnection(newState)) {
+            BackendApi.prewarmConnection();
+        }
         if (uiState.toastMessage != null) {
             Toast.makeText(this, uiState.toastMessage, Toast.LENGTH_LONG).show();
         }
     }
 
-    private void handleDebugResponse(String source, String response) {
+    /**
+     * States that are followed by a backend call: CAMERA and PHOTO_SENDING by /recognize,
+     * NFC_WAIT and NFC_READING by /nfc.
+     */
+    static boolean shouldPrewarmConnection(State state) {
+        return state == State.CAMERA
+                || state == State.PHOTO_SENDING
+                || state == State.NFC_WAIT
+                || state == State.NFC_READING;
+    }
+
+    /**
+     * Captures responses only while the debug switch is on; switching it off also drops the captures
+     * already held.
+     */
+    private void updateDebugListener() {
+        if (BackendConfig.isDebugCaptureEnabled()) {
+            BackendApi.setDebugListener(this::handleDebugResponse);
+        } else {
+            BackendApi.setDebugListener(null);
+            lastRecognizeResponse = null;
+            lastNfcResponse = null;
+            lastFaceResponse = null;
+        }
+        updateDebugPanel();
+    }
+
+    private void updateFaceTargetSize() {
+        faceTargetWidth = FaceBitmapDecoder.targetWidth(imageFace);
+        faceTargetHeight = FaceBitmapDecoder.targetHeight(imageFace);
+    }
+
+    private void handleDebugResponse(String source, Supplier<String> response) {
+        DebugCapture capture = response instanceof DebugCapture
+                ? (DebugCapture) response
+                : new DebugCapture(response, BackendConfig.getDebugCaptureMaxChars());
+        // Built here, on the network thread, from the head of the response only; the full copy is made
+        // when the entry is tapped.
+        capture.preview();
         if ("recognize".equals(source)) {
-            lastRecognizeResponse = response;
+            lastRecognizeResponse = capture;
         } else if ("nfc".equals(source)) {
-            lastNfcResponse = response;
+            lastNfcResponse = capture;
         } else if ("face".equals(source)) {
-            lastFaceResponse = response;
+            lastFaceResponse = capture;
         }
         runOnUiThread(this::updateDebugPanel);
     }
 
     private void updateDebugPanel() {
-        if (textDebugRecognize != null) {
-            textDebugRecognize.setText(lastRecognizeResponse == null ? "—" : lastRecognizeResponse);
-        }
-        if (textDebugNfc != null) {
-            textDebugNfc.setText(lastNfcResponse == null ? "—" : lastNfcResponse);
+        showDebugPreview(textDebugRecognize, lastRecognizeResponse);
+        showDebugPreview(textDebugNfc, lastNfcResponse);
+        showDebugPreview(textDebugFace, lastFaceResponse);
+    }
+
+    private static void showDebugPreview(TextView view, DebugCapture capture) {
+        if (view != null) {
+            view.setText(capture == null ? "—" : capture.preview());
         }
-        if (textDebugFace != null) {
-            textDebugFace.setText(lastFaceResponse == null ? "—" : lastFaceResponse);
+    }
+
+    private void showFullDebugResponse(String title, DebugCapture capture) {
+        if (capture == null || !capture.isTruncatedPreview()) {
+            return;
         }
+        TextView text = new TextView(this);
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+        text.setTextIsSelectable(true);
+        text.setText(capture.get());
+        ScrollView scroll = new ScrollView(this);
+        int padding = (int) TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP, 16, getResources().getDisplayMetrics());
+        scroll.setPadding(padding, padding, padding, padding);
+        scroll.addView(text);
+        new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setView(scroll)
+                .setPositiveButton("Закрыть", null)
+                .show();
     }
 
     static Models.MRZKeys buildManualMrzKeys(
@@ -354,7 +585,14 @@ public class MainActivity extends AppCompatActivity {
         if (keys == null) {
             return "Нет данных MRZ для запуска NFC";
         }
-        return validateMrzInputs(keys.document_number, keys.date_of_birth, keys.date_of_expiry);
+        String formatError = validateMrzInputs(keys.document_number, keys.date_of_birth, keys.date_of_expiry);
+        if (formatError != null) {
+            return formatError;
+        }
+        if (MrzKeyCorrector.check(keys).status == MrzKeyCorrector.Status.INVALID) {
+            return "Контрольные цифры MRZ не совпадают: проверьте номер документа и даты";
+        }
+        return null;
     }
 
     static JsonObject tryBuildNfcPayload(Models.NfcResult result, StringBuilder errorMessage) {
@@ -379,6 +617,22 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Same checks as {@link #tryBuildNfcRawPayload} without building the payload;
+     * the upload body is streamed by {@link BackendApi} afterwards.
+     */
+    static boolean checkNfcRawPayload(Models.NfcRawResult result, StringBuilder errorMessage) {
+        try {
+            NfcPayloadBuilder.requireRawResult(result);
+            return true;
+        } catch (IllegalArgumentException e) {
+            if (errorMessage != null) {
+                errorMessage.append(e.getMessage());
+            }
+            return false;
+        }
+    }
+
     static String validateNfcResult(Models.NfcResult result) {
         if (result == null) {
             return "Нет NFC-данных";
@@ -465,6 +719,9 @@ public class MainActivity extends AppCompatActivity {
         normalized.document_number = normalizedDocumentNumber;
         normalized.date_of_birth = normalizedBirth;
         normalized.date_of_expiry = normalizedExpiry;
+        normalized.document_number_check_digit = keys.document_number_check_digit;
+        normalized.date_of_birth_check_digit = keys.date_of_birth_check_digit;
+        normalized.date_of_expiry_check_digit = keys.date_of_expiry_check_digit;
         return normalized;
     }
 
@@ -544,8 +801,10 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         mrzKeys = keys;
-        lastNfcResponse = buildManualDebugPayload(keys);
-        updateDebugPanel();
+        if (BackendConfig.isDebugCaptureEnabled()) {
+            lastNfcResponse = DebugCapture.of(buildManualDebugPayload(keys));
+            updateDebugPanel();
+        }
         lastErrorMessage = null;
         setState(State.NFC_WAIT);
     }
@@ -554,20 +813,34 @@ public class MainActivity extends AppCompatActivity {
         // Track read time for diagnostics
         long readStartTime = System.currentTimeMillis();
 
-        // Server-side decoding: read raw DG1/DG2 bytes without parsing
-        NfcReadResult nfcResult = NfcPassportReader.readPassportRaw(tag, keys);
+        // Server-side decoding: read raw DG1/DG2 bytes without parsing.
+        // Look-alike variants of the keys are tried on the same connection if BAC rejects them.
+        NfcReadResult nfcResult = NfcPassportReader.readPassportRaw(tag, MrzKeyCorrector.bacCandidates(keys),
+                BackendConfig.getMaxBacAttempts(), NfcChipProfiles.getInstance(this), NfcPartialReads.getInstance(),
+                NfcRetapCache.getInstance());
 
         long readTimeMs = System.currentTimeMillis() - readStartTime;
+        if (nfcResult.accessCandidateIndex > 0 && nfcResult.data != null) {
+            Models.MRZKeys working = nfcResult.data.mrzKeys;
+            runOnUiThread(() -> {
+                if (mrzKeys == keys) {
+                    mrzKeys = working;
+                }
+            });
+        }
 
         // Create diagnostic data regardless of success/failure
         NfcDiagnosticData diagnosticData = NfcDiagnosticData.fromNfcReadResult(
-                nfcResult, keys, readTimeMs);
+                nfcResult, nfcResult.data != null ? nfcResult.data.mrzKeys : keys, readTimeMs);
 
         // Handle non-success statuses - NO backend calls for client-side errors
         if (!nfcResult.isSuccess()) {
             runOnUiThread(() -> {
                 // Use canonical user message from status
                 lastErrorMessage = nfcResult.getUserMessage();
+                if (nfcResult.dg2ResumeOffset > 0) {
+                    lastErrorMessage += " Приложите документ снова в течение минуты — чтение продолжится с места обрыва.";
+                }
                 Log.w(TAG, "NFC read failed: " + nfcResult);
                 setState(State.ERROR);
                 // Always show diagnostic screen, even on error
@@ -600,8 +873,7 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         StringBuilder payloadError = new StringBuilder();
-        JsonObject payload = tryBuildNfcRawPayload(result, payloadError);
-        if (payload == null) {
+        if (!checkNfcRawPayload(result, payloadError)) {
             runOnUiThread(() -> {
                 lastErrorMessage = "Ошибка подготовки NFC: " + payloadError;
                 setState(State.ERROR);
@@ -609,46 +881,38 @@ public class MainActivity extends AppCompatActivity {
             });
             return;
         }
-        BackendApi.sendNfcRawAndParse(payload, new BackendApi.Callback<Models.NfcScanResponse>() {
+        // Decoded on the NFC executor while the upload is in flight.
+        CompletableFuture<Bitmap> localFace = NfcDiagnosticData.decodeFaceImageAsync(result.dg2Raw,
+                faceTargetWidth, faceTargetHeight);
+        // Shared by the live upload and the outbox, so a retry of a scan the backend already stored
+        // returns that scan instead of creating a second one.
+        String idempotencyKey = UUID.randomUUID().toString();
+        BackendApi.Callback<Models.NfcScanResponse> scanCallback = new BackendApi.Callback<Models.NfcScanResponse>() {
             @Override
             public void onSuccess(Models.NfcScanResponse value) {
-                String faceUrl = ensureAbsoluteUrl(value.face_image_url);
-                if (faceUrl == null || faceUrl.trim().isEmpty()) {
-                    runOnUiThread(() -> {
-                        lastErrorMessage = "Не удалось получить URL фото";
-                        setState(State.ERROR);
-                        openDiagnosticScreen(finalDiagnosticData);
-                    });
+                NfcOutboxDrainer drainer = outboxDrainer;
+                if (drainer != null) {
+                    drainer.requestDrain();
+                }
+                if (BackendConfig.isServerFaceVerificationEnabled()) {
+                    fetchServerFace(value, finalDiagnosticData);
                     return;
                 }
-                BackendApi.fetchFaceImage(faceUrl, new BackendApi.Callback<byte[]>() {
-                    @Override
-                    public void onSuccess(byte[] faceBytes) {
-                        runOnUiThread(() -> {
-                            if (imageFace != null && faceBytes.length > 0) {
-                                imageFace.setImageBitmap(
-                                        BitmapFactory.decodeByteArray(faceBytes, 0, faceBytes.length)
-                                );
-                            }
-                            lastErrorMessage = null;
-                            setState(State.RESULT);
-                            // Show diagnostic screen after successful NFC read
-                            openDiagnosticScreen(finalDiagnosticData);
-                        });
-                    }
-
-                    @Override
-                    public void onError(String message) {
-                        runOnUiThread(() -> {
-                            lastErrorMessage = message;
-                            setState(State.ERROR);
-                            // Show diagnostic screen even on backend error
-                            openDiagnosticScreen(finalDiagnosticData);
-                        });
+                localFace.whenComplete((face, error) -> {
+                    if (face == null) {
+                        // JPEG2000 or undecodable DG2: the server copy is already converted to JPEG.
+                        fetchServerFace(value, finalDiagnosticData);
+                        return;
                     }
+                    runOnUiThread(() -> showNfcResult(face, finalDiagnosticData));
                 });
             }
 
+            @Override
+            public void onFailure(BackendApi.Failure failure) {
+                onError(queueForRetry(result, idempotencyKey, failure) ? OUTBOX_QUEUED_MESSAGE : failure.message);
+            }
+
             @Override
             public void onError(String message) {
                 runOnUiThread(() -> {
@@ -658,9 +922,83 @@ public class MainActivity extends AppCompatActivity {
                     openDiagnosticScreen(finalDiagnosticData);
                 });
             }
+        };
+        if (BackendConfig.isNfcMultipartUploadEnabled()) {
+            BackendApi.sendNfcRawMultipartAndParse(result, idempotencyKey, scanCallback);
+        } else {
+            BackendApi.sendNfcRawAndParse(result, idempotencyKey, scanCallback);
+        }
+    }
+
+    /**
+     * Keeps the chip data of a scan that failed to upload for a transient reason, so the
+     * traveller does not have to tap the passport again once the backend is back.
+     *
+     * @return true if the scan was queued
+     */
+    private boolean queueForRetry(Models.NfcRawResult result, String idempotencyKey, BackendApi.Failure failure) {
+        NfcOutboxDrainer drainer = outboxDrainer;
+        if (drainer == null || !failure.isTransient()) {
+            return false;
+        }
+        try {
+            drainer.enqueue(result, idempotencyKey);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot queue NFC scan", e);
+            return false;
+        }
+    }
+
+    /**
+     * Downloads the stored face from the backend, used when verification is requested
+     * or the chip image cannot be decoded on device.
+     */
+    private void fetchServerFace(Models.NfcScanResponse value, NfcDiagnosticData diagnosticData) {
+        String faceUrl = ensureAbsoluteUrl(value.face_image_url);
+        if (faceUrl == null || faceUrl.trim().isEmpty()) {
+            runOnUiThread(() -> {
+                lastErrorMessage = "Не удалось получить URL фото";
+                setState(State.ERROR);
+                openDiagnosticScreen(diagnosticData);
+            });
+            return;
+        }
+        FaceCache.getInstance(this).get(faceUrl, new BackendApi.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] faceBytes) {
+                if (faceBytes.length == 0) {
+                    runOnUiThread(() -> showNfcResult(null, diagnosticData));
+                    return;
+                }
+                FaceBitmapDecoder.getInstance().decodeInto(imageFace, faceBytes, 0, faceBytes.length,
+                        faceTargetWidth, faceTargetHeight, face -> showNfcResult(face, diagnosticData));
+            }
+
+            @Override
+            public void onError(String message) {
+                runOnUiThread(() -> {
+                    lastErrorMessage = message;
+                    setState(State.ERROR);
+                    // Show diagnostic screen even on backend error
+                    openDiagnosticScreen(diagnosticData);
+                });
+            }
         });
     }
 
+    private void showNfcResult(Bitmap face, NfcDiagnosticData diagnosticData) {
+        if (imageFace != null && face != null) {
+            imageFace.setImageBitmap(face);
+            FaceBitmapDecoder.getInstance().release(shownFace);
+            shownFace = face;
+        }
+        lastErrorMessage = null;
+        setState(State.RESULT);
+        // Show diagnostic screen after successful NFC read
+        openDiagnosticScreen(diagnosticData);
+    }
+
     /**
      * Opens the NFC diagnostic screen with the given data.
      */
@@ -669,6 +1007,14 @@ public class MainActivity extends AppCompatActivity {
             Log.w(TAG, "Cannot open diagnostic screen: data is null");
             return;
         }
+        NfcOutboxDrainer drainer = outboxDrainer;
+        if (drainer != null) {
+            data.outboxDepth = drainer.getOutbox().size();
+            data.outboxOldestAgeMs = drainer.getOutbox().oldestAgeMs(System.currentTimeMillis());
+        }
+        FaceCache faceCache = FaceCache.getInstance(this);
+        data.faceCacheHitRatio = faceCache.getHitRatio();
+        data.faceCacheBytesServed = faceCache.getBytesServedFromCache();
         Intent intent = NfcDiagnosticActivity.createIntent(this, data);
         startActivity(intent);
     }
@@ -5,6 +5,19 @@ public final class Models {
         public String document_number;
         public String date_of_birth;
         public String date_of_expiry;
+        /** Check digits printed after each field in the MRZ; null when not known. */
+        public String document_number_check_digit;
+        public String date_of_birth_check_digit;
+        public String date_of_expiry_check_digit;
+    }
+
+    /**
+     * Body of a successful /recognize call: either {@code mrz} (nested or flat fields) or {@code error}.
+     * {@code mrz} is null when a field is missing.
+     */
+    public static final class RecognizeResponse {
+        public MRZKeys mrz;
+        public com.google.gson.JsonElement error;
     }
 
     public static final class NfcResult {
@@ -14,7 +27,8 @@ public final class Models {
 
     /**
      * Raw NFC data for server-side decoding.
-     * Contains raw DG1/DG2 bytes without client-side parsing.
+     * Contains raw DG1/DG2 bytes without client-side parsing. The arrays are exactly the size of
+     * the EF as read from the chip and are passed to the payload encoders as is, never copied.
      */
     public static final class NfcRawResult {
         /** Raw DG1 (MRZ) bytes from the chip */
@@ -0,0 +1,319 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the machine-readable zone on a downscaled luma image of a document page.
+ *
+ * Pure Java so it can be tested on the JVM; Android decoding and cropping live in {@link MrzCropper}.
+ *
+ * Algorithm:
+ * 1. Binarize with an Otsu threshold.
+ * 2. Build a row profile: dark runs per row and horizontal span of dark pixels.
+ *    MRZ rows are long lines of evenly spaced glyphs, so they have many runs across most of the width.
+ * 3. Merge text rows into lines and take the bottom-most cluster of 2-3 lines of similar height
+ *    (TD3/TD2 have two lines, TD1 has three).
+ * 4. Score the cluster. The strongest signal is the fixed OCR-B pitch: glyph centers, including the
+ *    long runs of {@code <} fillers, are spaced evenly, while ordinary printed text is not.
+ */
+final class MrzBandLocator {
+    /** Below this confidence callers should upload the full page instead of the crop. */
+    static final float MIN_CONFIDENCE = 0.6f;
+
+    static final int MIN_GLYPHS_PER_LINE = 20;
+    static final float MIN_LINE_SPAN = 0.5f;
+    private static final int MAX_ROW_GAP = 1;
+    private static final int MIN_LINE_HEIGHT = 3;
+    private static final int MAX_MRZ_LINES = 3;
+
+    /**
+     * Located MRZ region in input image coordinates, padded by half a line height.
+     */
+    static final class Band {
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        final int lineCount;
+        final float confidence;
+
+        Band(int left, int top, int right, int bottom, int lineCount, float confidence) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.lineCount = lineCount;
+            this.confidence = confidence;
+        }
+
+        int width() {
+            return right - left;
+        }
+
+        int height() {
+            return bottom - top;
+        }
+
+        boolean isConfident() {
+            return confidence >= MIN_CONFIDENCE;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Band{" + left + "," + top + "-" + right + "," + bottom
+                    + ", lines=" + lineCount + ", confidence=" + confidence + "}";
+        }
+    }
+
+    private static final class Line {
+        final int top;
+        final int bottom;
+        final int left;
+        final int right;
+
+        Line(int top, int bottom, int left, int right) {
+            this.top = top;
+            this.bottom = bottom;
+            this.left = left;
+            this.right = right;
+        }
+
+        int height() {
+            return bottom - top;
+        }
+    }
+
+    /**
+     * Locates the MRZ band.
+     *
+     * @param luma   8-bit luminance, row-major, {@code width * height} bytes
+     * @return the best candidate band, or null if no line cluster looks like text at all
+     */
+    @Nullable
+    static Band locate(@NonNull byte[] luma, int width, int height) {
+        if (width <= 0 || height <= 0 || luma.length < width * height) {
+            throw new IllegalArgumentException("Luma buffer does not match image size");
+        }
+        int threshold = otsuThreshold(luma, width * height);
+
+        List<Line> lines = findTextLines(luma, width, height, threshold);
+        if (lines.isEmpty()) {
+            return null;
+        }
+
+        // Bottom-most cluster of lines with similar height and line spacing.
+        int last = lines.size() - 1;
+        Line anchor = lines.get(last);
+        int first = last;
+        while (first > 0 && last - first + 1 < MAX_MRZ_LINES) {
+            Line candidate = lines.get(first - 1);
+            Line below = lines.get(first);
+            int refHeight = anchor.height();
+            boolean similarHeight = Math.abs(candidate.height() - refHeight) <= refHeight / 2 + 1;
+            boolean closeEnough = below.top - candidate.bottom <= refHeight * 3 / 2 + 1;
+            if (!similarHeight || !closeEnough) {
+                break;
+            }
+            first--;
+        }
+
+        List<Line> cluster = lines.subList(first, last + 1);
+        float confidence = score(cluster, luma, width, threshold);
+
+        int left = width;
+        int right = 0;
+        int heightSum = 0;
+        for (Line line : cluster) {
+            left = Math.min(left, line.left);
+            right = Math.max(right, line.right);
+            heightSum += line.height();
+        }
+        int pad = Math.max(2, heightSum / cluster.size() / 2);
+        int horizontalPad = Math.max(2, width / 50);
+        return new Band(
+                Math.max(0, left - horizontalPad),
+                Math.max(0, cluster.get(0).top - pad),
+                Math.min(width, right + horizontalPad + 1),
+                Math.min(height, cluster.get(cluster.size() - 1).bottom + pad),
+                cluster.size(),
+                confidence
+        );
+    }
+
+    private static List<Line> findTextLines(byte[] luma, int width, int height, int threshold) {
+        List<Line> lines = new ArrayList<>();
+        int minSpan = (int) (width * MIN_LINE_SPAN);
+        int lineStart = -1;
+        int lineLeft = width;
+        int lineRight = 0;
+        int gap = 0;
+        for (int y = 0; y < height; y++) {
+            int runs = 0;
+            int firstDark = -1;
+            int lastDark = -1;
+            boolean previousDark = false;
+            int rowOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                boolean dark = (luma[rowOffset + x] & 0xFF) < threshold;
+                if (dark) {
+                    if (!previousDark) {
+                        runs++;
+                    }
+                    if (firstDark < 0) {
+                        firstDark = x;
+                    }
+                    lastDark = x;
+                }
+                previousDark = dark;
+            }
+            boolean textRow = runs >= MIN_GLYPHS_PER_LINE && lastDark - firstDark >= minSpan;
+            if (textRow) {
+                if (lineStart < 0) {
+                    lineStart = y;
+                    lineLeft = width;
+                    lineRight = 0;
+                }
+                lineLeft = Math.min(lineLeft, firstDark);
+                lineRight = Math.max(lineRight, lastDark);
+                gap = 0;
+            } else if (lineStart >= 0) {
+                gap++;
+                if (gap > MAX_ROW_GAP) {
+                    int lineEnd = y - gap + 1;
+                    if (lineEnd - lineStart >= MIN_LINE_HEIGHT) {
+                        lines.add(new Line(lineStart, lineEnd, lineLeft, lineRight));
+                    }
+                    lineStart = -1;
+                    gap = 0;
+                }
+            }
+        }
+        if (lineStart >= 0 && height - gap - lineStart >= MIN_LINE_HEIGHT) {
+            lines.add(new Line(lineStart, height - gap, lineLeft, lineRight));
+        }
+        return lines;
+    }
+
+    private static float score(List<Line> cluster, byte[] luma, int width, int threshold) {
+        int count = cluster.size();
+        float lineScore = count >= 2 ? 1f : 0f;
+
+        float spanSum = 0f;
+        int minHeight = Integer.MAX_VALUE;
+        int maxHeight = 0;
+        float pitchSum = 0f;
+        for (Line line : cluster) {
+            spanSum += (float) (line.right - line.left) / width;
+            minHeight = Math.min(minHeight, line.height());
+            maxHeight = Math.max(maxHeight, line.height());
+            pitchSum += pitchRegularity(line, luma, width, threshold);
+        }
+        float spanScore = Math.min(1f, (spanSum / count) / 0.8f);
+        float heightScore = 1f - (float) (maxHeight - minHeight) / maxHeight;
+        float pitchScore = pitchSum / count;
+
+        float confidence = 0.25f * lineScore + 0.2f * spanScore + 0.15f * heightScore + 0.4f * pitchScore;
+        // A single line is never a complete MRZ, however regular it looks.
+        return count >= 2 ? confidence : confidence / 2f;
+    }
+
+    /**
+     * Fraction of gaps between neighbouring glyph centers that match the dominant pitch
+     * (or twice it, for glyphs that merged at low resolution). Close to 1.0 for monospaced MRZ text.
+     */
+    static float pitchRegularity(int[] glyphCenters) {
+        if (glyphCenters.length < MIN_GLYPHS_PER_LINE) {
+            return 0f;
+        }
+        int[] gaps = new int[glyphCenters.length - 1];
+        for (int i = 1; i < glyphCenters.length; i++) {
+            gaps[i - 1] = glyphCenters[i] - glyphCenters[i - 1];
+        }
+        int[] sorted = gaps.clone();
+        Arrays.sort(sorted);
+        float pitch = sorted[sorted.length / 2];
+        if (pitch <= 0) {
+            return 0f;
+        }
+        int regular = 0;
+        for (int gap : gaps) {
+            float ratio = gap / pitch;
+            float nearest = Math.round(ratio);
+            if ((nearest == 1f || nearest == 2f) && Math.abs(ratio - nearest) <= 0.2f) {
+                regular++;
+            }
+        }
+        return (float) regular / gaps.length;
+    }
+
+    private static float pitchRegularity(Line line, byte[] luma, int width, int threshold) {
+        List<Integer> centers = new ArrayList<>();
+        int blobStart = -1;
+        for (int x = line.left; x <= line.right + 1; x++) {
+            boolean dark = false;
+            if (x <= line.right) {
+                for (int y = line.top; y < line.bottom && !dark; y++) {
+                    dark = (luma[y * width + x] & 0xFF) < threshold;
+                }
+            }
+            if (dark && blobStart < 0) {
+                blobStart = x;
+            } else if (!dark && blobStart >= 0) {
+                centers.add((blobStart + x - 1) / 2);
+                blobStart = -1;
+            }
+        }
+        int[] array = new int[centers.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = centers.get(i);
+        }
+        return pitchRegularity(array);
+    }
+
+    /**
+     * Otsu's method over the 8-bit histogram.
+     */
+    static int otsuThreshold(@NonNull byte[] luma, int pixelCount) {
+        int[] histogram = new int[256];
+        for (int i = 0; i < pixelCount; i++) {
+            histogram[luma[i] & 0xFF]++;
+        }
+        long total = pixelCount;
+        long sum = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += (long) i * histogram[i];
+        }
+        long sumBackground = 0;
+        long weightBackground = 0;
+        double bestVariance = -1;
+        int threshold = 128;
+        for (int t = 0; t < 256; t++) {
+            weightBackground += histogram[t];
+            if (weightBackground == 0) {
+                continue;
+            }
+            long weightForeground = total - weightBackground;
+            if (weightForeground == 0) {
+                break;
+            }
+            sumBackground += (long) t * histogram[t];
+            double meanBackground = (double) sumBackground / weightBackground;
+            double meanForeground = (double) (sum - sumBackground) / weightForeground;
+            double diff = meanBackground - meanForeground;
+            double variance = (double) weightBackground * weightForeground * diff * diff;
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = t + 1;
+            }
+        }
+        return threshold;
+    }
+
+    private MrzBandLocator() {}
+}
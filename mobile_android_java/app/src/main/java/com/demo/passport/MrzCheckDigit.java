@@ -0,0 +1,43 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ICAO 9303 check digits: characters weighted 7, 3, 1 repeating, summed modulo 10.
+ * Digits count as their value, {@code A}-{@code Z} as 10-35 and the filler {@code <} as 0.
+ */
+final class MrzCheckDigit {
+    private static final int[] WEIGHTS = {7, 3, 1};
+
+    /**
+     * @return the check digit of {@code field}, or -1 if it contains a character outside the MRZ set
+     */
+    static int compute(@NonNull CharSequence field) {
+        int sum = 0;
+        for (int i = 0; i < field.length(); i++) {
+            int value = value(field.charAt(i));
+            if (value < 0) {
+                return -1;
+            }
+            sum += value * WEIGHTS[i % WEIGHTS.length];
+        }
+        return sum % 10;
+    }
+
+    static boolean isValid(@NonNull CharSequence field, char checkDigit) {
+        int expected = compute(field);
+        return expected >= 0 && checkDigit == (char) ('0' + expected);
+    }
+
+    static int value(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        return c == '<' ? 0 : -1;
+    }
+
+    private MrzCheckDigit() {}
+}
@@ -0,0 +1,171 @@
+package com.demo.passport;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Crops the photo to the MRZ band so /recognize only receives the machine-readable zone.
+ *
+ * The band is located by {@link MrzBandLocator} on a small luma copy of the photo, then the matching
+ * region is decoded from the full image with {@link BitmapRegionDecoder}. The input must already be
+ * upright (see {@link PhotoPreprocessor}); a rotated page simply yields a low-confidence band.
+ */
+final class MrzCropper {
+    static final int LOCATOR_LONG_EDGE = 640;
+    static final int CROP_JPEG_QUALITY = 90;
+
+    static final class Result {
+        final File outputFile;
+        final MrzBandLocator.Band band;
+        final long originalBytes;
+        final long outputBytes;
+        final long elapsedMs;
+
+        Result(File outputFile, MrzBandLocator.Band band, long originalBytes, long outputBytes, long elapsedMs) {
+            this.outputFile = outputFile;
+            this.band = band;
+            this.originalBytes = originalBytes;
+            this.outputBytes = outputBytes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "mrz_crop[confidence=%.2f, lines=%d]: %d -> %d bytes in %d ms",
+                    band.confidence, band.lineCount, originalBytes, outputBytes, elapsedMs);
+        }
+    }
+
+    /** Downscaled luma copy of a photo, with the photo's full size. */
+    static final class Luma {
+        final byte[] pixels;
+        final int width;
+        final int height;
+        final int fullWidth;
+        final int fullHeight;
+
+        Luma(byte[] pixels, int width, int height, int fullWidth, int fullHeight) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.fullWidth = fullWidth;
+            this.fullHeight = fullHeight;
+        }
+    }
+
+    /**
+     * Writes the MRZ crop of {@code input} into a new file in {@code outputDir}.
+     *
+     * @return the crop, or null if the MRZ was not found with enough confidence
+     *         and the full page should be uploaded instead
+     */
+    @Nullable
+    static Result crop(@NonNull File input, @NonNull File outputDir) throws IOException {
+        long startNs = System.nanoTime();
+        String path = input.getAbsolutePath();
+        Luma small = decodeLuma(input, LOCATOR_LONG_EDGE);
+
+        MrzBandLocator.Band band = MrzBandLocator.locate(small.pixels, small.width, small.height);
+        if (band == null || !band.isConfident()) {
+            return null;
+        }
+
+        Rect region = scaleRegion(band, small.width, small.height, small.fullWidth, small.fullHeight);
+        @SuppressWarnings("deprecation")
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(path, false);
+        Bitmap cropped;
+        try {
+            cropped = decoder.decodeRegion(region, null);
+        } finally {
+            decoder.recycle();
+        }
+        if (cropped == null) {
+            throw new IOException("Cannot decode MRZ region");
+        }
+
+        File output = File.createTempFile("passport_mrz_", ".jpg", outputDir);
+        try (OutputStream stream = new FileOutputStream(output)) {
+            if (!cropped.compress(Bitmap.CompressFormat.JPEG, CROP_JPEG_QUALITY, stream)) {
+                throw new IOException("JPEG encoding failed");
+            }
+        } catch (IOException e) {
+            output.delete();
+            throw e;
+        } finally {
+            cropped.recycle();
+        }
+        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+        return new Result(output, band, input.length(), output.length(), elapsedMs);
+    }
+
+    /**
+     * Decodes a subsampled copy of {@code input} (long edge at least {@code longEdge}) as luma.
+     */
+    @NonNull
+    private static Luma decodeLuma(@NonNull File input, int longEdge) throws IOException {
+        String path = input.getAbsolutePath();
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Cannot decode photo bounds");
+        }
+
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = PhotoPreprocessor.calculateInSampleSize(bounds.outWidth, bounds.outHeight, longEdge);
+        Bitmap small = BitmapFactory.decodeFile(path, decode);
+        if (small == null) {
+            throw new IOException("Cannot decode photo");
+        }
+        int width = small.getWidth();
+        int height = small.getHeight();
+        int[] pixels = new int[width * height];
+        small.getPixels(pixels, 0, width, 0, 0, width, height);
+        small.recycle();
+        return new Luma(argbToLuma(pixels), width, height, bounds.outWidth, bounds.outHeight);
+    }
+
+    /**
+     * Maps a band found on the downscaled copy back to full-resolution coordinates.
+     */
+    static Rect scaleRegion(MrzBandLocator.Band band, int smallWidth, int smallHeight, int fullWidth, int fullHeight) {
+        double scaleX = (double) fullWidth / smallWidth;
+        double scaleY = (double) fullHeight / smallHeight;
+        return new Rect(
+                Math.max(0, (int) Math.floor(band.left * scaleX)),
+                Math.max(0, (int) Math.floor(band.top * scaleY)),
+                Math.min(fullWidth, (int) Math.ceil(band.right * scaleX)),
+                Math.min(fullHeight, (int) Math.ceil(band.bottom * scaleY))
+        );
+    }
+
+    /**
+     * Converts ARGB_8888 pixels to 8-bit luma (ITU-R BT.601 weights).
+     */
+    static byte[] argbToLuma(@NonNull int[] pixels) {
+        byte[] luma = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            luma[i] = (byte) ((r * 299 + g * 587 + b * 114) / 1000);
+        }
+        return luma;
+    }
+
+    private MrzCropper() {}
+}
@@ -0,0 +1,280 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks recognized BAC keys against their ICAO 9303 check digits and proposes corrections.
+ *
+ * A field is checked only when its check digit is known (from the backend's check digit fields or
+ * its MRZ lines). When a check fails, candidates are built by swapping characters OCR tends to confuse
+ * (O/0, I/1, B/8, S/5, ...) in the field and its check digit, at most {@link #MAX_SUBSTITUTIONS}
+ * per field. Candidates that satisfy every check digit are ranked by total confusion cost.
+ */
+final class MrzKeyCorrector {
+    static final int MAX_SUBSTITUTIONS = 2;
+    static final int MAX_CANDIDATES = 3;
+
+    /**
+     * Confusable pairs as {first, second, cost}; letter/digit look-alikes are cheaper than digit/digit
+     * misreads, which need a worse image.
+     */
+    private static final String[][] CONFUSIONS = {
+            {"0", "O", "1"}, {"0", "Q", "1"}, {"0", "D", "1"}, {"O", "Q", "1"}, {"O", "D", "1"},
+            {"1", "I", "1"}, {"1", "L", "1"}, {"I", "L", "1"}, {"2", "Z", "1"}, {"5", "S", "1"},
+            {"6", "G", "1"}, {"8", "B", "1"}, {"4", "A", "2"}, {"7", "T", "2"}, {"U", "V", "2"},
+            {"3", "8", "2"}, {"6", "8", "2"}, {"5", "6", "2"}, {"8", "9", "2"}, {"1", "7", "2"},
+    };
+
+    enum Status {
+        /** No check digit known; only the format was validated. */
+        UNCHECKED,
+        VALID,
+        INVALID
+    }
+
+    static final class Check {
+        final Status status;
+        /** Best first; empty unless {@link Status#INVALID}. */
+        final List<Models.MRZKeys> corrections;
+
+        Check(Status status, List<Models.MRZKeys> corrections) {
+            this.status = status;
+            this.corrections = corrections;
+        }
+
+        @Nullable
+        Models.MRZKeys best() {
+            return corrections.isEmpty() ? null : corrections.get(0);
+        }
+    }
+
+    /** One way of reading a field, with the check digit that goes with it. */
+    private static final class Variant {
+        final String value;
+        final char checkDigit;
+        final int cost;
+
+        Variant(String value, char checkDigit, int cost) {
+            this.value = value;
+            this.checkDigit = checkDigit;
+            this.cost = cost;
+        }
+    }
+
+    @NonNull
+    static Check check(@NonNull Models.MRZKeys keys) {
+        boolean anyChecked = false;
+        boolean allValid = true;
+        String[] values = {keys.document_number, keys.date_of_birth, keys.date_of_expiry};
+        String[] checkDigits = {
+                keys.document_number_check_digit, keys.date_of_birth_check_digit, keys.date_of_expiry_check_digit};
+        for (int i = 0; i < values.length; i++) {
+            Character checkDigit = singleChar(checkDigits[i]);
+            if (values[i] == null || checkDigit == null) {
+                continue;
+            }
+            anyChecked = true;
+            allValid &= MrzCheckDigit.isValid(values[i], checkDigit);
+        }
+        if (!anyChecked) {
+            return new Check(Status.UNCHECKED, Collections.emptyList());
+        }
+        if (allValid) {
+            return new Check(Status.VALID, Collections.emptyList());
+        }
+        return new Check(Status.INVALID, corrections(keys));
+    }
+
+    /**
+     * Corrected keys, lowest confusion cost first; each satisfies every known check digit.
+     */
+    @NonNull
+    static List<Models.MRZKeys> corrections(@NonNull Models.MRZKeys keys) {
+        List<Variant> numbers = variants(keys.document_number, keys.document_number_check_digit, false);
+        List<Variant> births = variants(keys.date_of_birth, keys.date_of_birth_check_digit, true);
+        List<Variant> expiries = variants(keys.date_of_expiry, keys.date_of_expiry_check_digit, true);
+        List<Models.MRZKeys> ranked = new ArrayList<>();
+        List<Integer> costs = new ArrayList<>();
+        for (Variant number : numbers) {
+            for (Variant birth : births) {
+                for (Variant expiry : expiries) {
+                    int cost = number.cost + birth.cost + expiry.cost;
+                    int index = 0;
+                    while (index < costs.size() && costs.get(index) <= cost) {
+                        index++;
+                    }
+                    if (index >= MAX_CANDIDATES) {
+                        continue;
+                    }
+                    ranked.add(index, toKeys(keys, number, birth, expiry));
+                    costs.add(index, cost);
+                    if (ranked.size() > MAX_CANDIDATES) {
+                        ranked.remove(MAX_CANDIDATES);
+                        costs.remove(MAX_CANDIDATES);
+                    }
+                }
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * Keys to try for BAC, most likely first: {@code keys} itself, then its check-digit corrections.
+     * Without known check digits, the fallbacks are single look-alike swaps of a document number
+     * character that breaks a run of digits or letters (e.g. the O in {@code 12O45}).
+     */
+    @NonNull
+    static List<Models.MRZKeys> bacCandidates(@NonNull Models.MRZKeys keys) {
+        List<Models.MRZKeys> candidates = new ArrayList<>();
+        candidates.add(keys);
+        Check check = check(keys);
+        if (check.status == Status.INVALID) {
+            candidates.addAll(check.corrections);
+        } else if (check.status == Status.UNCHECKED && keys.document_number != null) {
+            for (String number : outlierSwaps(keys.document_number)) {
+                if (candidates.size() > MAX_CANDIDATES) {
+                    break;
+                }
+                Models.MRZKeys candidate = copyOf(keys);
+                candidate.document_number = number;
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+
+    private static List<String> outlierSwaps(String value) {
+        List<String> swaps = new ArrayList<>();
+        char[] chars = value.toCharArray();
+        for (int i = 1; i < chars.length - 1; i++) {
+            boolean digit = Character.isDigit(chars[i]);
+            if (Character.isDigit(chars[i - 1]) == digit || Character.isDigit(chars[i + 1]) == digit) {
+                continue;
+            }
+            char original = chars[i];
+            for (String[] pair : CONFUSIONS) {
+                char replacement = confusedWith(original, pair);
+                if (replacement != 0 && pair[2].equals("1") && Character.isDigit(replacement) != digit) {
+                    chars[i] = replacement;
+                    swaps.add(new String(chars));
+                }
+            }
+            chars[i] = original;
+        }
+        return swaps;
+    }
+
+    private static Models.MRZKeys copyOf(Models.MRZKeys keys) {
+        Models.MRZKeys copy = new Models.MRZKeys();
+        copy.document_number = keys.document_number;
+        copy.date_of_birth = keys.date_of_birth;
+        copy.date_of_expiry = keys.date_of_expiry;
+        copy.document_number_check_digit = keys.document_number_check_digit;
+        copy.date_of_birth_check_digit = keys.date_of_birth_check_digit;
+        copy.date_of_expiry_check_digit = keys.date_of_expiry_check_digit;
+        return copy;
+    }
+
+    /**
+     * Readings of one field that satisfy its check digit, cheapest first. A field without a known
+     * check digit has itself as the only variant.
+     */
+    private static List<Variant> variants(@Nullable String value, @Nullable String checkDigit, boolean date) {
+        Character check = singleChar(checkDigit);
+        List<Variant> variants = new ArrayList<>();
+        if (value == null || check == null) {
+            variants.add(new Variant(value, check == null ? 0 : check, 0));
+            return variants;
+        }
+        char[] chars = (value + check).toCharArray();
+        collect(chars, 0, 0, 0, date, variants);
+        Collections.sort(variants, (a, b) -> Integer.compare(a.cost, b.cost));
+        return variants;
+    }
+
+    private static void collect(char[] chars, int from, int substitutions, int cost, boolean date, List<Variant> out) {
+        if (isAcceptable(chars, date)) {
+            String value = new String(chars, 0, chars.length - 1);
+            if (MrzCheckDigit.isValid(value, chars[chars.length - 1])) {
+                out.add(new Variant(value, chars[chars.length - 1], cost));
+            }
+        }
+        if (substitutions == MAX_SUBSTITUTIONS) {
+            return;
+        }
+        for (int i = from; i < chars.length; i++) {
+            char original = chars[i];
+            for (String[] pair : CONFUSIONS) {
+                char replacement = confusedWith(original, pair);
+                if (replacement == 0) {
+                    continue;
+                }
+                chars[i] = replacement;
+                collect(chars, i + 1, substitutions + 1, cost + Integer.parseInt(pair[2]), date, out);
+            }
+            chars[i] = original;
+        }
+    }
+
+    private static char confusedWith(char c, String[] pair) {
+        if (pair[0].charAt(0) == c) {
+            return pair[1].charAt(0);
+        }
+        return pair[1].charAt(0) == c ? pair[0].charAt(0) : 0;
+    }
+
+    /**
+     * The check digit must be a digit; a date must be six digits with a plausible month and day.
+     */
+    private static boolean isAcceptable(char[] chars, boolean date) {
+        char check = chars[chars.length - 1];
+        if (check < '0' || check > '9') {
+            return false;
+        }
+        if (!date) {
+            return true;
+        }
+        if (chars.length != 7) {
+            return false;
+        }
+        for (int i = 0; i < 6; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return false;
+            }
+        }
+        int month = (chars[2] - '0') * 10 + (chars[3] - '0');
+        int day = (chars[4] - '0') * 10 + (chars[5] - '0');
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31;
+    }
+
+    private static Models.MRZKeys toKeys(Models.MRZKeys original, Variant number, Variant birth, Variant expiry) {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = number.value;
+        keys.date_of_birth = birth.value;
+        keys.date_of_expiry = expiry.value;
+        keys.document_number_check_digit = checkDigitOrNull(original.document_number_check_digit, number);
+        keys.date_of_birth_check_digit = checkDigitOrNull(original.date_of_birth_check_digit, birth);
+        keys.date_of_expiry_check_digit = checkDigitOrNull(original.date_of_expiry_check_digit, expiry);
+        return keys;
+    }
+
+    private static String checkDigitOrNull(@Nullable String original, Variant variant) {
+        return singleChar(original) == null ? original : String.valueOf(variant.checkDigit);
+    }
+
+    @Nullable
+    private static Character singleChar(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.length() == 1 ? Character.toUpperCase(trimmed.charAt(0)) : null;
+    }
+
+    private MrzKeyCorrector() {}
+}
@@ -0,0 +1,90 @@
+package com.demo.passport;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * BAC key fields of ICAO 9303 machine readable zones, e.g. the lines returned by the backend.
+ */
+final class MrzLines {
+    enum Format {
+        TD1(3, 30),
+        TD2(2, 36),
+        TD3(2, 44);
+
+        final int lines;
+        final int length;
+
+        Format(int lines, int length) {
+            this.lines = lines;
+            this.length = length;
+        }
+    }
+
+    /**
+     * BAC keys and their check digits from MRZ lines.
+     *
+     * @return null unless the lines have a TD1, TD2 or TD3 shape
+     */
+    @Nullable
+    static Models.MRZKeys keysFromLines(@Nullable List<String> lines) {
+        if (lines == null) {
+            return null;
+        }
+        for (Format format : Format.values()) {
+            if (lines.size() != format.lines) {
+                continue;
+            }
+            String[] text = new String[format.lines];
+            boolean shaped = true;
+            for (int i = 0; i < text.length; i++) {
+                String line = lines.get(i);
+                text[i] = line == null ? "" : line.trim().replace(' ', '<').toUpperCase(Locale.US);
+                shaped &= text[i].length() == format.length;
+            }
+            if (shaped) {
+                return parseKeys(format, text);
+            }
+        }
+        return null;
+    }
+
+    /** Key fields as {line, start, end}; the check digit follows each field. */
+    private static int[][] keyFields(Format format) {
+        return format == Format.TD1
+                ? new int[][] {{0, 5, 14}, {1, 0, 6}, {1, 8, 14}}
+                : new int[][] {{1, 0, 9}, {1, 13, 19}, {1, 21, 27}};
+    }
+
+    private static Models.MRZKeys parseKeys(Format format, String[] text) {
+        int[][] fields = keyFields(format);
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = stripFiller(field(text, fields[0]));
+        keys.date_of_birth = field(text, fields[1]);
+        keys.date_of_expiry = field(text, fields[2]);
+        keys.document_number_check_digit = checkDigit(text, fields[0]);
+        keys.date_of_birth_check_digit = checkDigit(text, fields[1]);
+        keys.date_of_expiry_check_digit = checkDigit(text, fields[2]);
+        return keys;
+    }
+
+    private static String field(String[] text, int[] field) {
+        return text[field[0]].substring(field[1], field[2]);
+    }
+
+    private static String checkDigit(String[] text, int[] field) {
+        return String.valueOf(text[field[0]].charAt(field[2]));
+    }
+
+    private static String stripFiller(String field) {
+        int end = field.length();
+        while (end > 0 && field.charAt(end - 1) == '<') {
+            end--;
+        }
+        return field.substring(0, end);
+    }
+
+    private MrzLines() {}
+}
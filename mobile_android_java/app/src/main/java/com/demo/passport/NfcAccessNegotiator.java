@@ -0,0 +1,202 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.jmrtd.lds.CardAccessFile;
+import org.jmrtd.lds.PACEInfo;
+import org.jmrtd.lds.SecurityInfo;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * Chooses and runs the chip access protocol for one NFC session.
+ *
+ * EF.CardAccess is read before the applet is selected. If it lists a usable PACEInfo, PACE runs
+ * first (AES and ECDH variants preferred) and BAC is only a fallback for PACE failures other than a
+ * wrong key. Chips without EF.CardAccess go straight to BAC, as before. Candidate keys are tried in
+ * order within {@code maxAttempts}; logging and status mapping stay in {@link NfcPassportReader}.
+ */
+final class NfcAccessNegotiator {
+    static final String METHOD_PACE = "PACE";
+    static final String METHOD_BAC = "BAC";
+
+    static final String STAGE_APPLET_SELECTION = "applet_selection";
+    static final String STAGE_PACE = "pace_authentication";
+    static final String STAGE_BAC = "bac_authentication";
+
+    /** Chip operations the negotiation needs; backed by {@link org.jmrtd.PassportService} on a device. */
+    interface Chip {
+        /** Raw EF.CardAccess; throws if the file is absent. */
+        byte[] readCardAccess() throws Exception;
+
+        void selectApplet(boolean afterPace) throws Exception;
+
+        void doPace(Models.MRZKeys keys, PACEInfo info) throws Exception;
+
+        void doBac(Models.MRZKeys keys) throws Exception;
+
+        boolean isConnected();
+    }
+
+    static final class Outcome {
+        /** {@link #METHOD_PACE} or {@link #METHOD_BAC}; null if no candidate authenticated. */
+        @Nullable
+        final String accessMethod;
+        /** Whether EF.CardAccess advertised a usable PACEInfo. */
+        final boolean paceSupported;
+        final int attempts;
+        /** Index of the candidate that authenticated, or -1. */
+        final int candidateIndex;
+        /** Stage and error of the last failure; null on success. */
+        @Nullable
+        final String failedStage;
+        @Nullable
+        final Exception error;
+        @Nullable
+        final Models.MRZKeys failedKeys;
+
+        private Outcome(@Nullable String accessMethod, boolean paceSupported, int attempts, int candidateIndex,
+                        @Nullable String failedStage, @Nullable Exception error, @Nullable Models.MRZKeys failedKeys) {
+            this.accessMethod = accessMethod;
+            this.paceSupported = paceSupported;
+            this.attempts = attempts;
+            this.candidateIndex = candidateIndex;
+            this.failedStage = failedStage;
+            this.error = error;
+            this.failedKeys = failedKeys;
+        }
+
+        boolean isAuthenticated() {
+            return candidateIndex >= 0;
+        }
+    }
+
+    @NonNull
+    static Outcome negotiate(@NonNull Chip chip, @NonNull List<Models.MRZKeys> candidates, int maxAttempts) {
+        PACEInfo pace = null;
+        try {
+            pace = choosePaceInfo(chip.readCardAccess());
+        } catch (Exception ignored) {
+            // No EF.CardAccess: a BAC-only chip.
+        }
+        boolean paceSupported = pace != null;
+        int attempts = 0;
+        String failedStage = null;
+        Exception error = null;
+        Models.MRZKeys failedKeys = null;
+        for (int i = 0; i < candidates.size() && attempts < maxAttempts; i++) {
+            Models.MRZKeys candidate = candidates.get(i);
+            if (pace != null) {
+                attempts++;
+                try {
+                    chip.doPace(candidate, pace);
+                } catch (Exception e) {
+                    failedStage = STAGE_PACE;
+                    error = e;
+                    failedKeys = candidate;
+                    if (!chip.isConnected()) {
+                        break;
+                    }
+                    if (isWrongKey(e)) {
+                        continue;
+                    }
+                    // Unsupported parameters or mapping: BAC with the same keys.
+                    pace = null;
+                    if (attempts >= maxAttempts) {
+                        break;
+                    }
+                }
+                if (pace != null) {
+                    try {
+                        chip.selectApplet(true);
+                    } catch (Exception e) {
+                        return new Outcome(null, true, attempts, -1, STAGE_APPLET_SELECTION, e, candidate);
+                    }
+                    return new Outcome(METHOD_PACE, true, attempts, i, null, null, null);
+                }
+            }
+            // Every BAC starts from a fresh SELECT: a failed mutual authentication can leave the applet unusable.
+            try {
+                chip.selectApplet(false);
+            } catch (Exception e) {
+                if (error == null) {
+                    return new Outcome(null, paceSupported, attempts, -1, STAGE_APPLET_SELECTION, e, candidate);
+                }
+                break;
+            }
+            attempts++;
+            try {
+                chip.doBac(candidate);
+                return new Outcome(METHOD_BAC, paceSupported, attempts, i, null, null, null);
+            } catch (Exception e) {
+                failedStage = STAGE_BAC;
+                error = e;
+                failedKeys = candidate;
+                String swCode = NfcPassportReader.extractSwCode(e);
+                if (NfcPassportReader.isPaceRequiredError(swCode, e.getMessage()) || !chip.isConnected()) {
+                    break;
+                }
+            }
+        }
+        return new Outcome(null, paceSupported, attempts, -1, failedStage, error, failedKeys);
+    }
+
+    /**
+     * The PACEInfo to use from EF.CardAccess, or null if none has known domain parameters. AES secure
+     * messaging beats 3DES, elliptic curves beat DH and generic mapping beats the others.
+     */
+    @Nullable
+    static PACEInfo choosePaceInfo(@Nullable byte[] cardAccess) throws Exception {
+        if (cardAccess == null || cardAccess.length == 0) {
+            return null;
+        }
+        CardAccessFile file = new CardAccessFile(new ByteArrayInputStream(cardAccess));
+        PACEInfo best = null;
+        int bestScore = -1;
+        for (SecurityInfo info : file.getSecurityInfos()) {
+            if (!(info instanceof PACEInfo)) {
+                continue;
+            }
+            PACEInfo pace = (PACEInfo) info;
+            int score;
+            try {
+                PACEInfo.toParameterSpec(pace.getParameterId());
+                score = score(pace.getObjectIdentifier());
+            } catch (Exception e) {
+                continue;
+            }
+            if (score > bestScore) {
+                best = pace;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static int score(String oid) {
+        int score = 0;
+        if ("AES".equals(PACEInfo.toCipherAlgorithm(oid))) {
+            score += 4;
+        }
+        if ("ECDH".equals(PACEInfo.toKeyAgreementAlgorithm(oid))) {
+            score += 2;
+        }
+        if (PACEInfo.toMappingType(oid) == PACEInfo.MappingType.GM) {
+            score += 1;
+        }
+        return score;
+    }
+
+    /**
+     * Mutual authentication answered 63xx: the chip ran PACE but the password (MRZ keys) was wrong.
+     */
+    static boolean isWrongKey(Exception e) {
+        return e instanceof CardServiceException && (((CardServiceException) e).getSW() & 0xFF00) == 0x6300;
+    }
+
+    private NfcAccessNegotiator() {}
+}
@@ -0,0 +1,197 @@
+package com.demo.passport;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.jmrtd.PassportService;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * READ BINARY sizes that worked per chip model, so the next matching chip starts at the right size.
+ *
+ * A chip model is identified by its ATS historical bytes (NFC-A) or ATTRIB response (NFC-B) plus the
+ * issuing state from DG1. Without a profile, reads start at the largest block that fits the
+ * transceive limit and step down through {@link #blockSizes(int)} on errors; sizes that failed and
+ * the size that worked are stored, so the next read of that model starts below the failures. Profiles live in one small text file in the app's private files directory.
+ */
+final class NfcChipProfiles {
+    static final String FILE_NAME = "nfc_chip_profiles.txt";
+    static final int MAX_PROFILES = 64;
+    /** Block sizes tried with extended-length APDUs, largest first; the last one fits a short APDU. */
+    static final int[] EXTENDED_BLOCK_SIZES = {8192, 4096, 2048, 1024, PassportService.DEFAULT_MAX_BLOCKSIZE};
+    /** Secure messaging adds DO87 padding, DO99 and DO8E to every response. */
+    static final int SECURE_MESSAGING_OVERHEAD = 64;
+
+    private static NfcChipProfiles instance;
+
+    private final File file;
+    /** Access-ordered, so the least recently seen chip is dropped first; guarded by {@code this}. */
+    private final LinkedHashMap<String, Integer> blockSizes = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Process-wide profiles in the app's private files directory.
+     */
+    @NonNull
+    static synchronized NfcChipProfiles getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new NfcChipProfiles(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    NfcChipProfiles(@NonNull File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Profile key for a chip model; either part may be unknown.
+     */
+    @NonNull
+    static String key(@Nullable byte[] historicalBytes, @Nullable String issuingState) {
+        StringBuilder key = new StringBuilder();
+        if (historicalBytes == null || historicalBytes.length == 0) {
+            key.append('-');
+        } else {
+            for (byte b : historicalBytes) {
+                key.append(String.format(Locale.US, "%02X", b & 0xFF));
+            }
+        }
+        key.append('/').append(issuingState == null || issuingState.isEmpty() ? "-" : issuingState);
+        return key.toString();
+    }
+
+    /**
+     * READ BINARY sizes to try for a transceive limit, largest first.
+     */
+    @NonNull
+    static int[] blockSizes(int maxTransceiveLength) {
+        List<Integer> sizes = new ArrayList<>();
+        for (int size : EXTENDED_BLOCK_SIZES) {
+            if (size + SECURE_MESSAGING_OVERHEAD <= maxTransceiveLength
+                    || size == PassportService.DEFAULT_MAX_BLOCKSIZE) {
+                sizes.add(size);
+            }
+        }
+        int[] result = new int[sizes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sizes.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Sizes to try for a chip: from its stored size down, or the full ladder for an unknown chip.
+     */
+    @NonNull
+    int[] blockSizesFor(@NonNull String key, int maxTransceiveLength) {
+        int[] ladder = blockSizes(maxTransceiveLength);
+        Integer known;
+        synchronized (this) {
+            known = blockSizes.get(key);
+        }
+        if (known == null) {
+            return ladder;
+        }
+        int start = 0;
+        while (start < ladder.length - 1 && ladder[start] > known) {
+            start++;
+        }
+        int[] sizes = new int[ladder.length - start];
+        System.arraycopy(ladder, start, sizes, 0, sizes.length);
+        return sizes;
+    }
+
+    @Nullable
+    synchronized Integer get(@NonNull String key) {
+        return blockSizes.get(key);
+    }
+
+    /**
+     * Records the block size that read a chip's data groups; writes the file only on change.
+     */
+    synchronized void put(@NonNull String key, int blockSize) {
+        Integer previous = blockSizes.put(key, blockSize);
+        if (previous != null && previous == blockSize) {
+            return;
+        }
+        while (blockSizes.size() > MAX_PROFILES) {
+            String eldest = blockSizes.keySet().iterator().next();
+            blockSizes.remove(eldest);
+        }
+        save();
+    }
+
+    /**
+     * Records that {@code blockSize} failed on a chip, so its next read starts at the next smaller
+     * size; writes the file only on change.
+     */
+    synchronized void putFailed(@NonNull String key, int blockSize) {
+        int below = 0;
+        for (int size : EXTENDED_BLOCK_SIZES) {
+            if (size < blockSize) {
+                below = size;
+                break;
+            }
+        }
+        Integer known = blockSizes.get(key);
+        if (below == 0 || (known != null && known <= below)) {
+            return;
+        }
+        put(key, below);
+    }
+
+    private synchronized void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf('=');
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    blockSizes.put(line.substring(0, separator), Integer.parseInt(line.substring(separator + 1)));
+                } catch (NumberFormatException ignored) {
+                    // Skip a damaged line; the chip will be profiled again.
+                }
+            }
+        } catch (IOException ignored) {
+            blockSizes.clear();
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : blockSizes.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+}
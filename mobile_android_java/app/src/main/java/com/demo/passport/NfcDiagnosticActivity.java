@@ -45,6 +45,8 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
     private TextView textChipInfo;
     private TextView textReadTime;
     private TextView textLdsVersion;
+    private TextView textOutbox;
+    private TextView textFaceCache;
 
     // Section 2: Access & MRZ Keys
     private TextView textDocNumberMasked;
@@ -67,6 +69,7 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
     // Section 4: DG2 (Face Image)
     private TextView textDg2Status;
     private ImageView imageDg2Preview;
+    private Bitmap shownFace;
     private TextView textDg2Format;
     private TextView textDg2Width;
     private TextView textDg2Height;
@@ -117,6 +120,16 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
         btnClose.setOnClickListener(v -> finish());
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (shownFace != null) {
+            imageDg2Preview.setImageDrawable(null);
+            FaceBitmapDecoder.getInstance().release(shownFace);
+            shownFace = null;
+        }
+    }
+
     private void initViews() {
         // Section 1: NFC Session
         textSessionStatus = findViewById(R.id.textSessionStatus);
@@ -128,6 +141,8 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
         textChipInfo = findViewById(R.id.textChipInfo);
         textReadTime = findViewById(R.id.textReadTime);
         textLdsVersion = findViewById(R.id.textLdsVersion);
+        textOutbox = findViewById(R.id.textOutbox);
+        textFaceCache = findViewById(R.id.textFaceCache);
 
         // Section 2: Access & MRZ Keys
         textDocNumberMasked = findViewById(R.id.textDocNumberMasked);
@@ -210,14 +225,22 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
 
     private void displayNfcSession(@NonNull NfcDiagnosticData data) {
         textSessionStatus.setText(formatField("status", data.status));
-        textAccessMethod.setText(formatField("access_method_used", data.accessMethodUsed));
+        textAccessMethod.setText(formatField("access_method_used", data.accessMethodUsed)
+                + String.format(Locale.US, " (access_attempts: %d, key_candidate: %d)",
+                data.accessAttempts, data.accessCandidateIndex));
         textPaceSupported.setText(formatField("pace_supported", data.paceSupported));
         textBacSupported.setText(formatField("bac_supported", data.bacSupported));
         textDocumentType.setText(formatField("document_type", data.documentType));
         textIssuingCountry.setText(formatField("issuing_country", data.issuingCountry));
         textChipInfo.setText(formatField("chip_info", data.chipInfo));
-        textReadTime.setText(formatField("read_time_ms", data.readTimeMs));
+        textReadTime.setText(formatField("read_time_ms", data.readTimeMs)
+                + String.format(Locale.US, " (dg2_resume_offset: %d, dg2_from_cache: %b)",
+                data.dg2ResumeOffset, data.dg2FromCache));
         textLdsVersion.setText(formatField("lds_version", data.ldsVersion));
+        textOutbox.setText(String.format(Locale.US, "outbox: %d pending, oldest %d s",
+                data.outboxDepth, data.outboxOldestAgeMs / 1000));
+        textFaceCache.setText(String.format(Locale.US, "face_cache: hit ratio %.2f, %d bytes served",
+                data.faceCacheHitRatio, data.faceCacheBytesServed));
     }
 
     private void displayMrzKeys(@NonNull NfcDiagnosticData data) {
@@ -260,13 +283,16 @@ public class NfcDiagnosticActivity extends AppCompatActivity {
         textDg2Status.setText(formatField("status", "present"));
 
         // Try to display the face image
-        Bitmap faceImage = data.decodeFaceImage();
-        if (faceImage != null) {
+        imageDg2Preview.setVisibility(View.GONE);
+        data.decodeFaceImageInto(imageDg2Preview, faceImage -> {
+            if (faceImage == null || isDestroyed()) {
+                FaceBitmapDecoder.getInstance().release(faceImage);
+                return;
+            }
             imageDg2Preview.setImageBitmap(faceImage);
             imageDg2Preview.setVisibility(View.VISIBLE);
-        } else {
-            imageDg2Preview.setVisibility(View.GONE);
-        }
+            shownFace = faceImage;
+        });
 
         textDg2Format.setText(formatField("image_format", data.dg2ImageFormat));
         textDg2Format.setVisibility(View.VISIBLE);
@@ -1,8 +1,8 @@
 package com.demo.passport;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Base64;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -14,6 +14,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Diagnostic data model for NFC reading results.
@@ -37,6 +38,13 @@ public final class NfcDiagnosticData implements Serializable {
     public String accessMethodUsed;
     public boolean paceSupported;
     public boolean bacSupported;
+    /** PACE/BAC attempts spent and which candidate key passed (-1 if none), see {@link NfcReadResult}. */
+    public int accessAttempts;
+    public int accessCandidateIndex = -1;
+    /** DG2 bytes kept for the next tap or reused from the previous one, see {@link NfcReadResult#dg2ResumeOffset}. */
+    public int dg2ResumeOffset;
+    /** DG2 reused from {@link NfcRetapCache} on a re-tap instead of read from the chip. */
+    public boolean dg2FromCache;
     @Nullable
     public String documentType;
     @Nullable
@@ -46,6 +54,12 @@ public final class NfcDiagnosticData implements Serializable {
     public long readTimeMs;
     @Nullable
     public String ldsVersion;
+    /** Scans waiting in {@link NfcOutbox} when the screen was opened. */
+    public int outboxDepth;
+    public long outboxOldestAgeMs;
+    /** {@link FaceCache} statistics for this process. */
+    public double faceCacheHitRatio;
+    public long faceCacheBytesServed;
 
     // === Access & MRZ Keys ===
     @Nullable
@@ -138,9 +152,13 @@ public final class NfcDiagnosticData implements Serializable {
 
         // NFC Session
         data.status = result.status.name();
-        data.accessMethodUsed = "BAC";  // Current implementation only supports BAC
-        data.paceSupported = false;     // PACE not implemented
+        data.accessMethodUsed = result.accessMethod;  // null if neither PACE nor BAC succeeded
+        data.paceSupported = result.paceSupported;      // advertised in EF.CardAccess
         data.bacSupported = true;
+        data.accessAttempts = result.accessAttempts;
+        data.accessCandidateIndex = result.accessCandidateIndex;
+        data.dg2ResumeOffset = result.dg2ResumeOffset;
+        data.dg2FromCache = result.dg2FromCache;
 
         // Access & MRZ Keys
         if (mrzKeys != null) {
@@ -182,6 +200,16 @@ public final class NfcDiagnosticData implements Serializable {
         return data;
     }
 
+    /**
+     * Issuing state from the DG1 MRZ, or null if DG1 cannot be parsed.
+     */
+    @Nullable
+    static String issuingStateOf(@NonNull byte[] dg1Raw) {
+        NfcDiagnosticData data = new NfcDiagnosticData();
+        parseDg1(data, dg1Raw);
+        return data.dg1IssuingState;
+    }
+
     /**
      * Mask document number for display (show first 3 chars, mask the rest).
      */
@@ -199,7 +227,7 @@ public final class NfcDiagnosticData implements Serializable {
     /**
      * Compute a short hash of MRZ keys for verification purposes.
      */
-    private static String computeMrzKeyHash(@NonNull Models.MRZKeys keys) {
+    static String computeMrzKeyHash(@NonNull Models.MRZKeys keys) {
         try {
             String combined = String.format("%s|%s|%s",
                     keys.document_number != null ? keys.document_number : "",
@@ -479,41 +507,34 @@ public final class NfcDiagnosticData implements Serializable {
     }
 
     /**
-     * Try to decode face image from DG2 raw bytes.
-     * Returns null if decoding fails.
+     * Decodes the face image embedded in raw DG2 bytes (see {@link Dg2FaceLocator}) on the
+     * {@link FaceBitmapDecoder} thread, subsampled for {@code reqWidth} x {@code reqHeight}.
+     * Completes with null if DG2 is empty or the image cannot be decoded on device (e.g. JPEG2000).
      */
-    @Nullable
-    public Bitmap decodeFaceImage() {
-        if (dg2RawBytes == null || dg2RawBytes.length == 0) {
-            return null;
-        }
-
-        // Find JPEG data within DG2
-        int jpegOffset = findBytes(dg2RawBytes, new byte[]{(byte) 0xFF, (byte) 0xD8});
-        if (jpegOffset >= 0) {
-            // Find JPEG EOI marker (0xFF 0xD9)
-            int jpegEnd = dg2RawBytes.length;
-            for (int i = jpegOffset + 2; i < dg2RawBytes.length - 1; i++) {
-                if (dg2RawBytes[i] == (byte) 0xFF && dg2RawBytes[i + 1] == (byte) 0xD9) {
-                    jpegEnd = i + 2;
-                    break;
-                }
-            }
-
-            try {
-                return BitmapFactory.decodeByteArray(
-                        dg2RawBytes, jpegOffset, jpegEnd - jpegOffset);
-            } catch (Exception e) {
-                return null;
-            }
+    @NonNull
+    public static CompletableFuture<Bitmap> decodeFaceImageAsync(
+            @Nullable byte[] dg2Raw,
+            int reqWidth,
+            int reqHeight
+    ) {
+        if (dg2Raw == null || dg2Raw.length == 0) {
+            return CompletableFuture.completedFuture(null);
         }
+        Dg2FaceLocator.Range face = FaceBitmapDecoder.decodableRange(dg2Raw);
+        return FaceBitmapDecoder.getInstance().decodeAsync(dg2Raw, face.offset, face.length, reqWidth, reqHeight);
+    }
 
-        // Try decoding entire DG2 as image (fallback)
-        try {
-            return BitmapFactory.decodeByteArray(dg2RawBytes, 0, dg2RawBytes.length);
-        } catch (Exception e) {
-            return null;
+    /**
+     * Same as {@link #decodeFaceImageAsync} for this scan's DG2, sized for and posted through {@code target}.
+     * Call on the UI thread.
+     */
+    public void decodeFaceImageInto(@NonNull ImageView target, @NonNull FaceBitmapDecoder.Callback cb) {
+        if (dg2RawBytes == null || dg2RawBytes.length == 0) {
+            cb.onDecoded(null);
+            return;
         }
+        Dg2FaceLocator.Range face = FaceBitmapDecoder.decodableRange(dg2RawBytes);
+        FaceBitmapDecoder.getInstance().decodeInto(target, dg2RawBytes, face.offset, face.length, cb);
     }
 
     /**
@@ -0,0 +1,324 @@
+package com.demo.passport;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Persistent queue of NFC scans whose {@code /nfc} upload failed, drained by {@link NfcOutboxDrainer}.
+ *
+ * Two append-only journals live in the outbox directory: {@code entries.log} holds one AES-GCM
+ * encrypted record per scan (DG1, DG2, MRZ keys and the Idempotency-Key every upload of the scan is
+ * sent with), {@code acked.log} holds the ids of uploaded
+ * or dropped scans. Every append is fsynced, so a scan survives process death once
+ * {@link #append} returns. Only the record offsets are kept in memory; both files are deleted
+ * when the last pending scan is acknowledged. A torn tail record (crash mid-write) is truncated on open.
+ */
+final class NfcOutbox {
+    private static final String DIRECTORY = "nfc_outbox";
+    private static final String ENTRIES_FILE = "entries.log";
+    private static final String ACKED_FILE = "acked.log";
+    private static final String KEY_ALIAS = "nfc_outbox";
+    /** Sanity bound for a record length read from disk; DG2 is well below this. */
+    private static final int MAX_RECORD_BYTES = 4 * 1024 * 1024;
+
+    static final class Entry {
+        final long id;
+        final long createdAtMs;
+        final Models.NfcRawResult result;
+        final String idempotencyKey;
+
+        Entry(long id, long createdAtMs, Models.NfcRawResult result, String idempotencyKey) {
+            this.id = id;
+            this.createdAtMs = createdAtMs;
+            this.result = result;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+
+    private static final class Slot {
+        final long offset;
+        final long createdAtMs;
+
+        Slot(long offset, long createdAtMs) {
+            this.offset = offset;
+            this.createdAtMs = createdAtMs;
+        }
+    }
+
+    private final File entriesFile;
+    private final File ackedFile;
+    private final SecretKey key;
+    /** Pending scans in append order. */
+    private final LinkedHashMap<Long, Slot> pending = new LinkedHashMap<>();
+    private long nextId = 1;
+
+    /**
+     * Opens the outbox in the app's private files directory, keyed by an Android Keystore AES key.
+     */
+    @NonNull
+    static NfcOutbox open(@NonNull Context context) throws IOException, GeneralSecurityException {
+        return new NfcOutbox(new File(context.getFilesDir(), DIRECTORY), KeystoreCipher.keystoreKey(KEY_ALIAS));
+    }
+
+    NfcOutbox(@NonNull File directory, @NonNull SecretKey key) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.entriesFile = new File(directory, ENTRIES_FILE);
+        this.ackedFile = new File(directory, ACKED_FILE);
+        this.key = key;
+        load();
+    }
+
+    /**
+     * Encrypts and durably appends {@code result}. {@code idempotencyKey} should be the key of the
+     * failed live upload, so a scan the backend stored before the connection dropped is not stored twice.
+     *
+     * @return id of the new entry
+     */
+    synchronized long append(@NonNull Models.NfcRawResult result, @NonNull String idempotencyKey, long nowMs)
+            throws IOException {
+        long id = nextId++;
+        byte[] record;
+        try {
+            record = KeystoreCipher.seal(key, serialize(id, nowMs, result, idempotencyKey));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot encrypt outbox entry", e);
+        }
+        long offset = entriesFile.length();
+        try (FileOutputStream out = new FileOutputStream(entriesFile, true)) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(record.length);
+            data.write(record);
+            data.flush();
+            out.getFD().sync();
+        }
+        pending.put(id, new Slot(offset, nowMs));
+        return id;
+    }
+
+    /**
+     * Decrypts up to {@code max} of the oldest pending entries. Records that no longer decrypt
+     * (for example after the Keystore key was wiped) are acknowledged and skipped.
+     */
+    @NonNull
+    synchronized List<Entry> peek(int max) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (pending.isEmpty()) {
+            return entries;
+        }
+        List<Long> unreadable = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(entriesFile, "r")) {
+            for (Map.Entry<Long, Slot> slot : pending.entrySet()) {
+                if (entries.size() >= max) {
+                    break;
+                }
+                file.seek(slot.getValue().offset);
+                byte[] record = new byte[file.readInt()];
+                file.readFully(record);
+                try {
+                    entries.add(deserialize(KeystoreCipher.open(key, record)));
+                } catch (GeneralSecurityException | IOException e) {
+                    unreadable.add(slot.getKey());
+                }
+            }
+        }
+        for (long id : unreadable) {
+            ack(id);
+        }
+        return entries;
+    }
+
+    /**
+     * Marks an entry as uploaded (or permanently rejected); it will not be returned again.
+     */
+    synchronized void ack(long id) throws IOException {
+        if (pending.remove(id) == null) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            deleteJournals();
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(ackedFile, true)) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeLong(id);
+            data.flush();
+            out.getFD().sync();
+        }
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return age of the oldest pending entry, or 0 when the outbox is empty
+     */
+    synchronized long oldestAgeMs(long nowMs) {
+        for (Slot slot : pending.values()) {
+            return Math.max(0, nowMs - slot.createdAtMs);
+        }
+        return 0;
+    }
+
+    private void load() throws IOException {
+        Set<Long> acked = readAcked();
+        if (!entriesFile.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (RandomAccessFile file = new RandomAccessFile(entriesFile, "rw")) {
+            long length = file.length();
+            while (validLength < length) {
+                file.seek(validLength);
+                int recordLength;
+                try {
+                    recordLength = file.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long end = validLength + 4 + recordLength;
+                if (recordLength <= KeystoreCipher.GCM_IV_BYTES || recordLength > MAX_RECORD_BYTES || end > length) {
+                    break;
+                }
+                byte[] record = new byte[recordLength];
+                file.readFully(record);
+                try {
+                    Entry header = deserialize(KeystoreCipher.open(key, record));
+                    nextId = Math.max(nextId, header.id + 1);
+                    if (!acked.contains(header.id)) {
+                        pending.put(header.id, new Slot(validLength, header.createdAtMs));
+                    }
+                } catch (GeneralSecurityException | IOException e) {
+                    // Undecryptable but complete record: skip it, keep reading.
+                }
+                validLength = end;
+            }
+            if (validLength < length) {
+                file.setLength(validLength);
+            }
+        }
+        if (pending.isEmpty()) {
+            deleteJournals();
+        }
+    }
+
+    private Set<Long> readAcked() throws IOException {
+        Set<Long> acked = new HashSet<>();
+        if (!ackedFile.exists()) {
+            return acked;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(ackedFile, "r")) {
+            long complete = file.length() / 8;
+            for (long i = 0; i < complete; i++) {
+                acked.add(file.readLong());
+            }
+        }
+        return acked;
+    }
+
+    private void deleteJournals() throws IOException {
+        if (entriesFile.exists() && !entriesFile.delete()) {
+            throw new IOException("Cannot delete " + entriesFile);
+        }
+        if (ackedFile.exists() && !ackedFile.delete()) {
+            throw new IOException("Cannot delete " + ackedFile);
+        }
+    }
+
+    private static byte[] serialize(long id, long createdAtMs, Models.NfcRawResult result, String idempotencyKey)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(id);
+        out.writeLong(createdAtMs);
+        writeBytes(out, result.dg1Raw);
+        writeBytes(out, result.dg2Raw);
+        Models.MRZKeys keys = result.mrzKeys;
+        out.writeBoolean(keys != null);
+        if (keys != null) {
+            writeString(out, keys.document_number);
+            writeString(out, keys.date_of_birth);
+            writeString(out, keys.date_of_expiry);
+        }
+        out.writeUTF(idempotencyKey);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry deserialize(byte[] plain) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain));
+        long id = in.readLong();
+        long createdAtMs = in.readLong();
+        Models.NfcRawResult result = new Models.NfcRawResult();
+        result.dg1Raw = readBytes(in);
+        result.dg2Raw = readBytes(in);
+        if (in.readBoolean()) {
+            Models.MRZKeys keys = new Models.MRZKeys();
+            keys.document_number = readString(in);
+            keys.date_of_birth = readString(in);
+            keys.date_of_expiry = readString(in);
+            result.mrzKeys = keys;
+        }
+        // Records written before the key was stored get one derived from the record, stable across drains.
+        String idempotencyKey = in.available() > 0
+                ? in.readUTF()
+                : UUID.nameUUIDFromBytes((ENTRIES_FILE + ":" + id + ":" + createdAtMs).getBytes(StandardCharsets.UTF_8))
+                        .toString();
+        return new Entry(id, createdAtMs, result, idempotencyKey);
+    }
+
+    private static void writeBytes(DataOutputStream out, @Nullable byte[] value) throws IOException {
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    @Nullable
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,205 @@
+package com.demo.passport;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads queued {@link NfcOutbox} scans in the background.
+ *
+ * Each pass sends up to {@link #BATCH_SIZE} of the oldest scans concurrently (the backend has no batch
+ * endpoint, so a batch is parallel {@code /nfc} calls over the pooled connection). Uploaded scans and
+ * scans the server rejects with a non-transient error are acknowledged; if any upload fails transiently
+ * the next pass is delayed with jittered exponential backoff, otherwise the next batch starts at once.
+ */
+final class NfcOutboxDrainer {
+    private static final String TAG = "NfcOutbox";
+    static final int BATCH_SIZE = 4;
+    static final long BASE_BACKOFF_MS = 5_000;
+    static final long MAX_BACKOFF_MS = 5 * 60_000;
+    /** Longer than the NFC endpoint's retries, so a pass never outlives its uploads. */
+    private static final long UPLOAD_WAIT_MS = 3 * 60_000;
+
+    interface Uploader {
+        void upload(Models.NfcRawResult result, String idempotencyKey, BackendApi.Callback<Models.NfcScanResponse> cb);
+    }
+
+    private static NfcOutboxDrainer instance;
+
+    private final NfcOutbox outbox;
+    private final Uploader uploader;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> scheduled;
+    private boolean running;
+    private int failedPasses;
+
+    NfcOutboxDrainer(
+            @NonNull NfcOutbox outbox,
+            @NonNull Uploader uploader,
+            @NonNull ScheduledExecutorService executor
+    ) {
+        this.outbox = outbox;
+        this.uploader = uploader;
+        this.executor = executor;
+    }
+
+    /**
+     * Process-wide drainer backed by the app's outbox; null if the outbox cannot be opened
+     * (then failed uploads are not queued, as before the outbox existed). Does disk I/O.
+     */
+    @Nullable
+    static synchronized NfcOutboxDrainer getInstance(@NonNull Context context) {
+        if (instance == null) {
+            try {
+                NfcOutbox outbox = NfcOutbox.open(context.getApplicationContext());
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "nfc-outbox");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                instance = new NfcOutboxDrainer(outbox, BackendApi::sendNfcRawAndParse, executor);
+            } catch (IOException | GeneralSecurityException e) {
+                Log.e(TAG, "Outbox unavailable", e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    @NonNull
+    NfcOutbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * Stores a scan whose upload failed and schedules a drain pass after the current backoff.
+     * Every later upload of the scan reuses {@code idempotencyKey}.
+     */
+    void enqueue(@NonNull Models.NfcRawResult result, @NonNull String idempotencyKey) throws IOException {
+        outbox.append(result, idempotencyKey, System.currentTimeMillis());
+        synchronized (this) {
+            if (!running && scheduled == null) {
+                schedule(backoffDelayMs(Math.max(1, failedPasses)));
+            }
+        }
+    }
+
+    /**
+     * Starts a pass now, cancelling any backoff wait; used on app start and whenever a live
+     * upload succeeds (the backend is evidently reachable).
+     */
+    synchronized void requestDrain() {
+        if (running || outbox.size() == 0) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        failedPasses = 0;
+        schedule(0);
+    }
+
+    /**
+     * Runs one pass on the calling thread.
+     *
+     * @return true if every upload in the batch was acknowledged
+     */
+    boolean drainOnce() throws InterruptedException {
+        List<NfcOutbox.Entry> batch;
+        try {
+            batch = outbox.peek(BATCH_SIZE);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read outbox", e);
+            return false;
+        }
+        CountDownLatch done = new CountDownLatch(batch.size());
+        AtomicBoolean allAcked = new AtomicBoolean(true);
+        for (NfcOutbox.Entry entry : batch) {
+            uploader.upload(entry.result, entry.idempotencyKey, new BackendApi.Callback<Models.NfcScanResponse>() {
+                @Override
+                public void onSuccess(Models.NfcScanResponse value) {
+                    ack(entry);
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(BackendApi.Failure failure) {
+                    if (failure.isTransient()) {
+                        allAcked.set(false);
+                    } else {
+                        Log.w(TAG, "Dropping queued scan rejected by backend: " + failure.message);
+                        ack(entry);
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(String message) {
+                    // No reason attached: keep the scan for the next pass.
+                    allAcked.set(false);
+                    done.countDown();
+                }
+            });
+        }
+        if (!done.await(UPLOAD_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        return allAcked.get();
+    }
+
+    private void ack(NfcOutbox.Entry entry) {
+        try {
+            outbox.ack(entry.id);
+        } catch (IOException e) {
+            // The scan stays queued and is uploaded again on the next pass.
+            Log.e(TAG, "Cannot acknowledge outbox entry " + entry.id, e);
+        }
+    }
+
+    private void schedule(long delayMs) {
+        scheduled = executor.schedule(this::runPass, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runPass() {
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            scheduled = null;
+            running = true;
+        }
+        boolean success;
+        try {
+            success = drainOnce();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        synchronized (this) {
+            running = false;
+            failedPasses = success ? 0 : failedPasses + 1;
+            if (outbox.size() > 0 && scheduled == null) {
+                schedule(success ? 0 : backoffDelayMs(failedPasses));
+            }
+        }
+    }
+
+    private static long backoffDelayMs(int failedPasses) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failedPasses - 1, 16));
+        // Half fixed, half jitter, so a fleet of devices does not retry in lockstep after an outage.
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+}
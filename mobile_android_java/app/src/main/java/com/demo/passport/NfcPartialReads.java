@@ -0,0 +1,98 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * DG2 progress of the last read that lost the tag, so the next tap of the same document continues
+ * READ BINARY from the saved offset instead of starting over.
+ *
+ * One document at a time: the entry is keyed by the MRZ key hash and the DG1 read in the failed
+ * session, lives in memory only and expires after {@link #RESUME_WINDOW_MS}. Replaced, expired and
+ * rejected entries are zero-filled, since they hold part of the face image.
+ */
+final class NfcPartialReads {
+    static final long RESUME_WINDOW_MS = 60_000;
+
+    private static final NfcPartialReads INSTANCE = new NfcPartialReads(() -> System.nanoTime() / 1_000_000);
+
+    private final LongSupplier clockMs;
+    /** Guarded by {@code this}. */
+    private String keyHash;
+    private byte[] dg1;
+    private NfcPassportReader.PartialFile dg2;
+    private long savedAtMs;
+
+    @NonNull
+    static NfcPartialReads getInstance() {
+        return INSTANCE;
+    }
+
+    NfcPartialReads(@NonNull LongSupplier clockMs) {
+        this.clockMs = clockMs;
+    }
+
+    /**
+     * Keeps a partly read DG2 for the keys that authenticated; an empty one is not worth keeping.
+     *
+     * @return whether the progress was kept
+     */
+    synchronized boolean save(@NonNull Models.MRZKeys keys, @NonNull byte[] dg1,
+                            @NonNull NfcPassportReader.PartialFile dg2) {
+        if (dg2.file == null || dg2.offset == 0 || dg2.offset >= dg2.file.length) {
+            return false;
+        }
+        clear();
+        this.keyHash = NfcDiagnosticData.computeMrzKeyHash(keys);
+        this.dg1 = dg1.clone();
+        this.dg2 = dg2;
+        this.savedAtMs = clockMs.getAsLong();
+        return true;
+    }
+
+    /**
+     * Whether progress is waiting for these keys; used to try them first on the next tap.
+     */
+    synchronized boolean has(@NonNull Models.MRZKeys keys) {
+        expire();
+        return keyHash != null && keyHash.equals(NfcDiagnosticData.computeMrzKeyHash(keys));
+    }
+
+    /**
+     * Hands the saved DG2 progress to a new session if it belongs to the same keys and the chip returned
+     * the same DG1. The entry is removed either way: a second failure saves it again.
+     */
+    @Nullable
+    synchronized NfcPassportReader.PartialFile take(@NonNull Models.MRZKeys keys, @NonNull byte[] dg1) {
+        if (!has(keys)) {
+            return null;
+        }
+        NfcPassportReader.PartialFile progress = Arrays.equals(this.dg1, dg1) ? dg2 : null;
+        if (progress != null) {
+            dg2 = null;
+        }
+        clear();
+        return progress;
+    }
+
+    private void expire() {
+        if (keyHash != null && clockMs.getAsLong() - savedAtMs > RESUME_WINDOW_MS) {
+            clear();
+        }
+    }
+
+    private void clear() {
+        if (dg1 != null) {
+            Arrays.fill(dg1, (byte) 0);
+        }
+        if (dg2 != null) {
+            dg2.wipe();
+        }
+        keyHash = null;
+        dg1 = null;
+        dg2 = null;
+    }
+}
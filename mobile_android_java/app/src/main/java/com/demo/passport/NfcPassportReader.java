@@ -7,9 +7,17 @@ import net.sf.scuba.smartcards.CardService;
 
 import org.jmrtd.BACKey;
 import org.jmrtd.PassportService;
+import org.jmrtd.lds.PACEInfo;
 
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,12 +27,18 @@ import java.util.regex.Pattern;
  *
  * Key improvements:
  * - Canonical classification of all error scenarios
- * - Detection of PACE requirement (SW=0x6985)
+ * - PACE when EF.CardAccess advertises it, BAC otherwise ({@link NfcAccessNegotiator})
+ * - Detection of PACE requirement (SW=0x6985) when PACE is not usable
  * - Structured logging without MRZ exposure
  * - Backend calls only allowed on SUCCESS
  */
 public final class NfcPassportReader {
     static final int NFC_TIMEOUT_MS = 45000;
+    /** Sanity bound for a TLV length read from the chip; DG2 face images are tens of KB. */
+    static final int MAX_DATA_GROUP_BYTES = 1024 * 1024;
+    /** Reconnects tried within one read when the tag drops out mid-DG2, before the progress is kept for a re-tap. */
+    static final int MAX_RECONNECTS = 2;
+    static final long RECONNECT_DELAY_MS = 150;
 
     /**
      * Pattern to extract SW code from error messages.
@@ -58,10 +72,51 @@ public final class NfcPassportReader {
      * @return NfcReadResult with status and data (if successful)
      */
     public static NfcReadResult readPassportRaw(Tag tag, Models.MRZKeys mrz) {
+        return readPassportRaw(tag, mrz == null ? null : Collections.singletonList(mrz), 1);
+    }
+
+    /**
+     * Tries each distinct candidate in order until PACE or BAC succeeds (see {@link NfcAccessNegotiator}),
+     * re-selecting the applet between BAC attempts. Stops early on PACE_REQUIRED or a lost tag, and never
+     * spends more than {@code maxAttempts} attempts: some chips count failures and slow down or lock access.
+     *
+     * @param tag NFC tag from the chip
+     * @param candidates MRZ keys to try, most likely first
+     * @param maxAttempts cap on PACE/BAC attempts for this session, usually {@link BackendConfig#getMaxBacAttempts()}
+     * @return NfcReadResult with status, data (if successful), access method and attempt counters
+     */
+    public static NfcReadResult readPassportRaw(Tag tag, List<Models.MRZKeys> candidates, int maxAttempts) {
+        return readPassportRaw(tag, candidates, maxAttempts, null, null, null);
+    }
+
+    /**
+     * Same as {@link #readPassportRaw(Tag, List, int)}, with READ BINARY block sizes learned per chip
+     * model. DG2 is read with extended-length APDUs when the device supports them, starting from the
+     * profile's block size (or the largest one for an unknown chip) and stepping down on errors, each
+     * smaller size in a re-authenticated session; sizes that failed are stored so the next tap starts lower.
+     *
+     * If the tag drops out during DG2, the session is reopened up to {@link #MAX_RECONNECTS} times and
+     * the read continues from the last received byte. When that fails too, the bytes read so far go to
+     * {@code partialReads}, and a tap of the same document within its window continues from them.
+     *
+     * A document read completely within the {@code retapCache} TTL is not read again: after access and
+     * DG1, the cached DG2 is reused if DG1 matches.
+     *
+     * @param profiles where working block sizes are looked up and stored; null to probe without learning
+     * @param partialReads where DG2 progress is kept between taps; null to start every read over
+     * @param retapCache complete reads reused on a re-tap of the same document; null to always read DG2
+     */
+    static NfcReadResult readPassportRaw(Tag tag, List<Models.MRZKeys> candidates, int maxAttempts,
+                                         NfcChipProfiles profiles, NfcPartialReads partialReads,
+                                         NfcRetapCache retapCache) {
         NfcLogger.logSessionStart();
 
         // Validate inputs
-        if (mrz == null) {
+        List<Models.MRZKeys> keys = distinctCandidates(candidates, maxAttempts);
+        if (partialReads != null) {
+            keys = resumableFirst(keys, partialReads);
+        }
+        if (keys.isEmpty()) {
             NfcLogger.logError(NfcReadStatus.BAC_FAILED, "input_validation", null, null);
             return NfcReadResult.error(
                     NfcReadStatus.BAC_FAILED,
@@ -92,54 +147,29 @@ public final class NfcPassportReader {
             );
         }
 
-        PassportService service = null;
+        Session session = new Session(isoDep);
         try {
             NfcLogger.logStage("connection");
-            isoDep.connect();
-            isoDep.setTimeout(NFC_TIMEOUT_MS);
-            CardService cardService = CardService.getInstance(isoDep);
-            service = new PassportService(
-                    cardService,
-                    PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
-                    PassportService.DEFAULT_MAX_BLOCKSIZE,
-                    false,
-                    false
-            );
-            service.open();
-
-            // Select passport applet
-            NfcLogger.logStage("applet_selection");
-            try {
-                service.sendSelectApplet(false);
-            } catch (Exception e) {
-                String swCode = extractSwCode(e);
-                NfcLogger.logError(NfcReadStatus.APPLET_SELECTION_FAILED, "applet_selection", swCode, e);
-                return NfcReadResult.error(
-                        NfcReadStatus.APPLET_SELECTION_FAILED,
-                        "applet_selection",
-                        swCode,
-                        "Failed to select passport applet: " + e.getMessage()
-                );
-            }
-
-            // Perform BAC authentication
-            NfcLogger.logStage("bac_authentication");
-            BACKey bacKey = new BACKey(
-                    mrz.document_number,
-                    mrz.date_of_birth,
-                    mrz.date_of_expiry
-            );
-            try {
-                service.doBAC(bacKey);
-            } catch (Exception e) {
-                return handleBacError(e, mrz);
+            session.open();
+            PassportService service = session.service;
+            int maxTransceiveLength = session.maxTransceiveLength;
+
+            // EF.CardAccess decides between PACE and BAC; candidates are tried in order
+            NfcLogger.logStage("access_negotiation");
+            NfcAccessNegotiator.Outcome access = NfcAccessNegotiator.negotiate(
+                    new PassportChip(service, isoDep), keys, Math.max(1, maxAttempts));
+            if (!access.isAuthenticated()) {
+                return handleAccessFailure(access);
             }
+            Models.MRZKeys mrz = keys.get(access.candidateIndex);
+            NfcLogger.logStage(access.accessMethod.equals(NfcAccessNegotiator.METHOD_PACE)
+                    ? "pace_authenticated" : "bac_authenticated");
 
             // Read DG1 (MRZ data)
             NfcLogger.logStage("dg1_read");
             byte[] dg1Raw;
             try (InputStream dg1Input = service.getInputStream(PassportService.EF_DG1)) {
-                dg1Raw = readAllBytes(dg1Input);
+                dg1Raw = readDataGroup(dg1Input);
             } catch (Exception e) {
                 String swCode = extractSwCode(e);
                 NfcLogger.logError(NfcReadStatus.DG_READ_ERROR, "dg1_read", swCode, e);
@@ -151,20 +181,67 @@ public final class NfcPassportReader {
                 );
             }
 
-            // Read DG2 (face image)
+            // Same document read moments ago: DG1 matched, so its DG2 is reused
+            byte[] cachedDg2 = retapCache != null ? retapCache.get(mrz, dg1Raw) : null;
+            if (cachedDg2 != null) {
+                NfcLogger.logStage("dg2_cached");
+                NfcLogger.logDataRead(dg1Raw.length, cachedDg2.length);
+                Models.NfcRawResult data = new Models.NfcRawResult();
+                data.dg1Raw = dg1Raw;
+                data.dg2Raw = cachedDg2;
+                data.mrzKeys = mrz;
+                NfcReadResult result = NfcReadResult.success(data).withAccess(
+                        access.accessMethod, access.paceSupported, access.attempts, access.candidateIndex)
+                        .withDg2FromCache();
+                NfcLogger.logResult(result);
+                return result;
+            }
+
+            // Read DG2 (face image) with the largest block size this chip model accepts,
+            // continuing from an earlier tap of the same document if one lost the tag
             NfcLogger.logStage("dg2_read");
-            byte[] dg2Raw;
-            try (InputStream dg2Input = service.getInputStream(PassportService.EF_DG2)) {
-                dg2Raw = readAllBytes(dg2Input);
+            String profileKey = NfcChipProfiles.key(historicalBytes(isoDep), NfcDiagnosticData.issuingStateOf(dg1Raw));
+            int[] blockSizes = profiles != null
+                    ? profiles.blockSizesFor(profileKey, maxTransceiveLength)
+                    : NfcChipProfiles.blockSizes(maxTransceiveLength);
+            PartialFile dg2Progress = partialReads != null ? partialReads.take(mrz, dg1Raw) : null;
+            int resumedFrom = 0;
+            if (dg2Progress != null) {
+                resumedFrom = dg2Progress.offset;
+                NfcLogger.logStage("dg2_resumed");
+            } else {
+                dg2Progress = new PartialFile();
+            }
+            final PartialFile progress = dg2Progress;
+            BlockRead dg2;
+            try {
+                dg2 = readWithReconnects(dg2Reader(service, progress), blockSizes, isoDep::isConnected, () -> {
+                    NfcLogger.logStage("dg2_reconnect");
+                    return dg2Reader(session.reopen(mrz), progress);
+                }, failedBlockSize -> {
+                    if (profiles != null) {
+                        profiles.putFailed(profileKey, failedBlockSize);
+                    }
+                    NfcLogger.logStage("dg2_step_down");
+                    return dg2Reader(session.reopen(mrz), progress);
+                }, MAX_RECONNECTS);
             } catch (Exception e) {
                 String swCode = extractSwCode(e);
                 NfcLogger.logError(NfcReadStatus.DG_READ_ERROR, "dg2_read", swCode, e);
+                int kept = partialReads != null && partialReads.save(mrz, dg1Raw, progress) ? progress.offset : 0;
                 return NfcReadResult.error(
                         NfcReadStatus.DG_READ_ERROR,
                         "dg2_read",
                         swCode,
                         "DG2 read failed: " + e.getMessage()
-                );
+                ).withDg2Resume(kept);
+            }
+            byte[] dg2Raw = dg2.bytes;
+            if (dg2.blockSize != blockSizes[0]) {
+                NfcLogger.logStage("dg2_read_stepped_down");
+            }
+            if (profiles != null) {
+                profiles.put(profileKey, dg2.blockSize);
             }
 
             // Validate minimum sizes
@@ -195,8 +272,13 @@ public final class NfcPassportReader {
             data.dg1Raw = dg1Raw;
             data.dg2Raw = dg2Raw;
             data.mrzKeys = mrz;
+            if (retapCache != null) {
+                retapCache.put(mrz, dg1Raw, dg2Raw);
+            }
 
-            NfcReadResult result = NfcReadResult.success(data);
+            NfcReadResult result = NfcReadResult.success(data).withAccess(
+                    access.accessMethod, access.paceSupported, access.attempts, access.candidateIndex)
+                    .withDg2Resume(resumedFrom);
             NfcLogger.logResult(result);
             return result;
 
@@ -210,9 +292,44 @@ public final class NfcPassportReader {
                     "NFC read failed: " + e.getMessage()
             );
         } finally {
-            closeQuietly(service);
-            closeQuietly(isoDep);
+            session.close();
+        }
+    }
+
+    /**
+     * Maps a failed access negotiation to a result: applet selection, PACE and BAC failures keep their
+     * own stages, and the attempt counters are attached.
+     */
+    private static NfcReadResult handleAccessFailure(NfcAccessNegotiator.Outcome access) {
+        NfcReadResult result;
+        Exception e = access.error;
+        if (NfcAccessNegotiator.STAGE_APPLET_SELECTION.equals(access.failedStage)) {
+            String swCode = extractSwCode(e);
+            NfcLogger.logError(NfcReadStatus.APPLET_SELECTION_FAILED, "applet_selection", swCode, e);
+            result = NfcReadResult.error(
+                    NfcReadStatus.APPLET_SELECTION_FAILED,
+                    "applet_selection",
+                    swCode,
+                    "Failed to select passport applet: " + (e != null ? e.getMessage() : null)
+            );
+        } else if (NfcAccessNegotiator.STAGE_PACE.equals(access.failedStage)) {
+            String swCode = extractSwCode(e);
+            NfcLogger.logError(NfcReadStatus.BAC_FAILED, "pace_authentication", swCode, e);
+            result = NfcReadResult.error(
+                    NfcReadStatus.BAC_FAILED,
+                    "pace_authentication",
+                    swCode,
+                    "PACE authentication failed [doc=" + maskDocumentNumber(access.failedKeys) + "]: "
+                            + (e != null ? e.getMessage() : null)
+            );
+        } else if (e != null && access.failedKeys != null) {
+            result = handleBacError(e, access.failedKeys);
+        } else {
+            NfcLogger.logError(NfcReadStatus.BAC_FAILED, "bac_authentication", null, null);
+            result = NfcReadResult.error(NfcReadStatus.BAC_FAILED, "bac_authentication", null,
+                    "No access attempt was made");
         }
+        return result.withAccess(null, access.paceSupported, access.attempts, -1);
     }
 
     /**
@@ -240,9 +357,7 @@ public final class NfcPassportReader {
 
         // Regular BAC failure (wrong MRZ data, etc.)
         // Include masked document number for debugging (first 3 chars only)
-        String docNumMasked = mrz.document_number != null && mrz.document_number.length() > 3
-                ? mrz.document_number.substring(0, 3) + "***"
-                : "***";
+        String docNumMasked = maskDocumentNumber(mrz);
 
         NfcLogger.logError(NfcReadStatus.BAC_FAILED, "bac_authentication", swCode, e);
         return NfcReadResult.error(
@@ -253,6 +368,12 @@ public final class NfcPassportReader {
         );
     }
 
+    private static String maskDocumentNumber(Models.MRZKeys mrz) {
+        return mrz != null && mrz.document_number != null && mrz.document_number.length() > 3
+                ? mrz.document_number.substring(0, 3) + "***"
+                : "***";
+    }
+
     /**
      * Determines if the error indicates PACE is required.
      *
@@ -305,14 +426,377 @@ public final class NfcPassportReader {
         return null;
     }
 
-    private static byte[] readAllBytes(InputStream inputStream) throws Exception {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        byte[] buffer = new byte[4096];
-        int read;
-        while ((read = inputStream.read(buffer)) != -1) {
-            output.write(buffer, 0, read);
+    /** Reads one data group with a given READ BINARY block size. */
+    interface BlockReader {
+        byte[] read(int blockSize) throws Exception;
+    }
+
+    static final class BlockRead {
+        final byte[] bytes;
+        final int blockSize;
+
+        BlockRead(byte[] bytes, int blockSize) {
+            this.bytes = bytes;
+            this.blockSize = blockSize;
+        }
+    }
+
+    /**
+     * Replaces the session after a READ BINARY of {@code failedBlockSize} failed with the tag present:
+     * the chip aborts secure messaging on such an error (6987/6988), so the next size needs a freshly
+     * authenticated session.
+     */
+    interface StepDown {
+        BlockReader renew(int failedBlockSize) throws Exception;
+    }
+
+    /**
+     * Tries {@code blockSizes} in order until one reads the whole file, renewing the session through
+     * {@code stepDown} before each smaller size. The fragments already read are kept, so a smaller
+     * retry continues where the larger one failed. A lost tag or a failed renewal ends the ladder with
+     * the read error; the last error is rethrown when every size fails.
+     */
+    static BlockRead readWithStepDown(BlockReader reader, int[] blockSizes, BooleanSupplier connected,
+                                      StepDown stepDown) throws Exception {
+        Exception last = null;
+        for (int i = 0; i < blockSizes.length; i++) {
+            try {
+                return new BlockRead(reader.read(blockSizes[i]), blockSizes[i]);
+            } catch (Exception e) {
+                last = e;
+                if (!connected.getAsBoolean() || i == blockSizes.length - 1) {
+                    break;
+                }
+                try {
+                    reader = stepDown.renew(blockSizes[i]);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                } catch (Exception renewFailed) {
+                    throw e;
+                }
+            }
+        }
+        throw last != null ? last : new IllegalArgumentException("No block sizes to try");
+    }
+
+    /** Opens a fresh authenticated session after the tag was lost and returns a reader bound to it. */
+    interface Reconnector {
+        BlockReader reconnect() throws Exception;
+    }
+
+    /**
+     * {@link #readWithStepDown} that survives brief tag loss: when a read fails with the tag gone, up to
+     * {@code maxReconnects} reconnects are tried in total and the read goes on with the reader they
+     * return. The original read error is rethrown when the tag is still connected or cannot be reached.
+     */
+    static BlockRead readWithReconnects(BlockReader reader, int[] blockSizes, BooleanSupplier connected,
+                                        Reconnector reconnector, StepDown stepDown, int maxReconnects)
+            throws Exception {
+        int reconnects = 0;
+        while (true) {
+            try {
+                return readWithStepDown(reader, blockSizes, connected, stepDown);
+            } catch (Exception e) {
+                BlockReader next = null;
+                while (next == null && !connected.getAsBoolean() && reconnects < maxReconnects) {
+                    reconnects++;
+                    try {
+                        next = reconnector.reconnect();
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    } catch (Exception ignored) {
+                        // Still out of the field; the next attempt or the read error decides.
+                    }
+                }
+                if (next == null) {
+                    throw e;
+                }
+                reader = next;
+            }
+        }
+    }
+
+    /** DG2 reader that fills {@code progress}, so every retry continues where the last one stopped. */
+    private static BlockReader dg2Reader(PassportService service, PartialFile progress) {
+        return blockSize -> {
+            try (InputStream dg2Input = service.getInputStream(PassportService.EF_DG2, blockSize)) {
+                return readDataGroup(dg2Input, progress);
+            }
+        };
+    }
+
+    /**
+     * Moves the candidate with saved DG2 progress to the front, so a re-tap does not spend chip attempts
+     * on the other candidates first.
+     */
+    private static List<Models.MRZKeys> resumableFirst(List<Models.MRZKeys> keys, NfcPartialReads partialReads) {
+        for (int i = 1; i < keys.size(); i++) {
+            if (partialReads.has(keys.get(i))) {
+                List<Models.MRZKeys> reordered = new ArrayList<>(keys);
+                reordered.add(0, reordered.remove(i));
+                return reordered;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Extended-length transceive limit when the reader supports it, the short APDU limit otherwise.
+     */
+    private static int maxTransceiveLength(IsoDep isoDep) {
+        if (!isoDep.isExtendedLengthApduSupported()) {
+            return PassportService.NORMAL_MAX_TRANCEIVE_LENGTH;
+        }
+        return Math.max(PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
+                Math.min(PassportService.EXTENDED_MAX_TRANCEIVE_LENGTH, isoDep.getMaxTransceiveLength()));
+    }
+
+    /** ATS historical bytes (NFC-A) or ATTRIB higher-layer response (NFC-B). */
+    private static byte[] historicalBytes(IsoDep isoDep) {
+        byte[] bytes = isoDep.getHistoricalBytes();
+        return bytes != null ? bytes : isoDep.getHiLayerResponse();
+    }
+
+    /**
+     * Drops null and repeated candidates (same document number and dates), keeping order, and cuts the
+     * list to {@code maxAttempts} (at least one).
+     */
+    static List<Models.MRZKeys> distinctCandidates(List<Models.MRZKeys> candidates, int maxAttempts) {
+        List<Models.MRZKeys> distinct = new ArrayList<>();
+        if (candidates == null) {
+            return distinct;
+        }
+        int limit = Math.max(1, maxAttempts);
+        for (Models.MRZKeys candidate : candidates) {
+            if (distinct.size() == limit) {
+                break;
+            }
+            if (candidate != null && !containsKeys(distinct, candidate)) {
+                distinct.add(candidate);
+            }
+        }
+        return distinct;
+    }
+
+    private static boolean containsKeys(List<Models.MRZKeys> list, Models.MRZKeys keys) {
+        for (Models.MRZKeys other : list) {
+            if (Objects.equals(other.document_number, keys.document_number)
+                    && Objects.equals(other.date_of_birth, keys.date_of_birth)
+                    && Objects.equals(other.date_of_expiry, keys.date_of_expiry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A data group being read: its exact-size array once the TLV header is known, and how many bytes of
+     * it have arrived. Survives a failed read so the next one can continue.
+     */
+    static final class PartialFile {
+        byte[] file;
+        int offset;
+
+        void wipe() {
+            if (file != null) {
+                Arrays.fill(file, (byte) 0);
+            }
+            file = null;
+            offset = 0;
+        }
+    }
+
+    /**
+     * Reads one BER-TLV encoded EF into an array of exactly its size. The tag and length are read
+     * first; the value then goes straight into the final array, with no intermediate buffer.
+     */
+    static byte[] readDataGroup(InputStream input) throws IOException {
+        return readDataGroup(input, new PartialFile());
+    }
+
+    /**
+     * {@link #readDataGroup(InputStream)} that records progress in {@code progress}. If it already holds
+     * part of the same file (same TLV header), the bytes before its offset are skipped, which costs no
+     * READ BINARY on a jmrtd stream, and only the rest is read. A different header starts over.
+     */
+    static byte[] readDataGroup(InputStream input, PartialFile progress) throws IOException {
+        byte[] header = new byte[2 + 4 + 4];
+        int headerLength = 0;
+        int tag = readByte(input);
+        header[headerLength++] = (byte) tag;
+        if ((tag & 0x1F) == 0x1F) {
+            int next;
+            do {
+                if (headerLength == 3) {
+                    throw new IOException("Tag longer than 3 bytes");
+                }
+                next = readByte(input);
+                header[headerLength++] = (byte) next;
+            } while ((next & 0x80) != 0);
+        }
+        int first = readByte(input);
+        header[headerLength++] = (byte) first;
+        int valueLength;
+        if (first < 0x80) {
+            valueLength = first;
+        } else {
+            int lengthBytes = first & 0x7F;
+            if (lengthBytes == 0 || lengthBytes > 3) {
+                throw new IOException("Unsupported TLV length form 0x" + Integer.toHexString(first));
+            }
+            valueLength = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                int b = readByte(input);
+                header[headerLength++] = (byte) b;
+                valueLength = valueLength << 8 | b;
+            }
+        }
+        if (valueLength > MAX_DATA_GROUP_BYTES) {
+            throw new IOException("Data group of " + valueLength + " bytes exceeds " + MAX_DATA_GROUP_BYTES);
+        }
+        int fileLength = headerLength + valueLength;
+        if (progress.file != null && !startsWith(progress.file, fileLength, header, headerLength)) {
+            progress.wipe();
+        }
+        if (progress.file == null) {
+            progress.file = new byte[fileLength];
+            System.arraycopy(header, 0, progress.file, 0, headerLength);
+            progress.offset = headerLength;
+        } else {
+            skipFully(input, progress.offset - headerLength);
+        }
+        byte[] file = progress.file;
+        while (progress.offset < file.length) {
+            int read = input.read(file, progress.offset, file.length - progress.offset);
+            if (read < 0) {
+                throw new EOFException("Data group ended after " + progress.offset + " of " + file.length + " bytes");
+            }
+            progress.offset += read;
+        }
+        return file;
+    }
+
+    private static boolean startsWith(byte[] file, int fileLength, byte[] header, int headerLength) {
+        if (file.length != fileLength) {
+            return false;
+        }
+        for (int i = 0; i < headerLength; i++) {
+            if (file[i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        while (count > 0) {
+            long skipped = input.skip(count);
+            if (skipped <= 0) {
+                readByte(input);
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int b = input.read();
+        if (b < 0) {
+            throw new EOFException("Data group ended inside its TLV header");
+        }
+        return b;
+    }
+
+    /** {@link NfcAccessNegotiator.Chip} over a jmrtd service on an open IsoDep connection. */
+    private static final class PassportChip implements NfcAccessNegotiator.Chip {
+        private final PassportService service;
+        private final IsoDep isoDep;
+
+        PassportChip(PassportService service, IsoDep isoDep) {
+            this.service = service;
+            this.isoDep = isoDep;
+        }
+
+        @Override
+        public byte[] readCardAccess() throws Exception {
+            try (InputStream input = service.getInputStream(PassportService.EF_CARD_ACCESS)) {
+                return readDataGroup(input);
+            }
+        }
+
+        @Override
+        public void selectApplet(boolean afterPace) throws Exception {
+            service.sendSelectApplet(afterPace);
+        }
+
+        @Override
+        public void doPace(Models.MRZKeys keys, PACEInfo info) throws Exception {
+            service.doPACE(bacKey(keys), info.getObjectIdentifier(),
+                    PACEInfo.toParameterSpec(info.getParameterId()), info.getParameterId());
+        }
+
+        @Override
+        public void doBac(Models.MRZKeys keys) throws Exception {
+            service.doBAC(bacKey(keys));
+        }
+
+        @Override
+        public boolean isConnected() {
+            return isoDep.isConnected();
+        }
+
+        private static BACKey bacKey(Models.MRZKeys keys) {
+            return new BACKey(keys.document_number, keys.date_of_birth, keys.date_of_expiry);
+        }
+    }
+
+    /** The IsoDep connection and jmrtd service of one read; reopened in place after a lost tag. */
+    private static final class Session {
+        final IsoDep isoDep;
+        int maxTransceiveLength;
+        PassportService service;
+
+        Session(IsoDep isoDep) {
+            this.isoDep = isoDep;
+        }
+
+        void open() throws Exception {
+            isoDep.connect();
+            isoDep.setTimeout(NFC_TIMEOUT_MS);
+            maxTransceiveLength = maxTransceiveLength(isoDep);
+            service = new PassportService(
+                    CardService.getInstance(isoDep),
+                    maxTransceiveLength,
+                    PassportService.DEFAULT_MAX_BLOCKSIZE,
+                    false,
+                    false
+            );
+            service.open();
+        }
+
+        /**
+         * Reconnects after a short pause and authenticates again with the keys that already worked, so
+         * no chip attempt is spent on a wrong key.
+         */
+        PassportService reopen(Models.MRZKeys keys) throws Exception {
+            close();
+            Thread.sleep(RECONNECT_DELAY_MS);
+            open();
+            NfcAccessNegotiator.Outcome access = NfcAccessNegotiator.negotiate(
+                    new PassportChip(service, isoDep), Collections.singletonList(keys), 1);
+            if (!access.isAuthenticated()) {
+                throw access.error != null ? access.error : new IOException("Re-authentication failed");
+            }
+            return service;
+        }
+
+        void close() {
+            closeQuietly(service);
+            service = null;
+            closeQuietly(isoDep);
         }
-        return output.toByteArray();
     }
 
     private static void closeQuietly(PassportService service) {
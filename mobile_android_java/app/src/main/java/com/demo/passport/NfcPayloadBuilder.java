@@ -5,9 +5,15 @@ import com.google.gson.JsonObject;
 import java.util.Base64;
 import java.util.Map;
 
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+
 final class NfcPayloadBuilder {
     static final int MIN_FACE_IMAGE_BYTES = 1024;
     static final int MIN_DG1_BYTES = 10;
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+    private static final MediaType JSON = MediaType.parse("application/json");
 
     /**
      * Build payload with raw DG1/DG2 bytes for server-side decoding.
@@ -17,18 +23,7 @@ final class NfcPayloadBuilder {
      * @return JSON payload with base64-encoded raw bytes
      */
     static JsonObject buildRaw(Models.NfcRawResult result) {
-        if (result == null) {
-            throw new IllegalArgumentException("NFC raw result is null");
-        }
-        if (result.dg1Raw == null || result.dg1Raw.length < MIN_DG1_BYTES) {
-            throw new IllegalArgumentException("DG1 raw data is missing or too small");
-        }
-        if (result.dg2Raw == null || result.dg2Raw.length < MIN_FACE_IMAGE_BYTES) {
-            throw new IllegalArgumentException("DG2 raw data is missing or too small");
-        }
-        if (result.mrzKeys == null) {
-            throw new IllegalArgumentException("MRZ keys are required for verification");
-        }
+        requireRawResult(result);
 
         JsonObject payload = new JsonObject();
 
@@ -40,11 +35,7 @@ final class NfcPayloadBuilder {
         payload.addProperty("dg2_raw_b64", dg2Base64);
 
         // Include MRZ keys for server-side verification
-        JsonObject mrzJson = new JsonObject();
-        mrzJson.addProperty("document_number", result.mrzKeys.document_number);
-        mrzJson.addProperty("date_of_birth", result.mrzKeys.date_of_birth);
-        mrzJson.addProperty("date_of_expiry", result.mrzKeys.date_of_expiry);
-        payload.add("mrz_keys", mrzJson);
+        payload.add("mrz_keys", buildMrzKeys(result.mrzKeys));
 
         // Mark as raw format for server routing
         payload.addProperty("format", "raw");
@@ -52,6 +43,66 @@ final class NfcPayloadBuilder {
         return payload;
     }
 
+    /**
+     * Same payload as {@link #buildRaw(Models.NfcRawResult)}, streamed into the HTTP sink
+     * instead of being built as a JSON tree and String.
+     *
+     * @param result Raw NFC data from the chip
+     * @return application/json body with the raw format envelope
+     */
+    static RequestBody buildRawBody(Models.NfcRawResult result) {
+        requireRawResult(result);
+        return new NfcRawRequestBody(result);
+    }
+
+    /**
+     * Build a multipart body with DG1/DG2 as binary parts, skipping base64 and JSON string building.
+     * Parts: {@code dg1} and {@code dg2} ({@code application/octet-stream}),
+     * {@code mrz_keys} ({@code application/json}) and {@code format=raw}.
+     *
+     * @param result Raw NFC data from the chip
+     * @return multipart/form-data body referencing the DG arrays without copying them
+     */
+    static MultipartBody buildRawMultipart(Models.NfcRawResult result) {
+        requireRawResult(result);
+        return new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("dg1", "dg1.bin", RequestBody.create(result.dg1Raw, OCTET_STREAM))
+                .addFormDataPart("dg2", "dg2.bin", RequestBody.create(result.dg2Raw, OCTET_STREAM))
+                .addFormDataPart("mrz_keys", null,
+                        RequestBody.create(buildMrzKeys(result.mrzKeys).toString(), JSON))
+                .addFormDataPart("format", "raw")
+                .build();
+    }
+
+    /**
+     * Checks that the raw result has everything the /nfc raw contract needs.
+     *
+     * @throws IllegalArgumentException describing the first missing piece
+     */
+    static void requireRawResult(Models.NfcRawResult result) {
+        if (result == null) {
+            throw new IllegalArgumentException("NFC raw result is null");
+        }
+        if (result.dg1Raw == null || result.dg1Raw.length < MIN_DG1_BYTES) {
+            throw new IllegalArgumentException("DG1 raw data is missing or too small");
+        }
+        if (result.dg2Raw == null || result.dg2Raw.length < MIN_FACE_IMAGE_BYTES) {
+            throw new IllegalArgumentException("DG2 raw data is missing or too small");
+        }
+        if (result.mrzKeys == null) {
+            throw new IllegalArgumentException("MRZ keys are required for verification");
+        }
+    }
+
+    private static JsonObject buildMrzKeys(Models.MRZKeys keys) {
+        JsonObject mrzJson = new JsonObject();
+        mrzJson.addProperty("document_number", keys.document_number);
+        mrzJson.addProperty("date_of_birth", keys.date_of_birth);
+        mrzJson.addProperty("date_of_expiry", keys.date_of_expiry);
+        return mrzJson;
+    }
+
     /**
      * Build payload with pre-parsed passport data (legacy method).
      * @deprecated Use {@link #buildRaw(Models.NfcRawResult)} for server-side decoding.
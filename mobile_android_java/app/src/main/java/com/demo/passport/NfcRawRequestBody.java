@@ -0,0 +1,191 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Streams the /nfc raw JSON payload straight into the HTTP sink.
+ *
+ * The envelope is written with a Gson {@link JsonWriter}; DG1/DG2 are base64-encoded straight
+ * from the {@link Models.NfcRawResult} arrays through one pooled output chunk into the sink, so no
+ * JSON tree, no base64 String and no copy of the face blob is ever built. Output is byte-for-byte
+ * what {@code gson.toJson(NfcPayloadBuilder.buildRaw(result))} produces, including Gson's HTML-safe
+ * escaping of the {@code =} padding and omitted null fields.
+ */
+final class NfcRawRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    /** Source bytes per chunk; a multiple of 3 so chunks never need padding. */
+    static final int CHUNK_BYTES = 3 * 1024;
+    private static final String ESCAPED_PADDING = "\\u003d";
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    /** Base64 output chunks; they hold encoded face bytes, so they are zeroed between uses. */
+    static final SensitiveBufferPool OUTPUT_BUFFERS = new SensitiveBufferPool(CHUNK_BYTES / 3 * 4, 2);
+
+    private final Models.NfcRawResult result;
+    private long contentLength = -1;
+
+    NfcRawRequestBody(@NonNull Models.NfcRawResult result) {
+        this.result = result;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (contentLength < 0) {
+            Buffer envelope = new Buffer();
+            write(envelope, false);
+            contentLength = envelope.size()
+                    + encodedLength(result.dg1Raw.length)
+                    + encodedLength(result.dg2Raw.length);
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        write(sink, true);
+    }
+
+    private void write(BufferedSink sink, boolean includeData) throws IOException {
+        byte[] output = OUTPUT_BUFFERS.acquire();
+        try {
+            write(sink, includeData, output);
+        } finally {
+            OUTPUT_BUFFERS.release(output);
+        }
+    }
+
+    private void write(BufferedSink sink, boolean includeData, byte[] output) throws IOException {
+        JsonWriter json = new JsonWriter(new SinkWriter(sink));
+        json.setHtmlSafe(true);
+        json.setSerializeNulls(false);
+        json.beginObject();
+        json.name("dg1_raw_b64");
+        writeBase64(json, sink, includeData ? result.dg1Raw : null, output);
+        json.name("dg2_raw_b64");
+        writeBase64(json, sink, includeData ? result.dg2Raw : null, output);
+        json.name("mrz_keys");
+        json.beginObject();
+        json.name("document_number").value(result.mrzKeys.document_number);
+        json.name("date_of_birth").value(result.mrzKeys.date_of_birth);
+        json.name("date_of_expiry").value(result.mrzKeys.date_of_expiry);
+        json.endObject();
+        json.name("format").value("raw");
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Writes {@code "<base64>"} as the value of the pending name. The opening quote goes through
+     * the JsonWriter so it emits the separator and tracks state; base64 needs no escaping
+     * apart from the padding, so the body is written to the sink directly.
+     */
+    private static void writeBase64(
+            JsonWriter json,
+            BufferedSink sink,
+            @Nullable byte[] data,
+            byte[] output
+    ) throws IOException {
+        json.jsonValue("\"");
+        if (data != null) {
+            for (int offset = 0; offset < data.length; offset += CHUNK_BYTES) {
+                int written = encodeUnpadded(data, offset, Math.min(CHUNK_BYTES, data.length - offset), output);
+                sink.write(output, 0, written);
+            }
+            for (int i = 0; i < paddingLength(data.length); i++) {
+                sink.writeUtf8(ESCAPED_PADDING);
+            }
+        }
+        sink.writeByte('"');
+    }
+
+    /**
+     * Base64-encodes {@code length} bytes of {@code data} from {@code offset} into {@code output}
+     * without padding; returns the number of characters written.
+     */
+    static int encodeUnpadded(byte[] data, int offset, int length, byte[] output) {
+        int out = 0;
+        int end = offset + length;
+        int i = offset;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            output[out++] = ALPHABET[bits >>> 18];
+            output[out++] = ALPHABET[(bits >>> 12) & 0x3F];
+            output[out++] = ALPHABET[(bits >>> 6) & 0x3F];
+            output[out++] = ALPHABET[bits & 0x3F];
+        }
+        if (i < end) {
+            int bits = (data[i] & 0xFF) << 16 | (i + 1 < end ? (data[i + 1] & 0xFF) << 8 : 0);
+            output[out++] = ALPHABET[bits >>> 18];
+            output[out++] = ALPHABET[(bits >>> 12) & 0x3F];
+            if (i + 1 < end) {
+                output[out++] = ALPHABET[(bits >>> 6) & 0x3F];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Length of the base64 characters plus escaped padding, excluding quotes.
+     */
+    static long encodedLength(int byteCount) {
+        long unpadded = (byteCount / 3) * 4L + (byteCount % 3 == 0 ? 0 : byteCount % 3 + 1);
+        return unpadded + (long) paddingLength(byteCount) * ESCAPED_PADDING.length();
+    }
+
+    private static int paddingLength(int byteCount) {
+        return (3 - byteCount % 3) % 3;
+    }
+
+    /**
+     * Unbuffered UTF-8 writer over the sink, so JsonWriter output and raw base64 stay in order
+     * and flushing JSON does not flush the socket.
+     */
+    private static final class SinkWriter extends Writer {
+        private final BufferedSink sink;
+
+        SinkWriter(BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            sink.writeUtf8CodePoint(c);
+        }
+
+        @Override
+        public void write(@NonNull String str, int off, int len) throws IOException {
+            sink.writeUtf8(str, off, off + len);
+        }
+
+        @Override
+        public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+            sink.writeUtf8(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
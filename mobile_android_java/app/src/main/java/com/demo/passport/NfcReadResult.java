@@ -44,25 +44,69 @@ public final class NfcReadResult {
     @Nullable
     public final String technicalMessage;
 
+    /**
+     * Access protocol that authenticated ("PACE" or "BAC"), null if none did.
+     */
+    @Nullable
+    public final String accessMethod;
+
+    /**
+     * Whether the chip advertised PACE in EF.CardAccess.
+     */
+    public final boolean paceSupported;
+
+    /**
+     * Number of PACE/BAC attempts spent in this session (0 if authentication was not reached).
+     */
+    public final int accessAttempts;
+
+    /**
+     * Index of the candidate key that authenticated, or -1 if none did.
+     */
+    public final int accessCandidateIndex;
+
+    /**
+     * DG2 bytes carried between taps: on DG_READ_ERROR, bytes kept for the next tap of the same document;
+     * on success, the offset the read continued from. 0 otherwise.
+     */
+    public final int dg2ResumeOffset;
+
+    /**
+     * Whether DG2 came from {@link NfcRetapCache} after a re-tap instead of from the chip.
+     */
+    public final boolean dg2FromCache;
+
     private NfcReadResult(
             @NonNull NfcReadStatus status,
             @Nullable Models.NfcRawResult data,
             @Nullable String errorStage,
             @Nullable String swCode,
-            @Nullable String technicalMessage
+            @Nullable String technicalMessage,
+            @Nullable String accessMethod,
+            boolean paceSupported,
+            int accessAttempts,
+            int accessCandidateIndex,
+            int dg2ResumeOffset,
+            boolean dg2FromCache
     ) {
         this.status = status;
         this.data = data;
         this.errorStage = errorStage;
         this.swCode = swCode;
         this.technicalMessage = technicalMessage;
+        this.accessMethod = accessMethod;
+        this.paceSupported = paceSupported;
+        this.accessAttempts = accessAttempts;
+        this.accessCandidateIndex = accessCandidateIndex;
+        this.dg2ResumeOffset = dg2ResumeOffset;
+        this.dg2FromCache = dg2FromCache;
     }
 
     /**
      * Creates a successful result with data.
      */
     public static NfcReadResult success(@NonNull Models.NfcRawResult data) {
-        return new NfcReadResult(NfcReadStatus.SUCCESS, data, null, null, null);
+        return new NfcReadResult(NfcReadStatus.SUCCESS, data, null, null, null, null, false, 0, -1, 0, false);
     }
 
     /**
@@ -77,7 +121,7 @@ public final class NfcReadResult {
         if (status == NfcReadStatus.SUCCESS) {
             throw new IllegalArgumentException("Cannot create error result with SUCCESS status");
         }
-        return new NfcReadResult(status, null, errorStage, swCode, technicalMessage);
+        return new NfcReadResult(status, null, errorStage, swCode, technicalMessage, null, false, 0, -1, 0, false);
     }
 
     /**
@@ -94,6 +138,30 @@ public final class NfcReadResult {
         return error(status, null, null, null);
     }
 
+    /**
+     * Returns a copy of this result carrying what happened during chip access.
+     */
+    public NfcReadResult withAccess(@Nullable String method, boolean paceSupported, int attempts, int candidateIndex) {
+        return new NfcReadResult(status, data, errorStage, swCode, technicalMessage,
+                method, paceSupported, attempts, candidateIndex, dg2ResumeOffset, dg2FromCache);
+    }
+
+    /**
+     * Returns a copy of this result with the DG2 bytes carried between taps.
+     */
+    public NfcReadResult withDg2Resume(int offset) {
+        return new NfcReadResult(status, data, errorStage, swCode, technicalMessage,
+                accessMethod, paceSupported, accessAttempts, accessCandidateIndex, offset, dg2FromCache);
+    }
+
+    /**
+     * Returns a copy of this result marked as served from the re-tap cache.
+     */
+    public NfcReadResult withDg2FromCache() {
+        return new NfcReadResult(status, data, errorStage, swCode, technicalMessage,
+                accessMethod, paceSupported, accessAttempts, accessCandidateIndex, dg2ResumeOffset, true);
+    }
+
     /**
      * Returns true if the operation was successful and data is available.
      */
@@ -126,6 +194,18 @@ public final class NfcReadResult {
         if (swCode != null) {
             sb.append(", sw=").append(swCode);
         }
+        if (accessMethod != null) {
+            sb.append(", access=").append(accessMethod);
+        }
+        if (accessAttempts > 0) {
+            sb.append(", accessAttempts=").append(accessAttempts).append(", accessCandidate=").append(accessCandidateIndex);
+        }
+        if (dg2ResumeOffset > 0) {
+            sb.append(", dg2ResumeOffset=").append(dg2ResumeOffset);
+        }
+        if (dg2FromCache) {
+            sb.append(", dg2FromCache=true");
+        }
         if (technicalMessage != null) {
             sb.append(", message=").append(technicalMessage);
         }
@@ -35,7 +35,7 @@ public enum NfcReadStatus {
 
     /**
      * Document requires PACE (Password Authenticated Connection Establishment)
-     * which is not supported by this application version.
+     * but PACE could not be used: EF.CardAccess is missing or lists only unsupported parameters.
      *
      * This status is set when BAC fails with SW=0x6985 (CONDITIONS NOT SATISFIED)
      * or when the error indicates PACE is required instead of BAC.
@@ -89,7 +89,7 @@ public enum NfcReadStatus {
             case BAC_FAILED:
                 return "Ошибка аутентификации с чипом. Проверьте корректность данных MRZ (номер документа, дата рождения, срок действия).";
             case PACE_REQUIRED:
-                return "Документ использует современную защиту (PACE). Чтение не поддерживается текущей версией приложения.";
+                return "Документ использует современную защиту (PACE) с параметрами, которые текущая версия приложения не поддерживает.";
             case DG_READ_ERROR:
                 return "Ошибка чтения данных с чипа. Попробуйте повторить сканирование, удерживая документ неподвижно.";
             case PARTIAL_READ:
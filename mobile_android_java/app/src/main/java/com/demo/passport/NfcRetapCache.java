@@ -0,0 +1,203 @@
+package com.demo.passport;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * DG2 of documents read in the last {@link #DEFAULT_TTL_MS}, so a re-tap of the same passport reads
+ * only DG1 and reuses the face image instead of spending tens of seconds on DG2 again.
+ *
+ * Entries are keyed by the MRZ key hash and only served when the chip returns the same DG1 (compared
+ * by SHA-256). DG2 is held AES-GCM encrypted under a key that exists only in this process; nothing
+ * is written to disk. The TTL counts from the read and is not extended by hits. Expired and evicted
+ * entries are zero-filled, and a timer purges them even when no further tap comes.
+ */
+final class NfcRetapCache {
+    private static final String TAG = "NfcRetapCache";
+    static final long DEFAULT_TTL_MS = 2 * 60 * 1000;
+    static final int MAX_ENTRIES = 4;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+    private static final int GCM_IV_BYTES = 12;
+
+    private static NfcRetapCache instance;
+
+    private static final class Entry {
+        final byte[] dg1Digest;
+        final byte[] sealedDg2;
+        final long createdAtMs;
+
+        Entry(byte[] dg1Digest, byte[] sealedDg2, long createdAtMs) {
+            this.dg1Digest = dg1Digest;
+            this.sealedDg2 = sealedDg2;
+            this.createdAtMs = createdAtMs;
+        }
+
+        void wipe() {
+            Arrays.fill(dg1Digest, (byte) 0);
+            Arrays.fill(sealedDg2, (byte) 0);
+        }
+    }
+
+    private final SecretKey key;
+    private final long ttlMs;
+    private final LongSupplier clockMs;
+    @Nullable
+    private final ScheduledExecutorService purger;
+    /** Access-ordered, so the least recently used document is evicted first; guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(8, 0.75f, true);
+
+    /**
+     * Process-wide cache with a fresh random key, so cached faces die with the process; null if no AES
+     * key can be made, in which case every tap reads DG2.
+     */
+    @Nullable
+    static synchronized NfcRetapCache getInstance() {
+        if (instance == null) {
+            try {
+                KeyGenerator generator = KeyGenerator.getInstance("AES");
+                generator.init(256);
+                ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "nfc-retap-cache");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                instance = new NfcRetapCache(generator.generateKey(), DEFAULT_TTL_MS,
+                        () -> System.nanoTime() / 1_000_000, purger);
+            } catch (GeneralSecurityException e) {
+                Log.e(TAG, "Re-tap cache unavailable", e);
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    NfcRetapCache(@NonNull SecretKey key, long ttlMs, @NonNull LongSupplier clockMs,
+                  @Nullable ScheduledExecutorService purger) {
+        this.key = key;
+        this.ttlMs = ttlMs;
+        this.clockMs = clockMs;
+        this.purger = purger;
+    }
+
+    /**
+     * Caches DG2 after a complete read. Encryption failures leave the cache unchanged.
+     */
+    void put(@NonNull Models.MRZKeys keys, @NonNull byte[] dg1, @NonNull byte[] dg2) {
+        Entry entry;
+        try {
+            entry = new Entry(sha256(dg1), encrypt(dg2), clockMs.getAsLong());
+        } catch (GeneralSecurityException e) {
+            return;
+        }
+        synchronized (this) {
+            purgeExpired();
+            Entry previous = entries.put(NfcDiagnosticData.computeMrzKeyHash(keys), entry);
+            if (previous != null) {
+                previous.wipe();
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > MAX_ENTRIES) {
+                eldest.next().wipe();
+                eldest.remove();
+            }
+        }
+        if (purger != null) {
+            purger.schedule(this::purgeExpired, ttlMs + 1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A fresh copy of the cached DG2 if these keys were read within the TTL and the chip returned the
+     * same DG1; null otherwise. A DG1 mismatch drops the entry.
+     */
+    @Nullable
+    synchronized byte[] get(@NonNull Models.MRZKeys keys, @NonNull byte[] dg1) {
+        purgeExpired();
+        String keyHash = NfcDiagnosticData.computeMrzKeyHash(keys);
+        Entry entry = entries.get(keyHash);
+        if (entry == null) {
+            return null;
+        }
+        byte[] dg2 = null;
+        try {
+            if (MessageDigest.isEqual(entry.dg1Digest, sha256(dg1))) {
+                dg2 = decrypt(entry.sealedDg2);
+            }
+        } catch (GeneralSecurityException ignored) {
+            // Treated as a mismatch.
+        }
+        if (dg2 == null) {
+            entries.remove(keyHash);
+            entry.wipe();
+            return null;
+        }
+        return dg2;
+    }
+
+    /** Wipes and drops every entry older than the TTL. */
+    synchronized void purgeExpired() {
+        long now = clockMs.getAsLong();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (now - entry.createdAtMs >= ttlMs) {
+                entry.wipe();
+                it.remove();
+            }
+        }
+    }
+
+    /** Wipes every entry; called when the app leaves the foreground or runs low on memory. */
+    synchronized void clear() {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            entry.getValue().wipe();
+        }
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] iv = cipher.getIV();
+        if (iv.length != GCM_IV_BYTES) {
+            throw new GeneralSecurityException("Unexpected GCM IV length " + iv.length);
+        }
+        byte[] record = new byte[GCM_IV_BYTES + cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, record, 0, GCM_IV_BYTES);
+        cipher.doFinal(plain, 0, plain.length, record, GCM_IV_BYTES);
+        return record;
+    }
+
+    private byte[] decrypt(byte[] record) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, record, 0, GCM_IV_BYTES));
+        return cipher.doFinal(record, GCM_IV_BYTES, record.length - GCM_IV_BYTES);
+    }
+
+    private static byte[] sha256(byte[] bytes) throws GeneralSecurityException {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+}
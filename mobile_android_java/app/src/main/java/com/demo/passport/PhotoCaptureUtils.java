@@ -12,17 +12,38 @@ public final class PhotoCaptureUtils {
         return readImageBytes(file, MIN_IMAGE_BYTES);
     }
 
-    public static byte[] readImageBytes(File file, int minBytes) throws IOException {
+    /**
+     * Validates the captured photo using file metadata only, so the upload can stream it from disk.
+     *
+     * @return file length in bytes
+     */
+    public static long requireImageFile(File file) throws IOException {
+        return requireImageFile(file, MIN_IMAGE_BYTES);
+    }
+
+    public static long requireImageFile(File file, int minBytes) throws IOException {
         if (file == null) {
             throw new IllegalArgumentException("File must not be null");
         }
         if (!file.exists()) {
             throw new FileNotFoundException("File does not exist");
         }
-        long length = file.length();
+        return requireImageLength(file.length(), minBytes);
+    }
+
+    /**
+     * Validates an image size reported by a content provider.
+     * Unknown length (negative) is rejected, because the minimum size cannot be checked.
+     */
+    public static long requireImageLength(long length, int minBytes) {
         if (length <= minBytes) {
             throw new IllegalArgumentException("Image too small");
         }
+        return length;
+    }
+
+    public static byte[] readImageBytes(File file, int minBytes) throws IOException {
+        long length = requireImageFile(file, minBytes);
         if (length > Integer.MAX_VALUE) {
             throw new IOException("File too large");
         }
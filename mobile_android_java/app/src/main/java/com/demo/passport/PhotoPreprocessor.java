@@ -0,0 +1,217 @@
+package com.demo.passport;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Downscales and recompresses the captured photo before /recognize.
+ *
+ * The camera JPEG is decoded with subsampling, scaled to at most the target long edge,
+ * optionally converted to grayscale and re-encoded at the requested quality.
+ * EXIF orientation is applied to the pixels because re-encoding drops the tag.
+ */
+final class PhotoPreprocessor {
+
+    /**
+     * Target resolution and encoding settings for one upload.
+     */
+    static final class Options {
+        final int longEdgePx;
+        final int jpegQuality;
+        final boolean grayscale;
+
+        Options(int longEdgePx, int jpegQuality, boolean grayscale) {
+            if (longEdgePx <= 0) {
+                throw new IllegalArgumentException("longEdgePx must be positive");
+            }
+            if (jpegQuality < 1 || jpegQuality > 100) {
+                throw new IllegalArgumentException("jpegQuality must be in 1..100");
+            }
+            this.longEdgePx = longEdgePx;
+            this.jpegQuality = jpegQuality;
+            this.grayscale = grayscale;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%dpx q%d%s", longEdgePx, jpegQuality, grayscale ? " gray" : "");
+        }
+    }
+
+    /**
+     * Outcome of one preprocessing run, used to check the size/time trade-off.
+     */
+    static final class Result {
+        /** File to upload: the recompressed photo, or the original if recompression did not help. */
+        final File outputFile;
+        final Options options;
+        final long originalBytes;
+        final long outputBytes;
+        final long elapsedMs;
+
+        Result(File outputFile, Options options, long originalBytes, long outputBytes, long elapsedMs) {
+            this.outputFile = outputFile;
+            this.options = options;
+            this.originalBytes = originalBytes;
+            this.outputBytes = outputBytes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        long bytesSaved() {
+            return originalBytes - outputBytes;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "preprocess[%s]: %d -> %d bytes (saved %d) in %d ms",
+                    options, originalBytes, outputBytes, bytesSaved(), elapsedMs);
+        }
+    }
+
+    /**
+     * Decodes, resizes and re-encodes {@code input} into a new file in {@code outputDir}.
+     * Returns the original file when the recompressed image is not smaller.
+     */
+    @NonNull
+    static Result process(@NonNull File input, @NonNull File outputDir, @NonNull Options options)
+            throws IOException {
+        long startNs = System.nanoTime();
+        long originalBytes = input.length();
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(input.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Cannot decode photo bounds");
+        }
+
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, options.longEdgePx);
+        Bitmap bitmap = BitmapFactory.decodeFile(input.getAbsolutePath(), decode);
+        if (bitmap == null) {
+            throw new IOException("Cannot decode photo");
+        }
+
+        File output = null;
+        try {
+            bitmap = transform(bitmap, readRotationDegrees(input), options);
+            output = File.createTempFile("passport_upload_", ".jpg", outputDir);
+            try (OutputStream stream = new FileOutputStream(output)) {
+                if (!bitmap.compress(Bitmap.CompressFormat.JPEG, options.jpegQuality, stream)) {
+                    throw new IOException("JPEG encoding failed");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (output != null) {
+                output.delete();
+            }
+            throw e;
+        } finally {
+            bitmap.recycle();
+        }
+
+        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+        long outputBytes = output.length();
+        if (outputBytes >= originalBytes) {
+            output.delete();
+            return new Result(input, options, originalBytes, originalBytes, elapsedMs);
+        }
+        return new Result(output, options, originalBytes, outputBytes, elapsedMs);
+    }
+
+    /**
+     * Smallest power-of-two sample size whose decode holds at most twice the pixels of the target
+     * size, so a full-resolution camera frame is never decoded only to be scaled down. The decoded
+     * long edge may then end up slightly below the target; the photo is not upscaled.
+     */
+    static int calculateInSampleSize(int width, int height, int targetLongEdge) {
+        long longEdge = Math.max(width, height);
+        long maxSquare = 2L * targetLongEdge * targetLongEdge;
+        int sampleSize = 1;
+        while ((longEdge / sampleSize) * (longEdge / sampleSize) > maxSquare) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Dimensions after scaling so the long edge equals the target; never upscales.
+     */
+    static int[] targetDimensions(int width, int height, int targetLongEdge) {
+        int longEdge = Math.max(width, height);
+        if (longEdge <= targetLongEdge) {
+            return new int[] {width, height};
+        }
+        double scale = (double) targetLongEdge / longEdge;
+        return new int[] {
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))
+        };
+    }
+
+    private static Bitmap transform(Bitmap source, int rotationDegrees, Options options) {
+        int[] size = targetDimensions(source.getWidth(), source.getHeight(), options.longEdgePx);
+        Matrix matrix = new Matrix();
+        matrix.postScale((float) size[0] / source.getWidth(), (float) size[1] / source.getHeight());
+        if (rotationDegrees != 0) {
+            matrix.postRotate(rotationDegrees);
+        }
+        Bitmap result = source;
+        if (!matrix.isIdentity()) {
+            result = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+            if (result != source) {
+                source.recycle();
+            }
+        }
+        if (!options.grayscale) {
+            return result;
+        }
+        Bitmap gray = Bitmap.createBitmap(result.getWidth(), result.getHeight(), Bitmap.Config.ARGB_8888);
+        ColorMatrix colorMatrix = new ColorMatrix();
+        colorMatrix.setSaturation(0f);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+        new Canvas(gray).drawBitmap(result, 0, 0, paint);
+        result.recycle();
+        return gray;
+    }
+
+    private static int readRotationDegrees(File input) {
+        try {
+            ExifInterface exif = new ExifInterface(input.getAbsolutePath());
+            int orientation = exif.getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private PhotoPreprocessor() {}
+}
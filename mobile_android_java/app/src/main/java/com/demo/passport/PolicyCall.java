@@ -0,0 +1,213 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Runs one logical backend request under its {@link EndpointPolicy}.
+ *
+ * Connection failures and 408/502/503/504 responses are retried with jittered backoff, reusing the
+ * same request (and so the same {@code Idempotency-Key}). An attempt that hit its call timeout is not
+ * retried, and neither is a failure after the request body started going out: the server may already
+ * have stored it, for example when only the response was lost to a read timeout. For hedged GETs
+ * a duplicate is sent once the first attempt is slower than the policy's latency percentile; the
+ * first response wins and the other call is canceled. The wrapped {@link Callback} is invoked
+ * exactly once.
+ */
+final class PolicyCall {
+    /** Applies the tagged policy's connect/read/write timeouts; must be an application interceptor. */
+    static final Interceptor TIMEOUT_INTERCEPTOR = chain -> {
+        EndpointPolicy policy = chain.request().tag(EndpointPolicy.class);
+        if (policy == null) {
+            return chain.proceed(chain.request());
+        }
+        return chain
+                .withConnectTimeout((int) policy.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .withReadTimeout((int) policy.ioTimeoutMs, TimeUnit.MILLISECONDS)
+                .withWriteTimeout((int) policy.ioTimeoutMs, TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    };
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "backend-policy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Call.Factory factory;
+    private final Request request;
+    private final EndpointPolicy policy;
+    private final Set<Call> inFlight = new HashSet<>();
+    private Callback callback;
+    private int retries;
+    private boolean hedged;
+    private boolean delivered;
+
+    /**
+     * @param request a request already passed through {@link EndpointPolicy#prepare(Request)}
+     */
+    PolicyCall(@NonNull Call.Factory factory, @NonNull Request request, @NonNull EndpointPolicy policy) {
+        this.factory = factory;
+        this.request = request;
+        this.policy = policy;
+    }
+
+    void enqueue(@NonNull Callback callback) {
+        this.callback = callback;
+        startAttempt();
+        if (policy.hedges(request)) {
+            long delayMs = policy.hedgeDelayMs();
+            if (delayMs >= 0) {
+                scheduler.schedule(this::startHedge, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    static boolean isRetriableStatus(int code) {
+        return code == 408 || code == 502 || code == 503 || code == 504;
+    }
+
+    private void startHedge() {
+        synchronized (this) {
+            // Only duplicate a first attempt that is still running; retries have their own backoff.
+            if (delivered || hedged || retries > 0 || inFlight.isEmpty()) {
+                return;
+            }
+            hedged = true;
+        }
+        startAttempt();
+    }
+
+    private void startAttempt() {
+        AtomicBoolean bodyStarted = new AtomicBoolean();
+        Call call = factory.newCall(trackBody(request, bodyStarted));
+        call.timeout().timeout(policy.callTimeoutMs, TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            if (delivered) {
+                return;
+            }
+            inFlight.add(call);
+        }
+        long startedAtNs = System.nanoTime();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (isFinalFailure(call, e, null, bodyStarted.get())) {
+                    callback.onFailure(call, e);
+                }
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                policy.latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNs));
+                if (!isRetriableStatus(response.code())) {
+                    onAttemptSucceeded(call, response);
+                } else if (isFinalFailure(call, null, response, true)) {
+                    callback.onResponse(call, response);
+                }
+            }
+        });
+    }
+
+    private void onAttemptSucceeded(Call call, Response response) throws IOException {
+        List<Call> losers;
+        synchronized (this) {
+            inFlight.remove(call);
+            if (delivered) {
+                response.close();
+                return;
+            }
+            delivered = true;
+            losers = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        for (Call loser : losers) {
+            loser.cancel();
+        }
+        callback.onResponse(call, response);
+    }
+
+    /**
+     * Retries or drops a failed attempt.
+     *
+     * @param bodyStarted whether any of the request body was written before the attempt failed
+     * @return true if the failure must be delivered to the callback
+     */
+    private synchronized boolean isFinalFailure(Call call, IOException failure, Response response,
+                                                boolean bodyStarted) {
+        inFlight.remove(call);
+        if (delivered || !inFlight.isEmpty()) {
+            // Already answered, or a hedged twin may still succeed.
+            closeQuietly(response);
+            return false;
+        }
+        boolean timedOut = failure != null && call.isCanceled();
+        boolean maybeStored = failure != null && bodyStarted;
+        if (!timedOut && !maybeStored && retries < policy.maxRetries) {
+            long delayMs = policy.backoffDelayMs(retries, ThreadLocalRandom.current());
+            retries++;
+            closeQuietly(response);
+            scheduler.schedule(this::startAttempt, delayMs, TimeUnit.MILLISECONDS);
+            return false;
+        }
+        delivered = true;
+        return true;
+    }
+
+    /**
+     * Wraps the request body so a failed attempt can tell whether any of it was written.
+     */
+    private static Request trackBody(Request request, AtomicBoolean started) {
+        RequestBody body = request.body();
+        if (body == null) {
+            return request;
+        }
+        return request.newBuilder().method(request.method(), new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return body.contentLength();
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return body.isOneShot();
+            }
+
+            @Override
+            public void writeTo(@NonNull BufferedSink sink) throws IOException {
+                started.set(true);
+                body.writeTo(sink);
+            }
+        }).build();
+    }
+
+    private static void closeQuietly(Response response) {
+        if (response != null) {
+            response.close();
+        }
+    }
+}
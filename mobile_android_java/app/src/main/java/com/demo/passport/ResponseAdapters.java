@@ -0,0 +1,234 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handwritten Gson adapters for backend responses, read token by token from the body stream
+ * without a {@link com.google.gson.JsonObject} tree or reflection. They write the nested shape they
+ * read, so a response serialized with the same {@link Gson} parses back to an equal object.
+ */
+final class ResponseAdapters {
+    /**
+     * Accepts {@code {"mrz": {...}}} and the flat shape with the three fields at the top level.
+     * A nested {@code mrz} object wins over top-level fields, as it always has. Check digits come
+     * from {@code *_check_digit} fields or, failing those, from the MRZ {@code lines}.
+     */
+    static final TypeAdapter<Models.RecognizeResponse> RECOGNIZE = new TypeAdapter<Models.RecognizeResponse>() {
+        @Override
+        public void write(JsonWriter out, Models.RecognizeResponse value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (value.mrz != null) {
+                out.name("mrz");
+                writeMrzFields(out, value.mrz);
+            }
+            if (value.error != null) {
+                out.name("error");
+                writeTree(out, value.error);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Models.RecognizeResponse read(JsonReader in) throws IOException {
+            Models.RecognizeResponse response = new Models.RecognizeResponse();
+            Models.MRZKeys flat = new Models.MRZKeys();
+            Models.MRZKeys nested = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("error".equals(name)) {
+                    response.error = JsonParser.parseReader(in);
+                } else if ("mrz".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                    nested = readMrzFields(in);
+                } else if (!readMrzField(in, name, flat)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            Models.MRZKeys keys = nested != null ? nested : flat;
+            response.mrz = isComplete(keys) ? keys : null;
+            return response;
+        }
+    };
+
+    /**
+     * Fields missing from the body stay null; the caller rejects such responses.
+     */
+    static final TypeAdapter<Models.NfcScanResponse> NFC_SCAN = new TypeAdapter<Models.NfcScanResponse>() {
+        @Override
+        public void write(JsonWriter out, Models.NfcScanResponse value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("scan_id").value(value.scan_id);
+            out.name("face_image_url").value(value.face_image_url);
+            if (value.passport != null) {
+                out.name("passport");
+                writeTree(out, value.passport);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Models.NfcScanResponse read(JsonReader in) throws IOException {
+            Models.NfcScanResponse response = new Models.NfcScanResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("scan_id".equals(name)) {
+                    response.scan_id = nextStringOrNull(in);
+                } else if ("face_image_url".equals(name)) {
+                    response.face_image_url = nextStringOrNull(in);
+                } else if ("passport".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                    response.passport = JsonParser.parseReader(in).getAsJsonObject();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    };
+
+    @NonNull
+    static GsonBuilder register(@NonNull GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(Models.RecognizeResponse.class, RECOGNIZE)
+                .registerTypeAdapter(Models.NfcScanResponse.class, NFC_SCAN);
+    }
+
+    /** Plain instance for {@link JsonElement} values; the response adapters never recurse into it. */
+    private static final Gson TREES = new Gson();
+
+    private static void writeMrzFields(JsonWriter out, Models.MRZKeys keys) throws IOException {
+        out.beginObject();
+        out.name("document_number").value(keys.document_number);
+        out.name("date_of_birth").value(keys.date_of_birth);
+        out.name("date_of_expiry").value(keys.date_of_expiry);
+        writeIfPresent(out, "document_number_check_digit", keys.document_number_check_digit);
+        writeIfPresent(out, "date_of_birth_check_digit", keys.date_of_birth_check_digit);
+        writeIfPresent(out, "date_of_expiry_check_digit", keys.date_of_expiry_check_digit);
+        out.endObject();
+    }
+
+    private static void writeIfPresent(JsonWriter out, String name, @Nullable String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeTree(JsonWriter out, JsonElement value) throws IOException {
+        TREES.toJson(value, out);
+    }
+
+    private static Models.MRZKeys readMrzFields(JsonReader in) throws IOException {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!readMrzField(in, in.nextName(), keys)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return keys;
+    }
+
+    private static boolean readMrzField(JsonReader in, String name, Models.MRZKeys keys) throws IOException {
+        switch (name) {
+            case "document_number":
+                keys.document_number = nextStringOrNull(in);
+                return true;
+            case "date_of_birth":
+                keys.date_of_birth = nextStringOrNull(in);
+                return true;
+            case "date_of_expiry":
+                keys.date_of_expiry = nextStringOrNull(in);
+                return true;
+            case "document_number_check_digit":
+                keys.document_number_check_digit = nextStringOrNull(in);
+                return true;
+            case "date_of_birth_check_digit":
+                keys.date_of_birth_check_digit = nextStringOrNull(in);
+                return true;
+            case "date_of_expiry_check_digit":
+                keys.date_of_expiry_check_digit = nextStringOrNull(in);
+                return true;
+            case "lines":
+                fillCheckDigits(keys, MrzLines.keysFromLines(nextStringsOrNull(in)));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check digits taken from MRZ lines; explicit check digit fields take precedence.
+     */
+    private static void fillCheckDigits(Models.MRZKeys keys, @Nullable Models.MRZKeys fromLines) {
+        if (fromLines == null) {
+            return;
+        }
+        if (keys.document_number_check_digit == null) {
+            keys.document_number_check_digit = fromLines.document_number_check_digit;
+        }
+        if (keys.date_of_birth_check_digit == null) {
+            keys.date_of_birth_check_digit = fromLines.date_of_birth_check_digit;
+        }
+        if (keys.date_of_expiry_check_digit == null) {
+            keys.date_of_expiry_check_digit = fromLines.date_of_expiry_check_digit;
+        }
+    }
+
+    @Nullable
+    private static List<String> nextStringsOrNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(nextStringOrNull(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Strings and numbers as text; null, objects and arrays as null.
+     */
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return in.nextString();
+        }
+        in.skipValue();
+        return null;
+    }
+
+    private static boolean isComplete(Models.MRZKeys keys) {
+        return keys.document_number != null && keys.date_of_birth != null && keys.date_of_expiry != null;
+    }
+
+    private ResponseAdapters() {}
+}
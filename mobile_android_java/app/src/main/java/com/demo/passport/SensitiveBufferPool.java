@@ -0,0 +1,52 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Small pool of equal-sized scratch arrays for biometric data in transit.
+ *
+ * Arrays are zeroed when released, so face image bytes do not linger in idle buffers. At most
+ * {@code capacity} arrays are kept; extra releases are zeroed and dropped.
+ */
+final class SensitiveBufferPool {
+    private final int bufferBytes;
+    private final int capacity;
+    /** Guarded by {@code this}. */
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private long allocations;
+
+    SensitiveBufferPool(int bufferBytes, int capacity) {
+        this.bufferBytes = bufferBytes;
+        this.capacity = capacity;
+    }
+
+    @NonNull
+    synchronized byte[] acquire() {
+        byte[] buffer = free.pollFirst();
+        if (buffer == null) {
+            allocations++;
+            buffer = new byte[bufferBytes];
+        }
+        return buffer;
+    }
+
+    void release(@NonNull byte[] buffer) {
+        if (buffer.length != bufferBytes) {
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " bytes does not belong to this pool");
+        }
+        Arrays.fill(buffer, (byte) 0);
+        synchronized (this) {
+            if (free.size() < capacity) {
+                free.addFirst(buffer);
+            }
+        }
+    }
+
+    /** Arrays created since the pool was made; stays flat once the pool is warm. */
+    synchronized long allocations() {
+        return allocations;
+    }
+}
@@ -0,0 +1,106 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Per-call OkHttp listener that feeds upload throughput and RTT into {@link UploadQualityController}
+ * and connection reuse into {@link ConnectionWarmer}.
+ *
+ * RTT is taken from the TCP handshake (connect start until TLS start or connect end),
+ * throughput from the time spent writing request headers and body. A call that acquired
+ * a connection without connecting reused a pooled one.
+ */
+final class UploadMetricsListener extends EventListener {
+    private final UploadQualityController controller;
+    private final ConnectionWarmer warmer;
+    private long connectStartNs = -1;
+    private long requestStartNs = -1;
+    private boolean connected;
+    private boolean connectionAcquired;
+
+    UploadMetricsListener(@NonNull UploadQualityController controller, @NonNull ConnectionWarmer warmer) {
+        this.controller = controller;
+        this.warmer = warmer;
+    }
+
+    static EventListener.Factory factory(
+            @NonNull UploadQualityController controller,
+            @NonNull ConnectionWarmer warmer
+    ) {
+        return call -> new UploadMetricsListener(controller, warmer);
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress address, @NonNull Proxy proxy) {
+        connectStartNs = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        connectionAcquired = true;
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        recordReuse(call);
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        recordReuse(call);
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        recordHandshake();
+    }
+
+    @Override
+    public void connectEnd(
+            @NonNull Call call,
+            @NonNull InetSocketAddress address,
+            @NonNull Proxy proxy,
+            @Nullable Protocol protocol
+    ) {
+        recordHandshake();
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        requestStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(@NonNull Call call, long byteCount) {
+        if (requestStartNs < 0) {
+            return;
+        }
+        long durationMs = (System.nanoTime() - requestStartNs) / 1_000_000L;
+        controller.recordUpload(byteCount, durationMs);
+    }
+
+    private void recordReuse(Call call) {
+        if (connectionAcquired) {
+            warmer.recordCall(call.request(), !connected);
+        }
+    }
+
+    private void recordHandshake() {
+        if (connectStartNs < 0) {
+            return;
+        }
+        controller.recordRtt((System.nanoTime() - connectStartNs) / 1_000_000L);
+        connectStartNs = -1;
+    }
+}
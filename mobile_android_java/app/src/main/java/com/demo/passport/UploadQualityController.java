@@ -0,0 +1,96 @@
+package com.demo.passport;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Picks photo preprocessing options from observed network conditions.
+ *
+ * Upload throughput and RTT are fed by {@link UploadMetricsListener} from previous OkHttp calls
+ * and smoothed with an exponentially weighted moving average. The controller then chooses the
+ * largest tier whose estimated upload time (RTT + size / throughput) fits {@link #UPLOAD_BUDGET_MS}.
+ */
+final class UploadQualityController {
+    static final long UPLOAD_BUDGET_MS = 1500;
+    /** Bodies smaller than this finish in the socket buffer and give no useful throughput sample. */
+    static final long MIN_SAMPLE_BYTES = 64 * 1024;
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Tiers ordered from best quality to smallest upload.
+     * Estimated sizes are typical for a passport page at the given long edge and quality.
+     */
+    static final Tier[] TIERS = new Tier[] {
+            new Tier(new PhotoPreprocessor.Options(2048, 90, false), 900 * 1024),
+            new Tier(new PhotoPreprocessor.Options(1600, 85, false), 450 * 1024),
+            new Tier(new PhotoPreprocessor.Options(1280, 80, false), 250 * 1024),
+            new Tier(new PhotoPreprocessor.Options(1024, 75, true), 120 * 1024),
+    };
+    /** Used until the first measurement arrives. */
+    static final int DEFAULT_TIER = 1;
+
+    static final class Tier {
+        final PhotoPreprocessor.Options options;
+        final long estimatedBytes;
+
+        Tier(PhotoPreprocessor.Options options, long estimatedBytes) {
+            this.options = options;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    private double throughputBytesPerSec = -1;
+    private double rttMs = -1;
+
+    /**
+     * Records a finished request body upload.
+     */
+    synchronized void recordUpload(long bytes, long durationMs) {
+        if (bytes < MIN_SAMPLE_BYTES || durationMs <= 0) {
+            return;
+        }
+        double sample = bytes * 1000.0 / durationMs;
+        throughputBytesPerSec = throughputBytesPerSec < 0
+                ? sample
+                : throughputBytesPerSec + SMOOTHING * (sample - throughputBytesPerSec);
+    }
+
+    /**
+     * Records a connection setup time, which approximates one network round trip.
+     */
+    synchronized void recordRtt(long durationMs) {
+        if (durationMs < 0) {
+            return;
+        }
+        rttMs = rttMs < 0 ? durationMs : rttMs + SMOOTHING * (durationMs - rttMs);
+    }
+
+    /** Smoothed upload throughput, or -1 before the first sample. */
+    synchronized long getThroughputBytesPerSec() {
+        return (long) throughputBytesPerSec;
+    }
+
+    /** Smoothed RTT, or -1 before the first sample. */
+    synchronized long getRttMs() {
+        return (long) rttMs;
+    }
+
+    @NonNull
+    synchronized PhotoPreprocessor.Options currentOptions() {
+        if (throughputBytesPerSec <= 0) {
+            return TIERS[DEFAULT_TIER].options;
+        }
+        double rtt = Math.max(rttMs, 0);
+        for (Tier tier : TIERS) {
+            double estimatedMs = rtt + tier.estimatedBytes * 1000.0 / throughputBytesPerSec;
+            if (estimatedMs <= UPLOAD_BUDGET_MS) {
+                return tier.options;
+            }
+        }
+        return TIERS[TIERS.length - 1].options;
+    }
+
+    synchronized void reset() {
+        throughputBytesPerSec = -1;
+        rttMs = -1;
+    }
+}
@@ -1,23 +1,53 @@
 package com.demo.passport;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class BackendApiTest {
+    private static final String MRZ_JSON =
+            "{\"mrz\":{\"document_number\":\"123\",\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\"}}";
+    private static final String NFC_SCAN_JSON =
+            "{\"scan_id\":\"scan-1\",\"face_image_url\":\"/api/nfc/scan-1/face.jpg\",\"passport\":{\"doc\":\"x\"}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private MockWebServer server;
 
     @Before
@@ -30,8 +60,15 @@ public class BackendApiTest {
     @After
     public void tearDown() throws Exception {
         BackendConfig.setBaseUrlForTesting(BackendConfig.DEFAULT_BASE_URL);
-        BackendApi.resetErrorReportDebounceForTesting();
+        BackendApi.resetErrorReporterForTesting();
         BackendApi.setDebugListener(null);
+        BackendConfig.setDebugCaptureMaxChars(BackendConfig.DEFAULT_DEBUG_CAPTURE_MAX_CHARS);
+        BackendConfig.setDebugCaptureSampleRate(1.0);
+        BackendApi.resetNfcUploadModeForTesting();
+        BackendConfig.setRequestCompressionEnabled(false);
+        BackendApi.resetRequestCompressionForTesting();
+        BackendConfig.setProtocolMode(BackendConfig.ProtocolMode.HTTP_2);
+        BackendApi.resetProtocolFallbackForTesting();
         server.shutdown();
     }
 
@@ -198,7 +235,7 @@ public class BackendApiTest {
 
         BackendApi.setDebugListener((source, raw) -> {
             if ("recognize".equals(source)) {
-                debug.set(raw);
+                debug.set(raw.get());
                 debugLatch.countDown();
             }
         });
@@ -254,6 +291,60 @@ public class BackendApiTest {
         assertEquals(null, error.get());
     }
 
+    @Test
+    public void recognizePassport_streamsFileAsMultipartPart() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(MRZ_JSON));
+        File photo = writePhoto("photo.jpg", PhotoCaptureUtils.MIN_IMAGE_BYTES + 1);
+
+        AtomicReference<Models.MRZKeys> result = new AtomicReference<>();
+        assertEquals(null, recognizeFile(photo, result));
+        assertNotNull(result.get());
+        assertEquals("123", result.get().document_number);
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("/recognize", request.getPath());
+        assertTrue(request.getHeader("Content-Type").contains("multipart/form-data"));
+        assertTrue(request.getBodySize() > photo.length());
+        String body = request.getBody().readUtf8();
+        assertTrue(body.contains("filename=\"passport.jpg\""));
+        assertTrue(body.contains("Content-Type: image/jpeg"));
+    }
+
+    @Test
+    public void recognizePassport_fileUploadAllocationsDoNotGrowWithPhotoSize() throws Exception {
+        // Keep the server from buffering the upload so only client-side allocations are measured.
+        server.setBodyLimit(0);
+        int smallSize = 2 * 1024 * 1024;
+        int largeSize = 16 * 1024 * 1024;
+        File small = writePhoto("small.jpg", smallSize);
+        File large = writePhoto("large.jpg", largeSize);
+
+        // Warm up class loading and the connection pool.
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(MRZ_JSON));
+        assertEquals(null, recognizeFile(small, new AtomicReference<>()));
+
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(MRZ_JSON));
+        long before = totalAllocatedBytes();
+        assertEquals(null, recognizeFile(small, new AtomicReference<>()));
+        long smallAllocated = totalAllocatedBytes() - before;
+
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(MRZ_JSON));
+        before = totalAllocatedBytes();
+        assertEquals(null, recognizeFile(large, new AtomicReference<>()));
+        long largeAllocated = totalAllocatedBytes() - before;
+
+        // A buffered upload would allocate at least the 14 MB size difference.
+        long growth = largeAllocated - smallAllocated;
+        assertTrue("Allocation grew by " + growth + " bytes", growth < (largeSize - smallSize) / 4);
+
+        server.takeRequest(5, TimeUnit.SECONDS);
+        server.takeRequest(5, TimeUnit.SECONDS);
+        RecordedRequest largeRequest = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(largeRequest);
+        assertTrue(largeRequest.getBodySize() > largeSize);
+    }
+
     @Test
     public void sendNfcRaw_postsJsonPayload() throws Exception {
         server.enqueue(new MockResponse().setResponseCode(200));
@@ -332,7 +423,7 @@ public class BackendApiTest {
 
         BackendApi.setDebugListener((source, raw) -> {
             if ("nfc".equals(source)) {
-                debug.set(raw);
+                debug.set(raw.get());
                 debugLatch.countDown();
             }
         });
@@ -419,9 +510,266 @@ public class BackendApiTest {
         assertTrue(error.get().contains("missing response fields"));
     }
 
+    @Test
+    public void sendNfcRawAndParse_streamsSameJsonAsTreePayload() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        Models.NfcRawResult raw = nfcRawResult();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        Models.NfcScanResponse response = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(raw, cb), error);
+
+        assertNotNull(response);
+        assertEquals(null, error.get());
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("application/json; charset=utf-8", request.getHeader("Content-Type"));
+        assertEquals(new Gson().toJson(NfcPayloadBuilder.buildRaw(raw)), request.getBody().readUtf8());
+    }
+
+    @Test
+    public void sendNfcRawAndParse_retriesUnavailableWithSameIdempotencyKey() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("restarting"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        Models.NfcRawResult raw = nfcRawResult();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        Models.NfcScanResponse response = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(raw, cb), error);
+
+        assertNotNull(response);
+        assertEquals(null, error.get());
+        assertEquals(2, server.getRequestCount());
+        RecordedRequest first = server.takeRequest(5, TimeUnit.SECONDS);
+        RecordedRequest second = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(first.getHeader(EndpointPolicy.IDEMPOTENCY_KEY_HEADER));
+        assertEquals(
+                first.getHeader(EndpointPolicy.IDEMPOTENCY_KEY_HEADER),
+                second.getHeader(EndpointPolicy.IDEMPOTENCY_KEY_HEADER)
+        );
+        assertEquals(first.getBody().readUtf8(), second.getBody().readUtf8());
+    }
+
+    @Test
+    public void sendNfcRawAndParse_streamedPayloadAllocatesLessThanJsonTree() throws Exception {
+        server.setBodyLimit(0);
+        Models.NfcRawResult raw = nfcRawResult();
+        raw.dg2Raw = Arrays.copyOf(raw.dg2Raw, 60 * 1024);
+        int uploads = 5;
+        AtomicReference<String> error = new AtomicReference<>();
+
+        // Warm up class loading and the connection pool for both paths.
+        for (int i = 0; i < 2; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+            awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(NfcPayloadBuilder.buildRaw(raw), cb), error);
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+            awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(raw, cb), error);
+        }
+
+        long before = totalAllocatedBytes();
+        for (int i = 0; i < uploads; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+            assertNotNull(awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(NfcPayloadBuilder.buildRaw(raw), cb), error));
+        }
+        long treeAllocated = (totalAllocatedBytes() - before) / uploads;
+
+        before = totalAllocatedBytes();
+        for (int i = 0; i < uploads; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+            assertNotNull(awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(raw, cb), error));
+        }
+        long streamedAllocated = (totalAllocatedBytes() - before) / uploads;
+
+        assertEquals(null, error.get());
+        // The tree path holds several copies of the ~80 KB base64 string; the streamed path none.
+        assertTrue("streamed " + streamedAllocated + " vs tree " + treeAllocated + " bytes per upload",
+                treeAllocated - streamedAllocated > 3 * raw.dg2Raw.length);
+    }
+
+    @Test
+    public void sendNfcRawMultipartAndParse_sendsDataGroupsAsBinaryParts() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        Models.NfcRawResult raw = nfcRawResult();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        Models.NfcScanResponse response = sendNfcMultipart(raw, error);
+
+        assertNotNull(response);
+        assertEquals("scan-1", response.scan_id);
+        assertEquals(null, error.get());
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("/nfc", request.getPath());
+        assertTrue(request.getHeader("Content-Type").startsWith("multipart/form-data"));
+        byte[] body = request.getBody().readByteArray();
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("name=\"dg1\"; filename=\"dg1.bin\""));
+        assertTrue(text.contains("name=\"dg2\"; filename=\"dg2.bin\""));
+        assertTrue(text.contains("Content-Type: application/octet-stream"));
+        assertTrue(text.contains("\"document_number\":\"AB123456\""));
+        assertTrue(text.contains(new String(raw.dg2Raw, StandardCharsets.ISO_8859_1)));
+        assertFalse(text.contains("dg2_raw_b64"));
+        assertTrue("DG2 must not be base64-inflated", body.length < raw.dg2Raw.length * 4 / 3);
+    }
+
+    @Test
+    public void sendNfcRawMultipartAndParse_fallsBackToJsonOn415() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(415).setBody("unsupported"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        Models.NfcRawResult raw = nfcRawResult();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        Models.NfcScanResponse response = sendNfcMultipart(raw, error);
+
+        assertNotNull(response);
+        assertEquals("scan-1", response.scan_id);
+        assertEquals(null, error.get());
+        RecordedRequest rejected = server.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(rejected.getHeader("Content-Type").startsWith("multipart/form-data"));
+        RecordedRequest retried = server.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(retried.getHeader("Content-Type").startsWith("application/json"));
+        JsonObject payload = JsonParser.parseString(retried.getBody().readUtf8()).getAsJsonObject();
+        assertEquals(Base64.getEncoder().encodeToString(raw.dg2Raw), payload.get("dg2_raw_b64").getAsString());
+        assertEquals("raw", payload.get("format").getAsString());
+
+        // The rejection is remembered: the next scan goes straight to JSON.
+        assertNotNull(sendNfcMultipart(raw, error));
+        RecordedRequest next = server.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(next.getHeader("Content-Type").startsWith("application/json"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void h2PriorKnowledge_multiplexesAllEndpointsOverOneConnection() throws Exception {
+        MockWebServer h2Server = new MockWebServer();
+        h2Server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        h2Server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.equals("/recognize")) {
+                    return new MockResponse().setBody(MRZ_JSON);
+                }
+                if (path.equals("/nfc")) {
+                    return new MockResponse().setBody(NFC_SCAN_JSON);
+                }
+                return new MockResponse();
+            }
+        });
+        h2Server.start();
+        try {
+            BackendConfig.setBaseUrlForTesting(h2Server.url("").toString().replaceAll("/$", ""));
+            BackendConfig.setProtocolMode(BackendConfig.ProtocolMode.H2_PRIOR_KNOWLEDGE);
+            CountDownLatch latch = new CountDownLatch(4);
+            AtomicReference<String> error = new AtomicReference<>();
+
+            BackendApi.recognizePassport(new byte[] {0x01}, countingCallback(latch, error));
+            BackendApi.sendNfcRawAndParse(nfcRawResult(), countingCallback(latch, error));
+            BackendApi.sendNfcRaw(JsonParser.parseString("{\"foo\":\"bar\"}").getAsJsonObject(),
+                    countingCallback(latch, error));
+            BackendApi.reportError("boom", null, null, countingCallback(latch, error));
+
+            assertTrue("Callback timeout", latch.await(5, TimeUnit.SECONDS));
+            assertEquals(null, error.get());
+            Set<Integer> sequenceNumbers = new HashSet<>();
+            for (int i = 0; i < 4; i++) {
+                RecordedRequest request = h2Server.takeRequest(5, TimeUnit.SECONDS);
+                assertNotNull(request);
+                sequenceNumbers.add(request.getSequenceNumber());
+            }
+            // Sequence numbers count requests per connection: 0..3 means all four shared one.
+            assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), sequenceNumbers);
+        } finally {
+            h2Server.shutdown();
+        }
+    }
+
+    @Test
+    public void h2PriorKnowledge_fallsBackToHttp1WhenServerDoesNotSpeakH2c() throws Exception {
+        // MockWebServer consumes one queued response for the HTTP/2 preface it fails to parse.
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("JPEGDATA"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON));
+        BackendConfig.setProtocolMode(BackendConfig.ProtocolMode.H2_PRIOR_KNOWLEDGE);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        CountDownLatch faceLatch = new CountDownLatch(1);
+        AtomicReference<byte[]> face = new AtomicReference<>();
+        BackendApi.fetchFaceImage(server.url("/api/nfc/scan-1/face.jpg").toString(),
+                new BackendApi.Callback<byte[]>() {
+                    @Override
+                    public void onSuccess(byte[] value) {
+                        face.set(value);
+                        faceLatch.countDown();
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        error.set(message);
+                        faceLatch.countDown();
+                    }
+                });
+        assertTrue("Callback timeout", faceLatch.await(5, TimeUnit.SECONDS));
+        Models.NfcScanResponse first = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(nfcRawResult(), cb), error);
+        Models.NfcScanResponse second = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(nfcRawResult(), cb), error);
+
+        assertEquals(null, error.get());
+        assertEquals("JPEGDATA", new String(face.get()));
+        assertEquals("scan-1", first.scan_id);
+        assertEquals("scan-1", second.scan_id);
+        // The bodyless GET is replayed over HTTP/1.1 after the rejected preface; the scans then go
+        // straight to HTTP/1.1.
+        assertEquals(4, server.getRequestCount());
+        assertEquals(2, countRequests("/nfc", 4));
+    }
+
+    @Test
+    public void h2PriorKnowledge_neverReplaysPostBodyOverHttp1() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // A queued body would be written after the HEAD response too and break the connection.
+                return "HEAD".equals(request.getMethod())
+                        ? new MockResponse().setResponseCode(200)
+                        : new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON);
+            }
+        });
+        BackendConfig.setProtocolMode(BackendConfig.ProtocolMode.H2_PRIOR_KNOWLEDGE);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        // Fails, unless the preface was rejected before the body went out: then PolicyCall retries
+        // the scan, which now goes over HTTP/1.1.
+        Models.NfcScanResponse first = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(nfcRawResult(), cb), error);
+        error.set(null);
+        Models.NfcScanResponse second = awaitNfcScan(cb -> BackendApi.sendNfcRawAndParse(nfcRawResult(), cb), error);
+
+        // The interceptor never replays the scan: a bodyless HEAD finds HTTP/1.1 working, and every
+        // /nfc body that reached the server belongs to a scan that got its answer.
+        assertEquals(null, error.get());
+        assertEquals("scan-1", second.scan_id);
+        List<String> requests = new ArrayList<>();
+        RecordedRequest request;
+        while ((request = server.takeRequest(200, TimeUnit.MILLISECONDS)) != null) {
+            requests.add(request.getMethod() + " " + request.getPath());
+        }
+        assertTrue(requests.toString(), requests.contains("HEAD /"));
+        assertEquals(requests.toString(), first != null ? 2 : 1, Collections.frequency(requests, "POST /nfc"));
+    }
+
+    private int countRequests(String path, int total) throws InterruptedException {
+        int matching = 0;
+        for (int i = 0; i < total; i++) {
+            RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+            if (request != null && path.equals(request.getPath())) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
     @Test
     public void fetchFaceImage_returnsBytes() throws Exception {
         server.enqueue(new MockResponse().setResponseCode(200).setBody("JPEGDATA"));
+        int encodingsBefore = DebugCapture.getBinaryEncodingsForTesting();
 
         CountDownLatch latch = new CountDownLatch(1);
         AtomicReference<byte[]> result = new AtomicReference<>();
@@ -446,6 +794,73 @@ public class BackendApiTest {
         assertNotNull(result.get());
         assertEquals("JPEGDATA", new String(result.get()));
         assertEquals(null, error.get());
+        assertEquals("No debug listener: face bytes must not be encoded",
+                encodingsBefore, DebugCapture.getBinaryEncodingsForTesting());
+    }
+
+    @Test
+    public void fetchFaceImage_sendsIfNoneMatchAndReportsNotModified() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<FaceCache.Download> result = new AtomicReference<>();
+        BackendApi.fetchFaceImage(server.url("/api/nfc/scan-1/face.jpg").toString(), "\"v1\"",
+                new BackendApi.Callback<FaceCache.Download>() {
+                    @Override
+                    public void onSuccess(FaceCache.Download value) {
+                        result.set(value);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue("Callback timeout", latch.await(5, TimeUnit.SECONDS));
+        assertTrue(result.get().notModified);
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void fetchFaceImage_encodesDebugCopyOnlyWhenReadAndCapsIt() throws Exception {
+        byte[] face = new byte[4096];
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(new Buffer().write(face)));
+        BackendConfig.setDebugCaptureMaxChars(256);
+        AtomicReference<Supplier<String>> captured = new AtomicReference<>();
+        CountDownLatch debugLatch = new CountDownLatch(1);
+        BackendApi.setDebugListener((source, raw) -> {
+            if ("face".equals(source)) {
+                captured.set(raw);
+                debugLatch.countDown();
+            }
+        });
+        int encodingsBefore = DebugCapture.getBinaryEncodingsForTesting();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        BackendApi.fetchFaceImage(server.url("/api/nfc/scan-1/face.jpg").toString(),
+                new BackendApi.Callback<byte[]>() {
+                    @Override
+                    public void onSuccess(byte[] value) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue("Callback timeout", latch.await(5, TimeUnit.SECONDS));
+        assertTrue("Debug timeout", debugLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(encodingsBefore, DebugCapture.getBinaryEncodingsForTesting());
+        String debug = captured.get().get();
+        assertEquals(encodingsBefore + 1, DebugCapture.getBinaryEncodingsForTesting());
+        assertTrue(debug.length() <= 256);
+        assertTrue(debug.endsWith("(4096 bytes)"));
+        captured.get().get();
+        assertEquals(encodingsBefore + 1, DebugCapture.getBinaryEncodingsForTesting());
     }
 
     @Test
@@ -489,7 +904,46 @@ public class BackendApiTest {
     }
 
     @Test
-    public void reportError_debounceSkipsSecondRequest() throws Exception {
+    public void reportError_gzipsLargeStackTraceWhenCompressionEnabled() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        BackendConfig.setRequestCompressionEnabled(true);
+        AtomicReference<long[]> sizes = new AtomicReference<>();
+        BackendApi.setCompressionListener((path, original, compressed) -> sizes.set(new long[] {original, compressed}));
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            trace.append("at com.demo.passport.MainActivity.onResume(MainActivity.java:").append(i).append(")\n");
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        BackendApi.reportError("boom", trace.toString(), null, new BackendApi.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String message) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue("Callback timeout", latch.await(5, TimeUnit.SECONDS));
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        Buffer unzipped = new Buffer();
+        try (GzipSource source = new GzipSource(request.getBody())) {
+            while (source.read(unzipped, 8192) != -1) {
+                // drain
+            }
+        }
+        JsonObject payload = JsonParser.parseString(unzipped.readUtf8()).getAsJsonObject();
+        assertEquals(trace.toString(), payload.get("stacktrace").getAsString());
+        assertNotNull(sizes.get());
+        assertTrue(sizes.get()[1] < sizes.get()[0]);
+    }
+
+    @Test
+    public void reportError_holdsSecondErrorUntilFlushInterval() throws Exception {
         server.enqueue(new MockResponse().setResponseCode(200));
 
         BackendApi.setErrorReportIntervalMsForTesting(10000);
@@ -502,4 +956,115 @@ public class BackendApiTest {
         RecordedRequest second = server.takeRequest(500, TimeUnit.MILLISECONDS);
         assertEquals(null, second);
     }
+
+    private String recognizeFile(File photo, AtomicReference<Models.MRZKeys> result) throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        BackendApi.recognizePassport(photo, new BackendApi.Callback<Models.MRZKeys>() {
+            @Override
+            public void onSuccess(Models.MRZKeys value) {
+                result.set(value);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String message) {
+                error.set(message);
+                latch.countDown();
+            }
+        });
+
+        assertTrue("Callback timeout", latch.await(10, TimeUnit.SECONDS));
+        return error.get();
+    }
+
+    private static Models.NfcRawResult nfcRawResult() {
+        Models.NfcRawResult raw = new Models.NfcRawResult();
+        raw.dg1Raw = new byte[NfcPayloadBuilder.MIN_DG1_BYTES];
+        raw.dg2Raw = new byte[4 * NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES];
+        for (int i = 0; i < raw.dg2Raw.length; i++) {
+            raw.dg2Raw[i] = (byte) (i * 31);
+        }
+        raw.mrzKeys = new Models.MRZKeys();
+        raw.mrzKeys.document_number = "AB123456";
+        raw.mrzKeys.date_of_birth = "900101";
+        raw.mrzKeys.date_of_expiry = "300101";
+        return raw;
+    }
+
+    private static <T> BackendApi.Callback<T> countingCallback(
+            CountDownLatch latch,
+            AtomicReference<String> error
+    ) {
+        return new BackendApi.Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String message) {
+                error.set(message);
+                latch.countDown();
+            }
+        };
+    }
+
+    private static Models.NfcScanResponse sendNfcMultipart(
+            Models.NfcRawResult raw,
+            AtomicReference<String> error
+    ) throws InterruptedException {
+        return awaitNfcScan(cb -> BackendApi.sendNfcRawMultipartAndParse(raw, cb), error);
+    }
+
+    private static Models.NfcScanResponse awaitNfcScan(
+            Consumer<BackendApi.Callback<Models.NfcScanResponse>> upload,
+            AtomicReference<String> error
+    ) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Models.NfcScanResponse> response = new AtomicReference<>();
+        upload.accept(new BackendApi.Callback<Models.NfcScanResponse>() {
+            @Override
+            public void onSuccess(Models.NfcScanResponse value) {
+                response.set(value);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String message) {
+                error.set(message);
+                latch.countDown();
+            }
+        });
+        assertTrue("Callback timeout", latch.await(5, TimeUnit.SECONDS));
+        return response.get();
+    }
+
+    private File writePhoto(String name, int size) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        byte[] buffer = new byte[64 * 1024];
+        int remaining = size;
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, buffer.length);
+                stream.write(buffer, 0, chunk);
+                remaining -= chunk;
+            }
+        }
+        return file;
+    }
+
+    private static long totalAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long id : threads.getAllThreadIds()) {
+            long allocated = threads.getThreadAllocatedBytes(id);
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
 }
@@ -0,0 +1,115 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionWarmerTest {
+    private MockWebServer server;
+    private ConnectionWarmer warmer;
+    private OkHttpClient client;
+    private String baseUrl;
+    private final List<String> reuse = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        baseUrl = server.url("").toString().replaceAll("/$", "");
+        warmer = new ConnectionWarmer(ConnectionWarmer.DEFAULT_MIN_INTERVAL_MS);
+        warmer.setListener((path, reused) -> reuse.add(path + "=" + reused));
+        client = new OkHttpClient.Builder()
+                .eventListenerFactory(UploadMetricsListener.factory(new UploadQualityController(), warmer))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Test
+    public void warm_sendsHeadAndRealRequestReusesConnection() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(405));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        assertTrue(warmer.warm(client, baseUrl));
+        awaitIdleConnection();
+        post("/recognize");
+
+        RecordedRequest warmup = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("HEAD", warmup.getMethod());
+        assertEquals("/", warmup.getPath());
+        RecordedRequest real = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(1, real.getSequenceNumber());
+        assertEquals(1, warmer.getReusedCalls());
+        assertEquals(0, warmer.getNewConnectionCalls());
+        assertEquals(Collections.singletonList("/recognize=true"), reuse);
+    }
+
+    @Test
+    public void recordCall_reportsColdConnectionWithoutWarmup() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        post("/nfc");
+
+        assertEquals(0, warmer.getReusedCalls());
+        assertEquals(1, warmer.getNewConnectionCalls());
+        assertEquals(Collections.singletonList("/nfc=false"), reuse);
+    }
+
+    @Test
+    public void warm_isThrottledWithinInterval() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        assertTrue(warmer.warm(client, baseUrl));
+        assertFalse(warmer.warm(client, baseUrl));
+        awaitIdleConnection();
+        assertFalse(warmer.warm(client, baseUrl));
+
+        assertEquals(1, server.getRequestCount());
+        assertTrue("warm-up is not a real call", reuse.isEmpty());
+    }
+
+    @Test
+    public void warm_ignoresInvalidBaseUrl() {
+        assertFalse(warmer.warm(client, "not a url"));
+        assertTrue(new ConnectionWarmer(0).warm(client, baseUrl));
+    }
+
+    private void post(String path) throws Exception {
+        Request request = new Request.Builder()
+                .url(baseUrl + path)
+                .post(RequestBody.create("{}", MediaType.parse("application/json")))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+
+    private void awaitIdleConnection() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.connectionPool().idleConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, client.connectionPool().idleConnectionCount());
+    }
+}
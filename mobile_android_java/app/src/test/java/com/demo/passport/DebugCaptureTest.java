@@ -0,0 +1,89 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DebugCaptureTest {
+    @Test
+    public void get_buildsOnceAndCapsLength() {
+        AtomicInteger builds = new AtomicInteger();
+        DebugCapture capture = new DebugCapture(() -> {
+            builds.incrementAndGet();
+            return repeat('x', 500);
+        }, 100);
+
+        assertEquals(0, builds.get());
+        assertEquals(100, capture.get().length());
+        capture.get();
+        capture.preview();
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void preview_cutsLongResponsesAndReportsFullLength() {
+        DebugCapture small = new DebugCapture(() -> "{\"ok\":true}", 10_000);
+        assertEquals("{\"ok\":true}", small.preview());
+        assertFalse(small.isTruncatedPreview());
+
+        DebugCapture large = new DebugCapture(() -> repeat('y', 5000), 10_000);
+        String preview = large.preview();
+        assertTrue(preview.startsWith(repeat('y', DebugCapture.PREVIEW_CHARS) + "…"));
+        assertTrue(preview.contains("5000"));
+        assertTrue(large.isTruncatedPreview());
+        assertEquals(5000, large.get().length());
+    }
+
+    @Test
+    public void preview_ofLongTextKeepsFullCopyForGet() {
+        AtomicInteger builds = new AtomicInteger();
+        DebugCapture capture = new DebugCapture(() -> {
+            builds.incrementAndGet();
+            return repeat('z', 5000);
+        }, 3000);
+
+        String preview = capture.preview();
+
+        assertTrue(preview.startsWith(repeat('z', DebugCapture.PREVIEW_CHARS) + "…"));
+        assertTrue(preview.contains("3000"));
+        assertTrue(capture.isTruncatedPreview());
+        assertEquals(1, builds.get());
+        assertEquals(3000, capture.get().length());
+    }
+
+    @Test
+    public void ofBinary_encodesOnlyThePreviewUntilTheFullCopyIsRead() {
+        byte[] face = new byte[100_000];
+        Arrays.fill(face, (byte) 0x41);
+        int encodingsBefore = DebugCapture.getBinaryEncodingsForTesting();
+        DebugCapture capture = DebugCapture.ofBinary(face, 10_000);
+        // The capture copied what it may show: later changes to the body do not reach it.
+        Arrays.fill(face, (byte) 0);
+
+        String preview = capture.preview();
+        assertEquals(encodingsBefore + 1, DebugCapture.getBinaryEncodingsForTesting());
+        assertTrue(preview.length() <= DebugCapture.PREVIEW_CHARS);
+        assertTrue(preview.startsWith("QUFB"));
+        assertTrue(preview.endsWith("(100000 bytes)"));
+        assertTrue(capture.isTruncatedPreview());
+
+        String full = capture.get();
+        assertEquals(encodingsBefore + 2, DebugCapture.getBinaryEncodingsForTesting());
+        assertTrue(full.length() > DebugCapture.PREVIEW_CHARS);
+        assertTrue(full.length() <= 10_000);
+        assertTrue(full.endsWith("(100000 bytes)"));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class Dg2FaceLocatorTest {
+
+    @Test
+    public void locate_findsJpegBetweenSoiAndEoi() {
+        byte[] dg2 = {0x75, 0x10, 0x7F, 0x61, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x01,
+                (byte) 0xFF, (byte) 0xD9, 0x00, 0x00};
+
+        Dg2FaceLocator.Range face = Dg2FaceLocator.locate(dg2);
+
+        assertNotNull(face);
+        assertEquals(Dg2FaceLocator.Format.JPEG, face.format);
+        assertEquals(4, face.offset);
+        assertEquals(7, face.length);
+    }
+
+    @Test
+    public void locate_runsJpegToEndWithoutEoi() {
+        byte[] dg2 = {0x75, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x01, 0x02};
+
+        Dg2FaceLocator.Range face = Dg2FaceLocator.locate(dg2);
+
+        assertNotNull(face);
+        assertEquals(1, face.offset);
+        assertEquals(5, face.length);
+    }
+
+    @Test
+    public void locate_detectsJpeg2000SignatureAndCodestream() {
+        byte[] jp2 = {0x75, 0x01, 0x00, 0x00, 0x00, 0x0C, 0x6A, 0x50, 0x20, 0x20};
+        byte[] j2k = {0x75, 0x01, 0x02, (byte) 0xFF, 0x4F, (byte) 0xFF, 0x51, 0x00};
+
+        Dg2FaceLocator.Range boxed = Dg2FaceLocator.locate(jp2);
+        Dg2FaceLocator.Range bare = Dg2FaceLocator.locate(j2k);
+
+        assertEquals(Dg2FaceLocator.Format.JPEG2000, boxed.format);
+        assertEquals(2, boxed.offset);
+        assertEquals(8, boxed.length);
+        assertEquals(Dg2FaceLocator.Format.JPEG2000, bare.format);
+        assertEquals(3, bare.offset);
+    }
+
+    @Test
+    public void locate_returnsNullWithoutImage() {
+        assertNull(Dg2FaceLocator.locate(null));
+        assertNull(Dg2FaceLocator.locate(new byte[0]));
+        assertNull(Dg2FaceLocator.locate(new byte[] {0x75, 0x10, 0x01}));
+    }
+}
@@ -0,0 +1,66 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+public class ErrorPayloadsTest {
+    private static final String TRACE_A =
+            "java.net.SocketTimeoutException: failed to connect to /192.168.1.125 (port 30450) after 10000ms\n"
+                    + "\tat okhttp3.internal.connection.RealConnection.connectSocket(RealConnection.kt:287)\n"
+                    + "\tat com.demo.passport.BackendApi$1.onFailure(BackendApi.java:140)\n"
+                    + "Caused by: java.io.IOException: timeout 1\n"
+                    + "\tat okio.AsyncTimeout.exit(AsyncTimeout.kt:1)\n";
+
+    @Test
+    public void fingerprint_ignoresExceptionMessages() {
+        String sameFailureOtherPort = TRACE_A
+                .replace("port 30450", "port 8080")
+                .replace("timeout 1", "timeout 2");
+        String otherFrame = TRACE_A.replace("BackendApi.java:140", "BackendApi.java:141");
+
+        assertEquals(ErrorPayloads.fingerprint(TRACE_A), ErrorPayloads.fingerprint(sameFailureOtherPort));
+        assertNotEquals(ErrorPayloads.fingerprint(TRACE_A), ErrorPayloads.fingerprint(otherFrame));
+        assertEquals(16, ErrorPayloads.fingerprint(TRACE_A).length());
+    }
+
+    @Test
+    public void putResponseBody_truncatesToPrefixAndRecordsLength() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append('x');
+        }
+        JsonObject context = new JsonObject();
+
+        ErrorPayloads.putResponseBody(context, body.toString(), 100);
+
+        assertEquals(100, context.get("response_body").getAsString().length());
+        assertEquals(1000, context.get("response_body_length").getAsInt());
+        assertTrue(context.get("response_body_truncated").getAsBoolean());
+    }
+
+    @Test
+    public void putResponseBody_keepsShortBodyAsIs() {
+        JsonObject context = new JsonObject();
+
+        ErrorPayloads.putResponseBody(context, "{\"detail\":\"bad\"}", 100);
+
+        assertEquals("{\"detail\":\"bad\"}", context.get("response_body").getAsString());
+        assertFalse(context.has("response_body_length"));
+    }
+
+    @Test
+    public void putResponseBody_neverInlinesBinary() {
+        JsonObject context = new JsonObject();
+
+        ErrorPayloads.putResponseBody(context, "ÿØÿ\u0000JFIF", 100);
+
+        assertFalse(context.has("response_body"));
+        assertEquals("binary", context.get("response_body_omitted").getAsString());
+        assertEquals(8, context.get("response_body_length").getAsInt());
+    }
+}
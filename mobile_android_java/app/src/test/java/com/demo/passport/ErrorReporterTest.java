@@ -0,0 +1,228 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+
+public class ErrorReporterTest {
+    private final List<JsonObject> sent = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void report_coalescesIdenticalErrorsWithCountAndTimestamps() {
+        ErrorReporter reporter = reporter(50, 20);
+        reporter.report("first", null, null, null);
+        assertEquals(1, sent.size());
+
+        JsonObject context = new JsonObject();
+        context.addProperty("request_url", "http://backend/nfc");
+        for (int i = 0; i < 3; i++) {
+            reporter.report("HTTP 503: busy", "trace", context, null);
+        }
+        assertEquals(1, reporter.getPendingGroups());
+        reporter.flush();
+
+        assertEquals(2, sent.size());
+        JsonObject storm = sent.get(1);
+        assertEquals("HTTP 503: busy", storm.get("error_message").getAsString());
+        assertEquals("trace", storm.get("stacktrace").getAsString());
+        JsonObject stormContext = storm.getAsJsonObject("context_json");
+        assertEquals(3, stormContext.get("occurrences").getAsInt());
+        assertEquals("http://backend/nfc", stormContext.get("request_url").getAsString());
+        assertTrue(stormContext.get("first_seen_ms").getAsLong() <= stormContext.get("last_seen_ms").getAsLong());
+        assertFalse(context.has("occurrences"));
+        assertFalse(sent.get(0).has("context_json"));
+    }
+
+    @Test
+    public void report_dropsOldestGroupBeyondCapacityAndReportsSuppressedCount() {
+        ErrorReporter reporter = reporter(2, 20);
+        reporter.report("first", null, null, null);
+        reporter.report("x", null, null, null);
+        reporter.report("x", null, null, null);
+        reporter.report("y", null, null, null);
+        reporter.report("z", null, null, null);
+
+        assertEquals(2, reporter.getPendingGroups());
+        assertEquals(2, reporter.getSuppressedCount());
+        reporter.flush();
+
+        assertEquals(3, sent.size());
+        assertEquals("y", sent.get(1).get("error_message").getAsString());
+        assertEquals(2, sent.get(1).getAsJsonObject("context_json").get("suppressed_count").getAsLong());
+        assertEquals("z", sent.get(2).get("error_message").getAsString());
+        assertEquals(0, reporter.getSuppressedCount());
+    }
+
+    @Test
+    public void report_flushesAtSizeThresholdWithoutWaitingForTimer() throws Exception {
+        ErrorReporter reporter = reporter(50, 3);
+        reporter.report("first", null, null, null);
+        CountDownLatch delivered = new CountDownLatch(3);
+        for (String message : new String[] {"a", "b", "c"}) {
+            reporter.report(message, null, null, new BackendApi.Callback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    delivered.countDown();
+                }
+
+                @Override
+                public void onError(String error) {
+                }
+            });
+        }
+
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(4, sent.size());
+    }
+
+    @Test
+    public void report_countsEveryOccurrenceUnderContention() throws Exception {
+        ErrorReporter reporter = reporter(50, 20);
+        int threads = 8;
+        int perThread = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    reporter.report("storm", null, null, null);
+                    if (i % 500 == 0) {
+                        reporter.flush();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        reporter.flush();
+
+        long total = 0;
+        for (JsonObject payload : sent) {
+            JsonObject context = payload.getAsJsonObject("context_json");
+            total += context != null && context.has("occurrences") ? context.get("occurrences").getAsLong() : 1;
+        }
+        assertEquals(threads * perThread, total);
+    }
+
+    @Test
+    public void report_completesEveryCallbackWhileFlushesSealGroups() throws Exception {
+        ErrorReporter reporter = reporter(1_000, 1_000);
+        int threads = 4;
+        int perThread = 5_000;
+        AtomicInteger completed = new AtomicInteger();
+        BackendApi.Callback<Void> cb = new BackendApi.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                completed.incrementAndGet();
+            }
+
+            @Override
+            public void onError(String message) {
+                completed.incrementAndGet();
+            }
+        };
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    reporter.report("storm", null, null, cb);
+                }
+            });
+            workers[t].start();
+        }
+        AtomicBoolean reporting = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (reporting.get()) {
+                reporter.flush();
+            }
+        });
+        flusher.start();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        reporting.set(false);
+        flusher.join();
+        reporter.flush();
+
+        assertEquals(threads * perThread, completed.get());
+    }
+
+    @Test
+    public void send_includesFullStackTraceOnlyOncePerFingerprint() {
+        ErrorReporter reporter = reporter(50, 20);
+        String trace = "java.io.IOException: timeout\n\tat com.demo.passport.BackendApi.fetchFaceImage(BackendApi.java:1)\n";
+        reporter.report("HTTP failure: timeout", trace, null, null);
+        reporter.report("HTTP failure: timeout after retry", trace.replace("timeout", "reset"), null, null);
+        reporter.flush();
+
+        assertEquals(2, sent.size());
+        assertEquals(trace, sent.get(0).get("stacktrace").getAsString());
+        assertFalse(sent.get(1).has("stacktrace"));
+        assertEquals(
+                sent.get(0).getAsJsonObject("context_json").get("stacktrace_fingerprint").getAsString(),
+                sent.get(1).getAsJsonObject("context_json").get("stacktrace_fingerprint").getAsString()
+        );
+    }
+
+    @Test
+    public void send_resendsFullStackTraceAfterFailedReport() {
+        AtomicBoolean down = new AtomicBoolean(true);
+        ErrorReporter reporter = new ErrorReporter((payload, cb) -> {
+            sent.add(payload);
+            if (down.get()) {
+                cb.onError("HTTP failure: timeout");
+            } else {
+                cb.onSuccess(null);
+            }
+        }, executor, 50, 20);
+        reporter.setFlushIntervalMs(60_000);
+        String trace = "java.io.IOException: timeout\n\tat com.demo.passport.BackendApi.reportError(BackendApi.java:1)\n";
+
+        reporter.report("HTTP failure: timeout", trace, null, null);
+        down.set(false);
+        reporter.report("HTTP failure: timeout again", trace, null, null);
+        reporter.report("HTTP failure: timeout once more", trace, null, null);
+        reporter.flush();
+
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).has("stacktrace"));
+        assertTrue(sent.get(1).has("stacktrace"));
+        assertFalse(sent.get(2).has("stacktrace"));
+    }
+
+    private ErrorReporter reporter(int capacity, int flushThreshold) {
+        ErrorReporter reporter = new ErrorReporter((payload, cb) -> {
+            sent.add(payload);
+            cb.onSuccess(null);
+        }, executor, capacity, flushThreshold);
+        reporter.setFlushIntervalMs(60_000);
+        return reporter;
+    }
+}
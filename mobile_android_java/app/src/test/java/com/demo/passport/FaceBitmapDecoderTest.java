@@ -0,0 +1,67 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FaceBitmapDecoderTest {
+    @Test
+    public void sampleSize_picksLargestPowerOfTwoStillCoveringTarget() {
+        // ICAO face 480x640 into a 160x200 view: 240x320 still covers it, 120x160 would not.
+        assertEquals(2, FaceBitmapDecoder.sampleSize(480, 640, 160, 200));
+        assertEquals(4, FaceBitmapDecoder.sampleSize(1920, 2560, 400, 600));
+        assertEquals(1, FaceBitmapDecoder.sampleSize(300, 400, 320, 420));
+    }
+
+    @Test
+    public void sampleSize_isOneWhenTargetSizeUnknown() {
+        assertEquals(1, FaceBitmapDecoder.sampleSize(2000, 2000, 0, 200));
+        assertEquals(1, FaceBitmapDecoder.sampleSize(2000, 2000, 200, -1));
+    }
+
+    @Test
+    public void decodedSize_coversTargetWithoutDoublingIt() {
+        int[][] cases = {{480, 640, 160, 200}, {1920, 2560, 400, 600}, {481, 641, 120, 160}, {300, 400, 320, 420}};
+        for (int[] c : cases) {
+            int sample = FaceBitmapDecoder.sampleSize(c[0], c[1], c[2], c[3]);
+            int width = FaceBitmapDecoder.decodedSize(c[0], sample);
+            int height = FaceBitmapDecoder.decodedSize(c[1], sample);
+
+            // Rounded up like BitmapFactory, so the pooled bitmap is never too small for the decode.
+            assertEquals((int) Math.ceil(c[0] / (double) sample), width);
+            assertEquals((int) Math.ceil(c[1] / (double) sample), height);
+            if (sample > 1) {
+                assertTrue(width >= c[2] && height >= c[3]);
+                assertTrue(width < 2 * c[2] || height < 2 * c[3]);
+            }
+        }
+        assertEquals(241, FaceBitmapDecoder.decodedSize(481, 2));
+    }
+
+    @Test
+    public void decodableRange_cutsOutEmbeddedJpeg() {
+        byte[] dg2 = {0x75, 0x10, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x01, (byte) 0xFF, (byte) 0xD9, 0x00};
+
+        Dg2FaceLocator.Range face = FaceBitmapDecoder.decodableRange(dg2);
+
+        assertEquals(Dg2FaceLocator.Format.JPEG, face.format);
+        assertEquals(2, face.offset);
+        assertEquals(6, face.length);
+    }
+
+    @Test
+    public void decodableRange_passesNonJpegThroughUntagged() {
+        byte[] jp2 = {0x75, 0x01, 0x00, 0x00, 0x00, 0x0C, 0x6A, 0x50, 0x20, 0x20};
+        byte[] unknown = {0x75, 0x10, 0x01, 0x02};
+
+        Dg2FaceLocator.Range boxed = FaceBitmapDecoder.decodableRange(jp2);
+        Dg2FaceLocator.Range raw = FaceBitmapDecoder.decodableRange(unknown);
+
+        assertEquals(Dg2FaceLocator.Format.UNKNOWN, boxed.format);
+        assertEquals(0, boxed.offset);
+        assertEquals(jp2.length, boxed.length);
+        assertEquals(Dg2FaceLocator.Format.UNKNOWN, raw.format);
+        assertEquals(unknown.length, raw.length);
+    }
+}
@@ -0,0 +1,175 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FaceCacheTest {
+    private static final String URL = "http://backend/api/nfc/scan-1/face.jpg";
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Requests seen by the fake fetcher, answered by the test. */
+    private final List<String> etags = new ArrayList<>();
+    private final List<BackendApi.Callback<FaceCache.Download>> pending = new ArrayList<>();
+
+    @Test
+    public void get_coalescesConcurrentRequestsForSameUrl() throws Exception {
+        FaceCache cache = cache(folder.getRoot(), FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000);
+        AtomicReference<byte[]> first = new AtomicReference<>();
+        AtomicReference<byte[]> second = new AtomicReference<>();
+        cache.get(URL, callback(first));
+        cache.get(URL, callback(second));
+
+        assertEquals(1, pending.size());
+        assertEquals(1, cache.getCoalescedRequests());
+        pending.get(0).onSuccess(new FaceCache.Download(face(1, 8), "\"v1\"", false));
+
+        assertArrayEquals(face(1, 8), first.get());
+        assertArrayEquals(face(1, 8), second.get());
+    }
+
+    @Test
+    public void get_servesFreshEntryFromMemoryAndDiskWithoutRequest() throws Exception {
+        File dir = folder.newFolder();
+        FaceCache cache = cache(dir, FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000);
+        cache.get(URL, callback(new AtomicReference<>()));
+        pending.get(0).onSuccess(new FaceCache.Download(face(2, 16), "\"v1\"", false));
+
+        AtomicReference<byte[]> fromMemory = new AtomicReference<>();
+        cache.get(URL, callback(fromMemory));
+        assertArrayEquals(face(2, 16), fromMemory.get());
+        assertEquals(1, pending.size());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+        assertEquals(16, cache.getBytesServedFromCache());
+
+        FaceCache restarted = cache(dir, FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000);
+        AtomicReference<byte[]> fromDisk = new AtomicReference<>();
+        restarted.get(URL, callback(fromDisk));
+        assertArrayEquals(face(2, 16), fromDisk.get());
+        assertEquals(1, pending.size());
+    }
+
+    @Test
+    public void get_revalidatesStaleEntryWithEtagAndServesCachedBytesOn304() throws Exception {
+        FaceCache cache = cache(folder.getRoot(), FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 0);
+        cache.get(URL, callback(new AtomicReference<>()));
+        pending.get(0).onSuccess(new FaceCache.Download(face(3, 32), "\"v1\"", false));
+
+        AtomicReference<byte[]> revalidated = new AtomicReference<>();
+        cache.get(URL, callback(revalidated));
+        assertEquals(2, pending.size());
+        assertNull(etags.get(0));
+        assertEquals("\"v1\"", etags.get(1));
+        pending.get(1).onSuccess(new FaceCache.Download(new byte[0], "\"v1\"", true));
+
+        assertArrayEquals(face(3, 32), revalidated.get());
+        assertEquals(32, cache.getBytesServedFromCache());
+    }
+
+    @Test
+    public void get_keepsDiskTierUnderSizeCap() throws Exception {
+        File dir = folder.newFolder();
+        FaceCache cache = cache(dir, 10, 150, 60_000);
+        for (int i = 0; i < 4; i++) {
+            cache.get(URL + "?scan=" + i, callback(new AtomicReference<>()));
+            pending.get(i).onSuccess(new FaceCache.Download(face(i, 60), null, false));
+        }
+
+        long total = 0;
+        for (File file : dir.listFiles()) {
+            total += file.length();
+        }
+        assertTrue("disk tier " + total + " bytes", total <= 150);
+        assertTrue(dir.listFiles().length >= 1);
+    }
+
+    @Test
+    public void get_encryptsDiskTierAndSkipsItWithoutKey() throws Exception {
+        File dir = folder.newFolder();
+        FaceCache cache = cache(dir, FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000);
+        cache.get(URL, callback(new AtomicReference<>()));
+        byte[] face = "JFIF-face-image-bytes".getBytes(StandardCharsets.ISO_8859_1);
+        pending.get(0).onSuccess(new FaceCache.Download(face, "\"v1\"", false));
+
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        String stored = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(stored.contains("JFIF-face-image-bytes"));
+        assertFalse(stored.contains("v1"));
+
+        File plainDir = folder.newFolder();
+        FaceCache memoryOnly = cache(plainDir, null,
+                FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000, FaceCache.DEFAULT_MAX_AGE_MS);
+        memoryOnly.get(URL, callback(new AtomicReference<>()));
+        pending.get(1).onSuccess(new FaceCache.Download(face, null, false));
+        assertEquals(0, plainDir.listFiles().length);
+    }
+
+    @Test
+    public void get_downloadsAgainAndDeletesFileOnceMaxAgeHasPassed() throws Exception {
+        File dir = folder.newFolder();
+        FaceCache cache = cache(dir, KEY, FaceCache.DEFAULT_MEMORY_BYTES, FaceCache.DEFAULT_DISK_BYTES, 60_000, 0);
+        cache.get(URL, callback(new AtomicReference<>()));
+        pending.get(0).onSuccess(new FaceCache.Download(face(4, 16), "\"v1\"", false));
+
+        cache.get(URL, callback(new AtomicReference<>()));
+
+        // Expired entries are not revalidated either: the request is unconditional.
+        assertEquals(2, pending.size());
+        assertNull(etags.get(1));
+        assertEquals(0, dir.listFiles().length);
+        assertEquals(0, cache.getBytesServedFromCache());
+    }
+
+    private FaceCache cache(File dir, long memoryBytes, long diskBytes, long freshMs) {
+        return cache(dir, KEY, memoryBytes, diskBytes, freshMs, FaceCache.DEFAULT_MAX_AGE_MS);
+    }
+
+    private FaceCache cache(File dir, SecretKey key, long memoryBytes, long diskBytes, long freshMs, long maxAgeMs) {
+        return new FaceCache(dir, key, (url, etag, cb) -> {
+            etags.add(etag);
+            pending.add(cb);
+        }, Runnable::run, memoryBytes, diskBytes, freshMs, maxAgeMs);
+    }
+
+    private static BackendApi.Callback<byte[]> callback(AtomicReference<byte[]> result) {
+        return new BackendApi.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] value) {
+                result.set(value);
+            }
+
+            @Override
+            public void onError(String message) {
+                throw new AssertionError(message);
+            }
+        };
+    }
+
+    private static byte[] face(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+}
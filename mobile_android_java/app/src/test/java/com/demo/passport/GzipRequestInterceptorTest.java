@@ -0,0 +1,154 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GzipRequestInterceptorTest {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private MockWebServer server;
+    private GzipRequestInterceptor interceptor;
+    private OkHttpClient client;
+    private final AtomicBoolean enabled = new AtomicBoolean(true);
+    private final AtomicLong originalBytes = new AtomicLong(-1);
+    private final AtomicLong compressedBytes = new AtomicLong(-1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        interceptor = new GzipRequestInterceptor(
+                new HashSet<>(Arrays.asList("/nfc", "/errors")), 1024, enabled::get);
+        interceptor.setListener((path, original, compressed) -> {
+            originalBytes.set(original);
+            compressedBytes.set(compressed);
+        });
+        client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void compressesLargeBodyForMatchingPath() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        String json = largeJson();
+
+        post("/api/nfc", json);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals("application/json; charset=utf-8", request.getHeader("Content-Type"));
+        assertEquals(json, gunzip(request.getBody()));
+        assertEquals(json.length(), originalBytes.get());
+        assertEquals(request.getBodySize(), compressedBytes.get());
+        assertTrue(compressedBytes.get() * 4 < originalBytes.get());
+    }
+
+    @Test
+    public void leavesSmallBodiesAndOtherPathsUncompressed() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        post("/errors", "{\"error_message\":\"short\"}");
+        post("/recognize", largeJson());
+
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(-1, originalBytes.get());
+    }
+
+    @Test
+    public void leavesBodiesUncompressedWhenDisabled() throws Exception {
+        enabled.set(false);
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        post("/nfc", largeJson());
+
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void retriesUncompressedAndRemembersHostOn415() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(415));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        String json = largeJson();
+
+        assertEquals(200, post("/nfc", json));
+        assertEquals(200, post("/errors", json));
+
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        RecordedRequest retried = server.takeRequest();
+        assertNull(retried.getHeader("Content-Encoding"));
+        assertEquals(json, retried.getBody().readUtf8());
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(3, server.getRequestCount());
+        assertTrue(interceptor.isHostRejecting(server.getHostName() + ":" + server.getPort()));
+    }
+
+    @Test
+    public void disablesCompressionOn400() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(400));
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+
+        assertEquals(400, post("/nfc", largeJson()));
+
+        assertEquals(2, server.getRequestCount());
+        assertTrue(interceptor.isHostRejecting(server.getHostName() + ":" + server.getPort()));
+
+        interceptor.resetHosts();
+        assertFalse(interceptor.isHostRejecting(server.getHostName() + ":" + server.getPort()));
+    }
+
+    private int post(String path, String json) throws Exception {
+        Request request = new Request.Builder()
+                .url(server.url(path))
+                .post(RequestBody.create(json, JSON))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    private static String largeJson() {
+        StringBuilder sb = new StringBuilder("{\"stacktrace\":\"");
+        for (int i = 0; i < 200; i++) {
+            sb.append("at com.demo.passport.BackendApi.reportError(BackendApi.java:").append(i).append(")\\n");
+        }
+        return sb.append("\"}").toString();
+    }
+
+    private static String gunzip(Buffer body) throws Exception {
+        Buffer result = new Buffer();
+        try (GzipSource source = new GzipSource(body)) {
+            while (source.read(result, 8192) != -1) {
+                // drain
+            }
+        }
+        return result.readUtf8();
+    }
+}
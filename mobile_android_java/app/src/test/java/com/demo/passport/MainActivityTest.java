@@ -248,4 +248,14 @@ public class MainActivityTest {
         assertNull(payload);
         assertTrue(error.toString().contains("DG1"));
     }
+
+    @Test
+    public void shouldPrewarmConnection_onlyBeforeBackendCalls() {
+        assertTrue(MainActivity.shouldPrewarmConnection(MainActivity.State.CAMERA));
+        assertTrue(MainActivity.shouldPrewarmConnection(MainActivity.State.PHOTO_SENDING));
+        assertTrue(MainActivity.shouldPrewarmConnection(MainActivity.State.NFC_WAIT));
+        assertTrue(MainActivity.shouldPrewarmConnection(MainActivity.State.NFC_READING));
+        assertFalse(MainActivity.shouldPrewarmConnection(MainActivity.State.RESULT));
+        assertFalse(MainActivity.shouldPrewarmConnection(MainActivity.State.ERROR));
+    }
 }
@@ -0,0 +1,142 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+public class MrzBandLocatorTest {
+
+    @Test
+    public void locate_findsTd3BandAtBottomOfPassportPage() throws IOException {
+        Fixture page = Fixture.load("td3_page.png");
+
+        MrzBandLocator.Band band = MrzBandLocator.locate(page.luma, page.width, page.height);
+
+        assertNotNull(band);
+        assertEquals(2, band.lineCount);
+        assertTrue(band.toString(), band.isConfident());
+        // MRZ baselines are at y=282 and y=308 in the fixture.
+        assertTrue(band.toString(), band.top > 240 && band.top < 272);
+        assertTrue(band.toString(), band.bottom > 308);
+        assertTrue(band.toString(), band.width() > page.width * 3 / 4);
+        // The crop must be a small fraction of the page.
+        assertTrue(band.toString(), band.height() < page.height / 4);
+    }
+
+    @Test
+    public void locate_handlesLowContrastNoisyCapture() throws IOException {
+        Fixture page = Fixture.load("td3_page_low_contrast.png");
+
+        MrzBandLocator.Band band = MrzBandLocator.locate(page.luma, page.width, page.height);
+
+        assertNotNull(band);
+        assertEquals(2, band.lineCount);
+        assertTrue(band.toString(), band.isConfident());
+        assertTrue(band.toString(), band.top > 240);
+    }
+
+    @Test
+    public void locate_findsThreeLineTd1Band() throws IOException {
+        Fixture card = Fixture.load("td1_card.png");
+
+        MrzBandLocator.Band band = MrzBandLocator.locate(card.luma, card.width, card.height);
+
+        assertNotNull(band);
+        assertEquals(3, band.lineCount);
+        assertTrue(band.toString(), band.isConfident());
+        assertTrue(band.toString(), band.top > 150);
+    }
+
+    @Test
+    public void locate_isNotConfidentWithoutMrz() throws IOException {
+        Fixture page = Fixture.load("no_mrz_page.png");
+
+        MrzBandLocator.Band band = MrzBandLocator.locate(page.luma, page.width, page.height);
+
+        assertTrue(band == null || !band.isConfident());
+    }
+
+    @Test
+    public void locate_returnsNullForBlankImage() {
+        byte[] blank = new byte[100 * 80];
+        java.util.Arrays.fill(blank, (byte) 200);
+
+        assertEquals(null, MrzBandLocator.locate(blank, 100, 80));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void locate_rejectsShortBuffer() {
+        MrzBandLocator.locate(new byte[10], 100, 80);
+    }
+
+    @Test
+    public void pitchRegularity_isHighForFixedPitch() {
+        int[] centers = new int[44];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = 5 + i * 10;
+        }
+        assertEquals(1f, MrzBandLocator.pitchRegularity(centers), 0.001f);
+    }
+
+    @Test
+    public void pitchRegularity_isLowForProportionalText() {
+        int[] centers = new int[30];
+        int x = 0;
+        int[] steps = {4, 9, 6, 13, 5, 21, 7, 3, 11, 8};
+        for (int i = 0; i < centers.length; i++) {
+            x += steps[i % steps.length];
+            centers[i] = x;
+        }
+        assertFalse(MrzBandLocator.pitchRegularity(centers) >= 0.8f);
+    }
+
+    @Test
+    public void otsuThreshold_separatesBimodalHistogram() {
+        byte[] luma = new byte[200];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) (i % 2 == 0 ? 30 : 220);
+        }
+        int threshold = MrzBandLocator.otsuThreshold(luma, luma.length);
+        assertTrue(threshold > 30 && threshold <= 220);
+    }
+
+    /**
+     * Grayscale PNG fixture from src/test/resources/mrz, converted to the locator's luma layout.
+     */
+    static final class Fixture {
+        final byte[] luma;
+        final int width;
+        final int height;
+
+        private Fixture(byte[] luma, int width, int height) {
+            this.luma = luma;
+            this.width = width;
+            this.height = height;
+        }
+
+        static Fixture load(String name) throws IOException {
+            try (InputStream input = MrzBandLocatorTest.class.getResourceAsStream("/mrz/" + name)) {
+                assertNotNull("Missing fixture " + name, input);
+                BufferedImage image = ImageIO.read(input);
+                int width = image.getWidth();
+                int height = image.getHeight();
+                byte[] luma = new byte[width * height];
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        luma[y * width + x] = (byte) image.getRaster().getSample(x, y, 0);
+                    }
+                }
+                return new Fixture(luma, width, height);
+            }
+        }
+    }
+}
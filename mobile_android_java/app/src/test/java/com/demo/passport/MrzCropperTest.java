@@ -0,0 +1,36 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MrzCropperTest {
+
+    @Test
+    public void argbToLuma_usesBt601Weights() {
+        int[] pixels = {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+
+        byte[] luma = MrzCropper.argbToLuma(pixels);
+
+        assertEquals(0, luma[0] & 0xFF);
+        assertEquals(255, luma[1] & 0xFF);
+        assertEquals(76, luma[2] & 0xFF);
+        assertEquals(149, luma[3] & 0xFF);
+        assertEquals(29, luma[4] & 0xFF);
+    }
+
+    @Test
+    public void argbToLuma_matchesLocatorFixtureLayout() throws Exception {
+        MrzBandLocatorTest.Fixture page = MrzBandLocatorTest.Fixture.load("td3_page.png");
+        int[] pixels = new int[page.luma.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int v = page.luma[i] & 0xFF;
+            pixels[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+
+        byte[] luma = MrzCropper.argbToLuma(pixels);
+        MrzBandLocator.Band band = MrzBandLocator.locate(luma, page.width, page.height);
+
+        assertEquals(2, band.lineCount);
+    }
+}
@@ -0,0 +1,106 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class MrzKeyCorrectorTest {
+
+    @Test
+    public void checkDigit_matchesIcaoSpecimen() {
+        assertEquals(6, MrzCheckDigit.compute("L898902C3"));
+        assertEquals(2, MrzCheckDigit.compute("740812"));
+        assertEquals(9, MrzCheckDigit.compute("120415"));
+        assertTrue(MrzCheckDigit.isValid("D23145890", '7'));
+        assertFalse(MrzCheckDigit.isValid("D23145890", '8'));
+        assertEquals(-1, MrzCheckDigit.compute("AB-1"));
+    }
+
+    @Test
+    public void check_isUncheckedWithoutCheckDigitsAndValidForSpecimen() {
+        Models.MRZKeys unchecked = keys("L8989O2C3", "740812", "120415", null, null, null);
+        assertEquals(MrzKeyCorrector.Status.UNCHECKED, MrzKeyCorrector.check(unchecked).status);
+
+        Models.MRZKeys specimen = keys("L898902C3", "740812", "120415", "6", "2", "9");
+        MrzKeyCorrector.Check check = MrzKeyCorrector.check(specimen);
+        assertEquals(MrzKeyCorrector.Status.VALID, check.status);
+        assertTrue(check.corrections.isEmpty());
+    }
+
+    @Test
+    public void check_correctsLetterDigitConfusionInDocumentNumber() {
+        Models.MRZKeys misread = keys("L8989O2C3", "740812", "120415", "6", "2", "9");
+
+        MrzKeyCorrector.Check check = MrzKeyCorrector.check(misread);
+
+        assertEquals(MrzKeyCorrector.Status.INVALID, check.status);
+        Models.MRZKeys best = check.best();
+        assertEquals("L898902C3", best.document_number);
+        assertEquals("740812", best.date_of_birth);
+        assertEquals("120415", best.date_of_expiry);
+        assertEquals(MrzKeyCorrector.Status.VALID, MrzKeyCorrector.check(best).status);
+        assertTrue(check.corrections.size() <= MrzKeyCorrector.MAX_CANDIDATES);
+    }
+
+    @Test
+    public void check_correctsMisreadCheckDigitAndKeepsUncheckedFields() {
+        Models.MRZKeys misread = keys("D23145890", "740812", "120415", null, "Z", "9");
+
+        Models.MRZKeys best = MrzKeyCorrector.check(misread).best();
+
+        assertEquals("D23145890", best.document_number);
+        assertNull(best.document_number_check_digit);
+        assertEquals("2", best.date_of_birth_check_digit);
+        assertEquals("740812", best.date_of_birth);
+        assertEquals(MrzKeyCorrector.Status.VALID, MrzKeyCorrector.check(best).status);
+    }
+
+    @Test
+    public void check_offersNothingWhenNoConfusionExplainsTheMismatch() {
+        Models.MRZKeys wrong = keys("XXXXXXXXX", "740812", "120415", "W", "2", "9");
+
+        MrzKeyCorrector.Check check = MrzKeyCorrector.check(wrong);
+
+        assertEquals(MrzKeyCorrector.Status.INVALID, check.status);
+        assertNull(check.best());
+        assertEquals("Контрольные цифры MRZ не совпадают: проверьте номер документа и даты",
+                MainActivity.validateMrzKeys(wrong));
+    }
+
+    @Test
+    public void bacCandidates_putsKeysFirstThenCorrectionsOrLookAlikeSwaps() {
+        Models.MRZKeys misread = keys("L8989O2C3", "740812", "120415", "6", "2", "9");
+        List<Models.MRZKeys> corrected = MrzKeyCorrector.bacCandidates(misread);
+        assertSame(misread, corrected.get(0));
+        assertEquals("L898902C3", corrected.get(1).document_number);
+
+        Models.MRZKeys unchecked = keys("12O45B7", "740812", "120415", null, null, null);
+        List<Models.MRZKeys> swapped = MrzKeyCorrector.bacCandidates(unchecked);
+        assertSame(unchecked, swapped.get(0));
+        assertEquals(3, swapped.size());
+        assertEquals("12045B7", swapped.get(1).document_number);
+        assertEquals("12O4587", swapped.get(2).document_number);
+        assertEquals("740812", swapped.get(1).date_of_birth);
+
+        Models.MRZKeys valid = keys("L898902C3", "740812", "120415", "6", "2", "9");
+        assertEquals(1, MrzKeyCorrector.bacCandidates(valid).size());
+    }
+
+    private static Models.MRZKeys keys(
+            String number, String birth, String expiry, String numberCheck, String birthCheck, String expiryCheck) {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = number;
+        keys.date_of_birth = birth;
+        keys.date_of_expiry = expiry;
+        keys.document_number_check_digit = numberCheck;
+        keys.date_of_birth_check_digit = birthCheck;
+        keys.date_of_expiry_check_digit = expiryCheck;
+        return keys;
+    }
+}
@@ -0,0 +1,236 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.jmrtd.lds.CardAccessFile;
+import org.jmrtd.lds.PACEInfo;
+import org.jmrtd.lds.SecurityInfo;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class NfcAccessNegotiatorTest {
+
+    @Test
+    public void negotiate_usesPaceWithoutTouchingBacWhenCardAccessAdvertisesIt() {
+        SoftwareChip chip = SoftwareChip.paceOnly(keys("L898902C3"));
+
+        NfcAccessNegotiator.Outcome outcome = NfcAccessNegotiator.negotiate(chip, Arrays.asList(keys("L898902C3")), 3);
+
+        assertEquals(NfcAccessNegotiator.METHOD_PACE, outcome.accessMethod);
+        assertTrue(outcome.paceSupported);
+        assertEquals(1, outcome.attempts);
+        assertEquals(0, outcome.candidateIndex);
+        assertEquals(0, chip.bacRuns);
+        assertTrue(chip.selectedAfterPace);
+    }
+
+    @Test
+    public void negotiate_fallsBackToBacWithoutCardAccess() {
+        SoftwareChip chip = SoftwareChip.bacOnly(keys("L898902C3"));
+
+        NfcAccessNegotiator.Outcome outcome = NfcAccessNegotiator.negotiate(chip, Arrays.asList(keys("L898902C3")), 3);
+
+        assertEquals(NfcAccessNegotiator.METHOD_BAC, outcome.accessMethod);
+        assertFalse(outcome.paceSupported);
+        assertEquals(0, chip.paceRuns);
+    }
+
+    @Test
+    public void negotiate_triesNextCandidateOverPaceAfterWrongKey() {
+        SoftwareChip chip = SoftwareChip.paceOnly(keys("L898902C3"));
+
+        NfcAccessNegotiator.Outcome outcome = NfcAccessNegotiator.negotiate(
+                chip, Arrays.asList(keys("L8989O2C3"), keys("L898902C3")), 3);
+
+        assertEquals(NfcAccessNegotiator.METHOD_PACE, outcome.accessMethod);
+        assertEquals(2, outcome.attempts);
+        assertEquals(1, outcome.candidateIndex);
+        assertEquals(0, chip.bacRuns);
+    }
+
+    @Test
+    public void negotiate_usesBacWhenPaceParametersAreRejected() {
+        SoftwareChip chip = SoftwareChip.paceOnly(keys("L898902C3"));
+        chip.bacAllowed = true;
+        chip.paceMappingSupported = false;
+
+        NfcAccessNegotiator.Outcome outcome = NfcAccessNegotiator.negotiate(chip, Arrays.asList(keys("L898902C3")), 3);
+
+        assertEquals(NfcAccessNegotiator.METHOD_BAC, outcome.accessMethod);
+        assertTrue(outcome.paceSupported);
+        assertEquals(2, outcome.attempts);
+    }
+
+    @Test
+    public void negotiate_stopsAtCapAndReportsPaceStage() {
+        SoftwareChip chip = SoftwareChip.paceOnly(keys("L898902C3"));
+
+        NfcAccessNegotiator.Outcome outcome = NfcAccessNegotiator.negotiate(
+                chip, Arrays.asList(keys("AAAAAAAA1"), keys("AAAAAAAA2"), keys("L898902C3")), 2);
+
+        assertFalse(outcome.isAuthenticated());
+        assertNull(outcome.accessMethod);
+        assertEquals(2, outcome.attempts);
+        assertEquals(2, chip.paceRuns);
+        assertEquals(NfcAccessNegotiator.STAGE_PACE, outcome.failedStage);
+    }
+
+    @Test
+    public void choosePaceInfo_prefersAesEllipticCurveGenericMapping() throws Exception {
+        byte[] cardAccess = new CardAccessFile(Arrays.<SecurityInfo>asList(
+                new PACEInfo(SecurityInfo.ID_PACE_DH_GM_3DES_CBC_CBC, 2, PACEInfo.PARAM_ID_GFP_1024_160),
+                new PACEInfo(SecurityInfo.ID_PACE_ECDH_IM_AES_CBC_CMAC_128, 2, PACEInfo.PARAM_ID_ECP_NIST_P256_R1),
+                new PACEInfo(SecurityInfo.ID_PACE_ECDH_GM_AES_CBC_CMAC_128, 2, PACEInfo.PARAM_ID_ECP_BRAINPOOL_P256_R1)
+        )).getEncoded();
+
+        PACEInfo chosen = NfcAccessNegotiator.choosePaceInfo(cardAccess);
+
+        assertEquals(SecurityInfo.ID_PACE_ECDH_GM_AES_CBC_CMAC_128, chosen.getObjectIdentifier());
+        assertNull(NfcAccessNegotiator.choosePaceInfo(new byte[0]));
+    }
+
+    @Test
+    public void negotiate_savesTheDoomedBacOnPaceChips() {
+        Models.MRZKeys keys = keys("L898902C3");
+        SoftwareChip bacFirstChip = SoftwareChip.paceOnly(keys);
+        bacFirst(bacFirstChip, keys);
+        SoftwareChip negotiatedChip = SoftwareChip.paceOnly(keys);
+        NfcAccessNegotiator.negotiate(negotiatedChip, Collections.singletonList(keys), 3);
+
+        long savedMs = bacFirstChip.elapsedMs - negotiatedChip.elapsedMs;
+
+        // SELECT plus the rejected GET CHALLENGE.
+        assertEquals(2 * SoftwareChip.APDU_MS, savedMs);
+        assertEquals(1, bacFirstChip.bacRuns);
+        assertEquals(0, negotiatedChip.bacRuns);
+
+        // A BAC-only chip pays one failed SELECT of EF.CardAccess for the probe.
+        SoftwareChip bacOnly = SoftwareChip.bacOnly(keys);
+        NfcAccessNegotiator.negotiate(bacOnly, Collections.singletonList(keys), 3);
+        SoftwareChip bacOnlyBaseline = SoftwareChip.bacOnly(keys);
+        bacFirst(bacOnlyBaseline, keys);
+        assertEquals(SoftwareChip.APDU_MS, bacOnly.elapsedMs - bacOnlyBaseline.elapsedMs);
+    }
+
+    /** The old order: SELECT and BAC first, PACE only after BAC is refused with 6985. */
+    private static void bacFirst(SoftwareChip chip, Models.MRZKeys keys) {
+        try {
+            chip.selectApplet(false);
+            chip.doBac(keys);
+            return;
+        } catch (Exception e) {
+            assertTrue(NfcPassportReader.isPaceRequiredError(NfcPassportReader.extractSwCode(e), e.getMessage()));
+        }
+        try {
+            PACEInfo info = NfcAccessNegotiator.choosePaceInfo(chip.readCardAccess());
+            chip.doPace(keys, info);
+            chip.selectApplet(true);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Models.MRZKeys keys(String documentNumber) {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = documentNumber;
+        keys.date_of_birth = "740812";
+        keys.date_of_expiry = "120415";
+        return keys;
+    }
+
+    /**
+     * Chip with a simulated clock: every APDU costs {@link #APDU_MS}, in the order of a real ISO 14443
+     * round trip with secure messaging. Protocols send as many APDUs as on a real chip: SELECT EF plus
+     * READ BINARY for EF.CardAccess, GET CHALLENGE plus EXTERNAL AUTHENTICATE for BAC, MSE:Set AT plus
+     * four GENERAL AUTHENTICATE for PACE. Cryptography is not emulated; only the key is compared.
+     */
+    static final class SoftwareChip implements NfcAccessNegotiator.Chip {
+        static final long APDU_MS = 30;
+
+        private final Models.MRZKeys password;
+        private final byte[] cardAccess;
+        boolean bacAllowed;
+        boolean paceMappingSupported = true;
+        boolean selectedAfterPace;
+        int bacRuns;
+        int paceRuns;
+        long elapsedMs;
+
+        private SoftwareChip(Models.MRZKeys password, byte[] cardAccess, boolean bacAllowed) {
+            this.password = password;
+            this.cardAccess = cardAccess;
+            this.bacAllowed = bacAllowed;
+        }
+
+        static SoftwareChip paceOnly(Models.MRZKeys password) {
+            byte[] cardAccess = new CardAccessFile(Collections.<SecurityInfo>singletonList(new PACEInfo(
+                    SecurityInfo.ID_PACE_ECDH_GM_AES_CBC_CMAC_128, 2, PACEInfo.PARAM_ID_ECP_BRAINPOOL_P256_R1)))
+                    .getEncoded();
+            return new SoftwareChip(password, cardAccess, false);
+        }
+
+        static SoftwareChip bacOnly(Models.MRZKeys password) {
+            return new SoftwareChip(password, null, true);
+        }
+
+        @Override
+        public byte[] readCardAccess() throws Exception {
+            elapsedMs += APDU_MS;
+            if (cardAccess == null) {
+                throw new CardServiceException("File not found: SW = 0x6A82", 0x6A82);
+            }
+            elapsedMs += APDU_MS;
+            return cardAccess;
+        }
+
+        @Override
+        public void selectApplet(boolean afterPace) {
+            elapsedMs += APDU_MS;
+            selectedAfterPace = afterPace;
+        }
+
+        @Override
+        public void doPace(Models.MRZKeys keys, PACEInfo info) throws Exception {
+            paceRuns++;
+            elapsedMs += APDU_MS;
+            if (!paceMappingSupported) {
+                throw new CardServiceException("MSE:Set AT failed: SW = 0x6A80", 0x6A80);
+            }
+            elapsedMs += 4 * APDU_MS;
+            if (!matches(keys)) {
+                throw new CardServiceException("Mutual authentication failed: SW = 0x63C2", 0x63C2);
+            }
+        }
+
+        @Override
+        public void doBac(Models.MRZKeys keys) throws Exception {
+            bacRuns++;
+            elapsedMs += APDU_MS;
+            if (!bacAllowed) {
+                throw new CardServiceException("Get challenge failed: SW = 0x6985", 0x6985);
+            }
+            elapsedMs += APDU_MS;
+            if (!matches(keys)) {
+                throw new CardServiceException("Mutual authentication failed: SW = 0x6300", 0x6300);
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        private boolean matches(Models.MRZKeys keys) {
+            List<String> expected = Arrays.asList(password.document_number, password.date_of_birth, password.date_of_expiry);
+            return expected.equals(Arrays.asList(keys.document_number, keys.date_of_birth, keys.date_of_expiry));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class NfcChipProfilesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void blockSizes_fitTransceiveLimit() {
+        assertArrayEquals(new int[] {223}, NfcChipProfiles.blockSizes(256));
+        assertArrayEquals(new int[] {1024, 223}, NfcChipProfiles.blockSizes(1100));
+        assertArrayEquals(new int[] {8192, 4096, 2048, 1024, 223}, NfcChipProfiles.blockSizes(65279));
+    }
+
+    @Test
+    public void key_combinesHistoricalBytesAndIssuingState() {
+        assertEquals("8031B0/UTO", NfcChipProfiles.key(new byte[] {(byte) 0x80, 0x31, (byte) 0xB0}, "UTO"));
+        assertEquals("-/-", NfcChipProfiles.key(null, ""));
+    }
+
+    @Test
+    public void learnedSizeIsAppliedAndSurvivesReload() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), NfcChipProfiles.FILE_NAME);
+        NfcChipProfiles profiles = new NfcChipProfiles(file);
+        String key = NfcChipProfiles.key(new byte[] {0x01, 0x02}, "UTO");
+
+        assertArrayEquals(NfcChipProfiles.blockSizes(65279), profiles.blockSizesFor(key, 65279));
+        profiles.put(key, 2048);
+
+        NfcChipProfiles reloaded = new NfcChipProfiles(file);
+        assertEquals(Integer.valueOf(2048), reloaded.get(key));
+        assertArrayEquals(new int[] {2048, 1024, 223}, reloaded.blockSizesFor(key, 65279));
+        // A phone with a smaller transceive limit still starts within its own ladder.
+        assertArrayEquals(new int[] {1024, 223}, reloaded.blockSizesFor(key, 1100));
+        assertNull(reloaded.get("-/D"));
+    }
+
+    @Test
+    public void failedSizeMakesTheNextReadStartBelowIt() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), NfcChipProfiles.FILE_NAME);
+        NfcChipProfiles profiles = new NfcChipProfiles(file);
+        String key = NfcChipProfiles.key(new byte[] {0x01, 0x02}, "UTO");
+
+        profiles.putFailed(key, 8192);
+        assertArrayEquals(new int[] {4096, 2048, 1024, 223}, profiles.blockSizesFor(key, 65279));
+        // A failure above the stored size changes nothing; the smallest size has nothing below it.
+        profiles.putFailed(key, 8192);
+        profiles.putFailed(key, 223);
+        assertEquals(Integer.valueOf(4096), profiles.get(key));
+
+        profiles.putFailed(key, 4096);
+        assertEquals(Integer.valueOf(2048), new NfcChipProfiles(file).get(key));
+    }
+
+    @Test
+    public void damagedLinesAreSkipped() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), NfcChipProfiles.FILE_NAME);
+        Files.write(file.toPath(), "0102/UTO=4096\ngarbage\n0304/D=abc\n".getBytes(StandardCharsets.UTF_8));
+
+        NfcChipProfiles profiles = new NfcChipProfiles(file);
+
+        assertEquals(Integer.valueOf(4096), profiles.get("0102/UTO"));
+        assertNull(profiles.get("0304/D"));
+    }
+}
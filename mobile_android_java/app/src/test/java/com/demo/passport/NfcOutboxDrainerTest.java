@@ -0,0 +1,134 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NfcOutboxDrainerTest {
+    private static final String NFC_SCAN_JSON =
+            "{\"scan_id\":\"scan-1\",\"face_image_url\":\"/api/nfc/scan-1/face.jpg\",\"passport\":{\"doc\":\"x\"}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicBoolean outage = new AtomicBoolean(true);
+    private final List<String> uploadedDocuments = new CopyOnWriteArrayList<>();
+    private final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+    private MockWebServer server;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!request.getPath().endsWith("/nfc")) {
+                    return new MockResponse().setResponseCode(200);
+                }
+                idempotencyKeys.add(request.getHeader(EndpointPolicy.IDEMPOTENCY_KEY_HEADER));
+                if (outage.get()) {
+                    return new MockResponse().setResponseCode(503).setBody("maintenance");
+                }
+                JsonObject payload = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject();
+                uploadedDocuments.add(payload.getAsJsonObject("mrz_keys").get("document_number").getAsString());
+                return new MockResponse().setResponseCode(200).setBody(NFC_SCAN_JSON);
+            }
+        });
+        server.start();
+        BackendConfig.setBaseUrlForTesting(server.url("").toString().replaceAll("/$", ""));
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        BackendConfig.setBaseUrlForTesting(BackendConfig.DEFAULT_BASE_URL);
+        BackendApi.resetErrorReporterForTesting();
+        server.shutdown();
+    }
+
+    @Test
+    public void drain_keepsScansThroughOutageAndUploadsThemAfterRecovery() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+        NfcOutbox outbox = new NfcOutbox(dir, key);
+        outbox.append(NfcOutboxTest.scan("AB123456", 1), "key-1", System.currentTimeMillis());
+        outbox.append(NfcOutboxTest.scan("CD654321", 2), "key-2", System.currentTimeMillis());
+        NfcOutboxDrainer drainer = new NfcOutboxDrainer(outbox, BackendApi::sendNfcRawAndParse, executor);
+
+        assertFalse(drainer.drainOnce());
+        assertEquals(2, outbox.size());
+        assertTrue(uploadedDocuments.isEmpty());
+
+        // Process restart during the outage: the queue is read back from disk.
+        NfcOutbox reopened = new NfcOutbox(dir, key);
+        NfcOutboxDrainer restarted = new NfcOutboxDrainer(reopened, BackendApi::sendNfcRawAndParse, executor);
+        outage.set(false);
+        restarted.requestDrain();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (reopened.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, reopened.size());
+        assertEquals(2, uploadedDocuments.size());
+        assertTrue(uploadedDocuments.contains("AB123456"));
+        assertTrue(uploadedDocuments.contains("CD654321"));
+        assertFalse(new File(dir, "entries.log").exists());
+        // Every attempt, before and after the restart, carried the key stored with its scan.
+        assertFalse(idempotencyKeys.isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList("key-1", "key-2")), new HashSet<>(idempotencyKeys));
+    }
+
+    @Test
+    public void failure_isTransientOnlyWithoutResponseOrForRetryableStatus() {
+        assertTrue(new BackendApi.Failure("HTTP failure: timeout", BackendApi.Failure.NO_RESPONSE).isTransient());
+        assertTrue(new BackendApi.Failure("HTTP 503: maintenance", 503).isTransient());
+        assertTrue(new BackendApi.Failure("HTTP 429: slow down", 429).isTransient());
+        assertTrue(new BackendApi.Failure("HTTP 408", 408).isTransient());
+        assertFalse(new BackendApi.Failure("HTTP 400: bad nfc", 400).isTransient());
+        assertFalse(new BackendApi.Failure("NFC_ERROR: missing response fields", 200).isTransient());
+    }
+
+    @Test
+    public void drain_keepsScansAfterTransientOrUntypedFailure() throws Exception {
+        NfcOutbox outbox = new NfcOutbox(temporaryFolder.newFolder("outbox"), new SecretKeySpec(new byte[32], "AES"));
+        outbox.append(NfcOutboxTest.scan("AB123456", 1), "key-1", System.currentTimeMillis());
+        outbox.append(NfcOutboxTest.scan("CD654321", 2), "key-2", System.currentTimeMillis());
+        NfcOutboxDrainer drainer = new NfcOutboxDrainer(outbox, (result, key, cb) -> {
+            if ("key-1".equals(key)) {
+                cb.onFailure(new BackendApi.Failure("HTTP 503: maintenance", 503));
+            } else {
+                cb.onError("HTTP 400: no status attached");
+            }
+        }, executor);
+
+        assertFalse(drainer.drainOnce());
+
+        assertEquals(2, outbox.size());
+    }
+}
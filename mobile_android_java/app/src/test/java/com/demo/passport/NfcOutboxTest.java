@@ -0,0 +1,122 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NfcOutboxTest {
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void append_survivesReopenAndRoundTripsScan() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        NfcOutbox outbox = new NfcOutbox(dir, KEY);
+        outbox.append(scan("AB123456", 1), "key-1", 1_000);
+        outbox.append(scan("CD654321", 2), "key-2", 2_000);
+
+        NfcOutbox reopened = new NfcOutbox(dir, KEY);
+
+        assertEquals(2, reopened.size());
+        assertEquals(4_000, reopened.oldestAgeMs(5_000));
+        List<NfcOutbox.Entry> entries = reopened.peek(10);
+        assertEquals(2, entries.size());
+        assertEquals("AB123456", entries.get(0).result.mrzKeys.document_number);
+        assertEquals("900101", entries.get(0).result.mrzKeys.date_of_birth);
+        assertArrayEquals(scan("AB123456", 1).dg2Raw, entries.get(0).result.dg2Raw);
+        assertEquals("key-1", entries.get(0).idempotencyKey);
+        assertEquals("CD654321", entries.get(1).result.mrzKeys.document_number);
+    }
+
+    @Test
+    public void append_encryptsChipDataAtRest() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        new NfcOutbox(dir, KEY).append(scan("AB123456", 1), "key-1", 1_000);
+
+        String stored = new String(
+                Files.readAllBytes(new File(dir, "entries.log").toPath()), StandardCharsets.ISO_8859_1);
+
+        assertFalse(stored.contains("AB123456"));
+        assertFalse(stored.contains(new String(scan("AB123456", 1).dg1Raw, StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void ack_isPersistedAndEmptyOutboxDeletesJournals() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        NfcOutbox outbox = new NfcOutbox(dir, KEY);
+        long first = outbox.append(scan("AB123456", 1), "key-1", 1_000);
+        long second = outbox.append(scan("CD654321", 2), "key-2", 2_000);
+
+        outbox.ack(first);
+        NfcOutbox reopened = new NfcOutbox(dir, KEY);
+        assertEquals(1, reopened.size());
+        assertEquals("CD654321", reopened.peek(10).get(0).result.mrzKeys.document_number);
+
+        reopened.ack(second);
+        assertEquals(0, reopened.size());
+        assertFalse(new File(dir, "entries.log").exists());
+        assertFalse(new File(dir, "acked.log").exists());
+    }
+
+    @Test
+    public void open_truncatesTornTailRecord() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        new NfcOutbox(dir, KEY).append(scan("AB123456", 1), "key-1", 1_000);
+        File entries = new File(dir, "entries.log");
+        long intactLength = entries.length();
+        new NfcOutbox(dir, KEY).append(scan("CD654321", 2), "key-2", 2_000);
+        try (RandomAccessFile file = new RandomAccessFile(entries, "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        NfcOutbox reopened = new NfcOutbox(dir, KEY);
+
+        assertEquals(1, reopened.size());
+        assertEquals(intactLength, entries.length());
+        reopened.append(scan("EF000000", 3), "key-3", 3_000);
+        assertEquals(2, new NfcOutbox(dir, KEY).size());
+    }
+
+    @Test
+    public void open_dropsRecordsThatNoLongerDecrypt() throws Exception {
+        File dir = temporaryFolder.newFolder("outbox");
+        new NfcOutbox(dir, KEY).append(scan("AB123456", 1), "key-1", 1_000);
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+
+        NfcOutbox reopened = new NfcOutbox(dir, new SecretKeySpec(otherKey, "AES"));
+
+        assertEquals(0, reopened.size());
+        assertTrue(reopened.peek(10).isEmpty());
+    }
+
+    static Models.NfcRawResult scan(String documentNumber, int seed) {
+        Models.NfcRawResult raw = new Models.NfcRawResult();
+        raw.dg1Raw = ("P<UTO" + documentNumber + "<<<<<<<<<<<<<<<<<<<<<").getBytes(StandardCharsets.US_ASCII);
+        raw.dg2Raw = new byte[4 * NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES];
+        for (int i = 0; i < raw.dg2Raw.length; i++) {
+            raw.dg2Raw[i] = (byte) (i * 31 + seed);
+        }
+        raw.mrzKeys = new Models.MRZKeys();
+        raw.mrzKeys.document_number = documentNumber;
+        raw.mrzKeys.date_of_birth = "900101";
+        raw.mrzKeys.date_of_expiry = "300101";
+        return raw;
+    }
+}
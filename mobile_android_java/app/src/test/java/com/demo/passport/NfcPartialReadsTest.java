@@ -0,0 +1,69 @@
+package com.demo.passport;
+
+import static com.demo.passport.NfcTestFixtures.DG1;
+import static com.demo.passport.NfcTestFixtures.OTHER_DG1;
+import static com.demo.passport.NfcTestFixtures.keys;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class NfcPartialReadsTest {
+    private final NfcTestFixtures.Clock clock = new NfcTestFixtures.Clock();
+    private final NfcPartialReads partialReads = new NfcPartialReads(clock);
+
+    @Test
+    public void sameDocumentWithinWindowGetsItsProgressBack() {
+        NfcPassportReader.PartialFile progress = progress(12000);
+        partialReads.save(keys("L898902C3"), DG1, progress);
+        clock.nowMs += NfcPartialReads.RESUME_WINDOW_MS;
+
+        assertFalse(partialReads.has(keys("L8989O2C3")));
+        assertTrue(partialReads.has(keys("L898902C3")));
+        assertSame(progress, partialReads.take(keys("L898902C3"), DG1.clone()));
+        assertEquals(12000, progress.offset);
+        // Taken once; a second failure saves it again.
+        assertNull(partialReads.take(keys("L898902C3"), DG1));
+    }
+
+    @Test
+    public void expiredProgressIsWiped() {
+        NfcPassportReader.PartialFile progress = progress(12000);
+        partialReads.save(keys("L898902C3"), DG1, progress);
+        clock.nowMs += NfcPartialReads.RESUME_WINDOW_MS + 1;
+
+        assertNull(partialReads.take(keys("L898902C3"), DG1));
+        assertNull(progress.file);
+    }
+
+    @Test
+    public void differentDg1DiscardsAndWipesProgress() {
+        NfcPassportReader.PartialFile progress = progress(12000);
+        byte[] file = progress.file;
+        partialReads.save(keys("L898902C3"), DG1, progress);
+
+        assertNull(partialReads.take(keys("L898902C3"), OTHER_DG1));
+        assertEquals(0, file[100]);
+    }
+
+    @Test
+    public void emptyOrCompleteProgressIsNotKept() {
+        partialReads.save(keys("L898902C3"), DG1, new NfcPassportReader.PartialFile());
+        partialReads.save(keys("L898902C3"), DG1, progress(30004));
+
+        assertFalse(partialReads.has(keys("L898902C3")));
+    }
+
+    private static NfcPassportReader.PartialFile progress(int offset) {
+        NfcPassportReader.PartialFile progress = new NfcPassportReader.PartialFile();
+        progress.file = new byte[30004];
+        Arrays.fill(progress.file, (byte) 7);
+        progress.offset = offset;
+        return progress;
+    }
+}
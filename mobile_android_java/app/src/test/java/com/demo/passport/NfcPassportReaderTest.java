@@ -1,13 +1,25 @@
 package com.demo.passport;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class NfcPassportReaderTest {
 
     @Test
@@ -22,6 +34,270 @@ public class NfcPassportReaderTest {
         assertEquals("input_validation", result.errorStage);
     }
 
+    @Test
+    public void distinctCandidates_dropsRepeatsAndRespectsCap() {
+        Models.MRZKeys first = keys("1234567");
+        Models.MRZKeys repeat = keys("1234567");
+        Models.MRZKeys second = keys("1234568");
+        Models.MRZKeys third = keys("1234569");
+
+        List<Models.MRZKeys> distinct = NfcPassportReader.distinctCandidates(
+                Arrays.asList(first, null, repeat, second, third), 2);
+
+        assertEquals(Arrays.asList(first, second), distinct);
+        assertEquals(1, NfcPassportReader.distinctCandidates(Arrays.asList(first, second), 0).size());
+        assertTrue(NfcPassportReader.distinctCandidates(null, 3).isEmpty());
+    }
+
+    @Test
+    public void readWithStepDown_renewsTheSessionBeforeEachSmallerBlock() throws Exception {
+        List<String> calls = new ArrayList<>();
+        int[] session = {0};
+        NfcPassportReader.BlockReader[] reader = new NfcPassportReader.BlockReader[1];
+        reader[0] = blockSize -> {
+            calls.add("read " + blockSize + " in session " + session[0]);
+            if (blockSize > 1024) {
+                throw new Exception("Wrong length: SW = 0x6700");
+            }
+            return new byte[] {1, 2, 3};
+        };
+
+        NfcPassportReader.BlockRead read = NfcPassportReader.readWithStepDown(reader[0],
+                new int[] {4096, 2048, 1024, 223}, () -> true, failedBlockSize -> {
+                    session[0]++;
+                    calls.add("renew after " + failedBlockSize);
+                    return reader[0];
+                });
+
+        assertEquals(1024, read.blockSize);
+        assertEquals(Arrays.asList("read 4096 in session 0", "renew after 4096", "read 2048 in session 1",
+                "renew after 2048", "read 1024 in session 2"), calls);
+    }
+
+    @Test
+    public void readWithStepDown_keepsTheReadErrorWhenRenewalFails() {
+        List<Integer> tried = new ArrayList<>();
+        try {
+            NfcPassportReader.readWithStepDown(blockSize -> {
+                tried.add(blockSize);
+                throw new Exception("Wrong length: SW = 0x6700");
+            }, new int[] {4096, 223}, () -> true, failedBlockSize -> {
+                throw new IOException("Access denied");
+            });
+            fail();
+        } catch (Exception e) {
+            assertEquals("6700", NfcPassportReader.extractSwCode(e));
+        }
+        assertEquals(Arrays.asList(4096), tried);
+    }
+
+    @Test
+    public void readWithStepDown_stopsWhenTagIsLost() {
+        List<Integer> tried = new ArrayList<>();
+        try {
+            NfcPassportReader.readWithStepDown(blockSize -> {
+                tried.add(blockSize);
+                throw new Exception("Tag was lost");
+            }, new int[] {4096, 223}, () -> false, failedBlockSize -> {
+                throw new AssertionError("renewed after the tag was lost");
+            });
+            fail();
+        } catch (Exception e) {
+            assertEquals("Tag was lost", e.getMessage());
+        }
+        assertEquals(Arrays.asList(4096), tried);
+    }
+
+    @Test
+    public void readWithReconnects_continuesWithTheReconnectedReader() throws Exception {
+        boolean[] connected = {true};
+        int[] reconnects = {0};
+        NfcPassportReader.BlockRead read = NfcPassportReader.readWithReconnects(blockSize -> {
+            connected[0] = false;
+            throw new IOException("Tag was lost");
+        }, new int[] {4096, 223}, () -> connected[0], () -> {
+            reconnects[0]++;
+            if (reconnects[0] == 1) {
+                throw new IOException("Tag is out of date");
+            }
+            connected[0] = true;
+            return blockSize -> new byte[] {1, 2, 3};
+        }, NfcPassportReaderTest::noStepDown, 2);
+
+        assertEquals(2, reconnects[0]);
+        assertEquals(4096, read.blockSize);
+    }
+
+    @Test
+    public void readWithReconnects_keepsTheReadErrorWhenTheTagStaysAway() {
+        int[] reconnects = {0};
+        try {
+            NfcPassportReader.readWithReconnects(blockSize -> {
+                throw new IOException("Tag was lost");
+            }, new int[] {223}, () -> false, () -> {
+                reconnects[0]++;
+                throw new IOException("Tag is out of date");
+            }, NfcPassportReaderTest::noStepDown, 2);
+            fail();
+        } catch (Exception e) {
+            assertEquals("Tag was lost", e.getMessage());
+        }
+        assertEquals(2, reconnects[0]);
+    }
+
+    @Test
+    public void readWithReconnects_doesNotReconnectOnChipErrors() {
+        try {
+            NfcPassportReader.readWithReconnects(blockSize -> {
+                throw new Exception("Security status not satisfied: SW = 0x6982");
+            }, new int[] {223}, () -> true, () -> {
+                throw new AssertionError("reconnected while the tag was present");
+            }, NfcPassportReaderTest::noStepDown, 2);
+            fail();
+        } catch (Exception e) {
+            assertEquals("6982", NfcPassportReader.extractSwCode(e));
+        }
+    }
+
+    @Test
+    public void readDataGroup_continuesFromSavedOffset() throws Exception {
+        byte[] dg2 = tlv(new byte[] {0x75}, 30000);
+        NfcPassportReader.PartialFile progress = new NfcPassportReader.PartialFile();
+        try {
+            NfcPassportReader.readDataGroup(new DroppingInputStream(dg2, 12000), progress);
+            fail();
+        } catch (IOException e) {
+            assertEquals(12000, progress.offset);
+        }
+
+        DroppingInputStream retap = new DroppingInputStream(dg2, Integer.MAX_VALUE);
+        byte[] read = NfcPassportReader.readDataGroup(retap, progress);
+
+        assertArrayEquals(dg2, read);
+        // Only the header is read again before the skip; READ BINARY resumes at the saved offset.
+        assertEquals(dg2.length - 12000 + 4, retap.delivered);
+    }
+
+    @Test
+    public void readDataGroup_startsOverForADifferentFile() throws Exception {
+        NfcPassportReader.PartialFile progress = new NfcPassportReader.PartialFile();
+        try {
+            NfcPassportReader.readDataGroup(new DroppingInputStream(tlv(new byte[] {0x75}, 30000), 500), progress);
+            fail();
+        } catch (IOException expected) {
+        }
+        byte[] other = tlv(new byte[] {0x75}, 20000);
+
+        assertArrayEquals(other, NfcPassportReader.readDataGroup(new ByteArrayInputStream(other), progress));
+    }
+
+    /** Serves a file until {@code dropAfter} bytes were delivered, then fails like a lost tag. */
+    private static final class DroppingInputStream extends InputStream {
+        private final byte[] file;
+        private final int dropAfter;
+        private int position;
+        int delivered;
+
+        DroppingInputStream(byte[] file, int dropAfter) {
+            this.file = file;
+            this.dropAfter = dropAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (delivered == dropAfter) {
+                throw new IOException("Tag was lost");
+            }
+            if (position == file.length) {
+                return -1;
+            }
+            delivered++;
+            return file[position++] & 0xFF;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.min(n, file.length - position);
+            position += (int) skipped;
+            return skipped;
+        }
+    }
+
+    @Test
+    public void readDataGroup_sizesArrayFromTlvHeader() throws Exception {
+        byte[] dg1 = tlv(new byte[] {0x61}, 93);
+        byte[] dg2 = tlv(new byte[] {0x75}, 30000);
+        byte[] dg11 = tlv(new byte[] {0x6B}, 300);
+
+        assertArrayEquals(dg1, NfcPassportReader.readDataGroup(new ByteArrayInputStream(dg1)));
+        assertArrayEquals(dg2, NfcPassportReader.readDataGroup(new ByteArrayInputStream(dg2)));
+        assertArrayEquals(dg11, NfcPassportReader.readDataGroup(new ByteArrayInputStream(dg11)));
+        // Bytes after the TLV are not part of the file.
+        byte[] trailing = Arrays.copyOf(dg1, dg1.length + 5);
+        assertEquals(dg1.length, NfcPassportReader.readDataGroup(new ByteArrayInputStream(trailing)).length);
+    }
+
+    @Test(expected = EOFException.class)
+    public void readDataGroup_rejectsTruncatedFile() throws Exception {
+        byte[] dg2 = tlv(new byte[] {0x75}, 30000);
+        NfcPassportReader.readDataGroup(new ByteArrayInputStream(Arrays.copyOf(dg2, 20000)));
+    }
+
+    @Test
+    public void readDataGroup_allocatesTheFileOnceInsteadOfGrowingACopy() throws Exception {
+        byte[] dg2 = tlv(new byte[] {0x75}, 40000);
+        for (int i = 0; i < 20; i++) {
+            NfcPassportReader.readDataGroup(new ByteArrayInputStream(dg2));
+            readThroughGrowingBuffer(new ByteArrayInputStream(dg2));
+        }
+
+        long before = allocatedBytes();
+        NfcPassportReader.readDataGroup(new ByteArrayInputStream(dg2));
+        long exact = allocatedBytes() - before;
+        before = allocatedBytes();
+        readThroughGrowingBuffer(new ByteArrayInputStream(dg2));
+        long growing = allocatedBytes() - before;
+
+        // One array of the file size (plus headers), against the chunk buffer, every doubling and the final copy.
+        assertTrue("exact " + exact, exact < dg2.length + 1024);
+        assertTrue("growing " + growing + " vs exact " + exact, growing > 3 * exact);
+    }
+
+    /** The previous readAllBytes: 4 KB chunks into a ByteArrayOutputStream, then toByteArray(). */
+    private static byte[] readThroughGrowingBuffer(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static byte[] tlv(byte[] tag, int valueLength) {
+        byte[] length;
+        if (valueLength < 0x80) {
+            length = new byte[] {(byte) valueLength};
+        } else if (valueLength < 0x100) {
+            length = new byte[] {(byte) 0x81, (byte) valueLength};
+        } else {
+            length = new byte[] {(byte) 0x82, (byte) (valueLength >> 8), (byte) valueLength};
+        }
+        byte[] file = new byte[tag.length + length.length + valueLength];
+        System.arraycopy(tag, 0, file, 0, tag.length);
+        System.arraycopy(length, 0, file, tag.length, length.length);
+        for (int i = tag.length + length.length; i < file.length; i++) {
+            file[i] = (byte) (i * 31);
+        }
+        return file;
+    }
+
     @Test
     public void readPassportRaw_returnsErrorWhenTagMissing() {
         Models.MRZKeys keys = new Models.MRZKeys();
@@ -127,4 +403,16 @@ public class NfcPassportReaderTest {
         Exception wrapperWithNullMsg = new Exception(null, cause);
         assertEquals("6985", NfcPassportReader.extractSwCode(wrapperWithNullMsg));
     }
+
+    private static Models.MRZKeys keys(String documentNumber) {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = documentNumber;
+        keys.date_of_birth = "900101";
+        keys.date_of_expiry = "300101";
+        return keys;
+    }
+
+    private static NfcPassportReader.BlockReader noStepDown(int failedBlockSize) {
+        throw new AssertionError("stepped down after " + failedBlockSize);
+    }
 }
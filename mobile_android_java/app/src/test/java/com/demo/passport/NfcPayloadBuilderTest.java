@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 
 import com.google.gson.JsonObject;
 
+import okhttp3.MultipartBody;
+import okio.Buffer;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
@@ -112,6 +114,37 @@ public class NfcPayloadBuilderTest {
         assertEquals("300101", mrzKeys.get("date_of_expiry").getAsString());
     }
 
+    @Test
+    public void buildRawMultipart_sendsDataGroupsAsBinaryParts() throws Exception {
+        Models.NfcRawResult result = new Models.NfcRawResult();
+        result.dg1Raw = new byte[NfcPayloadBuilder.MIN_DG1_BYTES];
+        result.dg2Raw = new byte[NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES];
+        result.mrzKeys = new Models.MRZKeys();
+        result.mrzKeys.document_number = "AB123456";
+        result.mrzKeys.date_of_birth = "900101";
+        result.mrzKeys.date_of_expiry = "300101";
+
+        MultipartBody body = NfcPayloadBuilder.buildRawMultipart(result);
+
+        assertEquals(4, body.size());
+        assertEquals("application/octet-stream", body.part(0).body().contentType().toString());
+        assertEquals(result.dg1Raw.length, body.part(0).body().contentLength());
+        assertEquals(result.dg2Raw.length, body.part(1).body().contentLength());
+        assertEquals("application/json; charset=utf-8", body.part(2).body().contentType().toString());
+        Buffer mrzKeys = new Buffer();
+        body.part(2).body().writeTo(mrzKeys);
+        assertEquals("{\"document_number\":\"AB123456\",\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\"}",
+                mrzKeys.readUtf8());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildRawMultipart_throwsWhenMrzKeysMissing() {
+        Models.NfcRawResult result = new Models.NfcRawResult();
+        result.dg1Raw = new byte[NfcPayloadBuilder.MIN_DG1_BYTES];
+        result.dg2Raw = new byte[NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES];
+        NfcPayloadBuilder.buildRawMultipart(result);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void buildRaw_throwsWhenResultMissing() {
         NfcPayloadBuilder.buildRaw(null);
@@ -0,0 +1,131 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import okio.Buffer;
+
+public class NfcRawRequestBodyTest {
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void writeTo_matchesGsonOutputForEveryPaddingLength() throws Exception {
+        int[] dg2Sizes = {
+                NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES,
+                NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES + 1,
+                NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES + 2,
+                NfcRawRequestBody.CHUNK_BYTES,
+                NfcRawRequestBody.CHUNK_BYTES * 20 + 7
+        };
+        for (int dg2Size : dg2Sizes) {
+            Models.NfcRawResult result = rawResult(NfcPayloadBuilder.MIN_DG1_BYTES + dg2Size % 3, dg2Size);
+
+            assertStreamedEqualsTree(result);
+        }
+    }
+
+    @Test
+    public void writeTo_escapesMrzStringsLikeGson() throws Exception {
+        Models.NfcRawResult result = rawResult(NfcPayloadBuilder.MIN_DG1_BYTES, NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES);
+        result.mrzKeys.document_number = "AB<12\"3&'=\\ё\n";
+
+        assertStreamedEqualsTree(result);
+    }
+
+    @Test
+    public void writeTo_omitsNullMrzFieldsLikeGson() throws Exception {
+        Models.NfcRawResult result = rawResult(NfcPayloadBuilder.MIN_DG1_BYTES, NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES);
+        result.mrzKeys.date_of_birth = null;
+
+        assertStreamedEqualsTree(result);
+    }
+
+    @Test
+    public void contentType_matchesStringBody() {
+        Models.NfcRawResult result = rawResult(NfcPayloadBuilder.MIN_DG1_BYTES, NfcPayloadBuilder.MIN_FACE_IMAGE_BYTES);
+
+        assertEquals("application/json; charset=utf-8",
+                NfcPayloadBuilder.buildRawBody(result).contentType().toString());
+    }
+
+    @Test
+    public void encodedLength_countsEscapedPadding() {
+        assertEquals(0, NfcRawRequestBody.encodedLength(0));
+        assertEquals(2 + 12, NfcRawRequestBody.encodedLength(1));
+        assertEquals(3 + 6, NfcRawRequestBody.encodedLength(2));
+        assertEquals(4, NfcRawRequestBody.encodedLength(3));
+    }
+
+    private static void assertStreamedEqualsTree(Models.NfcRawResult result) throws Exception {
+        String expected = GSON.toJson(NfcPayloadBuilder.buildRaw(result));
+        NfcRawRequestBody body = new NfcRawRequestBody(result);
+        Buffer streamed = new Buffer();
+
+        body.writeTo(streamed);
+
+        assertEquals(expected.getBytes("UTF-8").length, body.contentLength());
+        assertEquals(expected, streamed.readUtf8());
+    }
+
+    private static Models.NfcRawResult rawResult(int dg1Size, int dg2Size) {
+        Models.NfcRawResult result = new Models.NfcRawResult();
+        result.dg1Raw = new byte[dg1Size];
+        result.dg2Raw = new byte[dg2Size];
+        for (int i = 0; i < dg2Size; i++) {
+            result.dg2Raw[i] = (byte) (i * 131 + 7);
+        }
+        for (int i = 0; i < dg1Size; i++) {
+            result.dg1Raw[i] = (byte) (0xF0 + i);
+        }
+        result.mrzKeys = new Models.MRZKeys();
+        result.mrzKeys.document_number = "AB123456";
+        result.mrzKeys.date_of_birth = "900101";
+        result.mrzKeys.date_of_expiry = "300101";
+        return result;
+    }
+
+    @Test
+    public void encodeUnpadded_matchesJdkBase64ForAnyTail() {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 37 + 11);
+        }
+        byte[] output = new byte[200];
+        for (int length = 0; length <= 10; length++) {
+            int written = NfcRawRequestBody.encodeUnpadded(data, 5, length, output);
+
+            String expected = Base64.getEncoder().withoutPadding()
+                    .encodeToString(Arrays.copyOfRange(data, 5, 5 + length));
+            assertEquals(expected, new String(output, 0, written, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void writeTo_reusesPooledOutputAndDoesNotCopyTheFace() throws Exception {
+        Models.NfcRawResult result = rawResult(NfcPayloadBuilder.MIN_DG1_BYTES, 40000);
+        for (int i = 0; i < 20; i++) {
+            NfcPayloadBuilder.buildRawBody(result).writeTo(new Buffer());
+        }
+        long pooled = NfcRawRequestBody.OUTPUT_BUFFERS.allocations();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Buffer sink = new Buffer();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        NfcPayloadBuilder.buildRawBody(result).writeTo(sink);
+
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        assertEquals(pooled, NfcRawRequestBody.OUTPUT_BUFFERS.allocations());
+        // Only okio segments for the encoded output; the previous encoder also copied every input chunk.
+        assertTrue("allocated " + allocated, allocated < sink.size() + 16 * 1024);
+    }
+}
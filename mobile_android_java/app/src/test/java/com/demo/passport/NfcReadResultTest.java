@@ -29,6 +29,20 @@ public class NfcReadResultTest {
         assertNull(result.technicalMessage);
     }
 
+    @Test
+    public void withAccess_keepsStatusAndAddsCounters() {
+        NfcReadResult result = NfcReadResult.error(NfcReadStatus.BAC_FAILED, "bac_authentication", "6300", "x")
+                .withAccess(null, true, 3, -1);
+
+        assertEquals(NfcReadStatus.BAC_FAILED, result.status);
+        assertEquals("6300", result.swCode);
+        assertNull(result.accessMethod);
+        assertTrue(result.paceSupported);
+        assertEquals(3, result.accessAttempts);
+        assertEquals(-1, result.accessCandidateIndex);
+        assertEquals(0, NfcReadResult.error(NfcReadStatus.BAC_FAILED).accessAttempts);
+    }
+
     @Test
     public void error_createsFailedResult() {
         NfcReadResult result = NfcReadResult.error(
@@ -0,0 +1,88 @@
+package com.demo.passport;
+
+import static com.demo.passport.NfcTestFixtures.DG1;
+import static com.demo.passport.NfcTestFixtures.OTHER_DG1;
+import static com.demo.passport.NfcTestFixtures.keys;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class NfcRetapCacheTest {
+    private static final long TTL_MS = 120_000;
+
+    private final NfcTestFixtures.Clock clock = new NfcTestFixtures.Clock();
+    private final NfcRetapCache cache = new NfcRetapCache(
+            new SecretKeySpec(new byte[32], "AES"), TTL_MS, clock, null);
+
+    @Test
+    public void retapOfTheSameDocumentGetsAFreshCopyOfDg2() {
+        byte[] dg2 = face(30000);
+        cache.put(keys("L898902C3"), DG1, dg2);
+
+        byte[] first = cache.get(keys("L898902C3"), DG1.clone());
+        byte[] second = cache.get(keys("L898902C3"), DG1);
+
+        assertArrayEquals(dg2, first);
+        assertNotSame(first, second);
+        assertNull(cache.get(keys("L8989O2C3"), DG1));
+    }
+
+    @Test
+    public void differentDg1DropsTheEntry() {
+        cache.put(keys("L898902C3"), DG1, face(30000));
+
+        assertNull(cache.get(keys("L898902C3"), OTHER_DG1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void ttlCountsFromTheReadAndIsNotExtendedByHits() {
+        cache.put(keys("L898902C3"), DG1, face(30000));
+        clock.nowMs += TTL_MS - 1;
+        assertNotNull(cache.get(keys("L898902C3"), DG1));
+
+        clock.nowMs += 1;
+        cache.purgeExpired();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(keys("L898902C3"), DG1));
+    }
+
+    @Test
+    public void leastRecentlyUsedDocumentIsEvicted() {
+        for (int i = 0; i < NfcRetapCache.MAX_ENTRIES; i++) {
+            cache.put(keys("DOC00000" + i), DG1, face(1000));
+        }
+        cache.get(keys("DOC000000"), DG1);
+        cache.put(keys("DOC00000X"), DG1, face(1000));
+
+        assertEquals(NfcRetapCache.MAX_ENTRIES, cache.size());
+        assertNotNull(cache.get(keys("DOC000000"), DG1));
+        assertNull(cache.get(keys("DOC000001"), DG1));
+    }
+
+    @Test
+    public void clearWipesEveryEntry() {
+        cache.put(keys("L898902C3"), DG1, face(30000));
+        cache.put(keys("D23145890"), DG1, face(30000));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(keys("L898902C3"), DG1));
+    }
+
+    private static byte[] face(int length) {
+        byte[] face = new byte[length];
+        for (int i = 0; i < length; i++) {
+            face[i] = (byte) (i * 13);
+        }
+        return face;
+    }
+}
@@ -0,0 +1,30 @@
+package com.demo.passport;
+
+import java.util.function.LongSupplier;
+
+/** Documents and a hand-moved clock shared by the tests of the in-memory NFC caches. */
+final class NfcTestFixtures {
+    static final byte[] DG1 = {0x61, 0x03, 0x5F, 0x1F, 0x00};
+    /** DG1 of another document under the same keys. */
+    static final byte[] OTHER_DG1 = {0x61, 0x03, 0x5F, 0x1F, 0x01};
+
+    /** Milliseconds that only move when a test advances them. */
+    static final class Clock implements LongSupplier {
+        long nowMs;
+
+        @Override
+        public long getAsLong() {
+            return nowMs;
+        }
+    }
+
+    static Models.MRZKeys keys(String documentNumber) {
+        Models.MRZKeys keys = new Models.MRZKeys();
+        keys.document_number = documentNumber;
+        keys.date_of_birth = "740812";
+        keys.date_of_expiry = "120415";
+        return keys;
+    }
+
+    private NfcTestFixtures() {}
+}
@@ -42,6 +42,36 @@ public class PhotoCaptureUtilsTest {
         assertThrows(FileNotFoundException.class, () -> PhotoCaptureUtils.readImageBytes(file));
     }
 
+    @Test
+    public void requireImageFile_returnsLengthAboveMinimumSize() throws IOException {
+        File file = temporaryFolder.newFile("photo.jpg");
+        int targetSize = PhotoCaptureUtils.MIN_IMAGE_BYTES + 1;
+        writeBytes(file, targetSize);
+
+        assertEquals(targetSize, PhotoCaptureUtils.requireImageFile(file));
+    }
+
+    @Test
+    public void requireImageFile_rejectsSmallFile() throws IOException {
+        File file = temporaryFolder.newFile("small.jpg");
+        writeBytes(file, 128);
+
+        assertThrows(IllegalArgumentException.class, () -> PhotoCaptureUtils.requireImageFile(file));
+    }
+
+    @Test
+    public void requireImageFile_missingFileThrows() {
+        File file = new File(temporaryFolder.getRoot(), "missing.jpg");
+
+        assertThrows(FileNotFoundException.class, () -> PhotoCaptureUtils.requireImageFile(file));
+    }
+
+    @Test
+    public void requireImageLength_rejectsUnknownLength() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PhotoCaptureUtils.requireImageLength(-1, PhotoCaptureUtils.MIN_IMAGE_BYTES));
+    }
+
     private void writeBytes(File file, int size) throws IOException {
         byte[] buffer = new byte[1024];
         int remaining = size;
@@ -0,0 +1,52 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PhotoPreprocessorTest {
+
+    @Test
+    public void calculateInSampleSize_decodesAtMostTwiceTheTargetPixels() {
+        // 12 MP camera frame, 4000x3000
+        assertEquals(2, PhotoPreprocessor.calculateInSampleSize(4000, 3000, 1600));
+        assertEquals(2, PhotoPreprocessor.calculateInSampleSize(3000, 4000, 1600));
+        assertEquals(4, PhotoPreprocessor.calculateInSampleSize(4000, 3000, 1000));
+    }
+
+    @Test
+    public void calculateInSampleSize_neverDecodesFullFrameForLargestTier() {
+        int target = UploadQualityController.TIERS[0].options.longEdgePx;
+        int sample = PhotoPreprocessor.calculateInSampleSize(4000, 3000, target);
+
+        long decodedBytes = 4L * (4000 / sample) * (3000 / sample);
+        long targetBytes = 4L * target * (target * 3 / 4);
+        assertEquals(2, sample);
+        // 2000x1500 ARGB_8888 is 12 MB instead of 48 MB for the full frame.
+        assertTrue(decodedBytes <= 2 * targetBytes);
+    }
+
+    @Test
+    public void calculateInSampleSize_returnsOneForSmallImages() {
+        assertEquals(1, PhotoPreprocessor.calculateInSampleSize(1200, 900, 1600));
+        assertEquals(1, PhotoPreprocessor.calculateInSampleSize(1600, 1200, 1600));
+    }
+
+    @Test
+    public void targetDimensions_scalesLongEdgePreservingAspect() {
+        assertArrayEquals(new int[] {1600, 1200}, PhotoPreprocessor.targetDimensions(2000, 1500, 1600));
+        assertArrayEquals(new int[] {1200, 1600}, PhotoPreprocessor.targetDimensions(1500, 2000, 1600));
+    }
+
+    @Test
+    public void targetDimensions_neverUpscales() {
+        assertArrayEquals(new int[] {800, 600}, PhotoPreprocessor.targetDimensions(800, 600, 1600));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void options_rejectsInvalidQuality() {
+        new PhotoPreprocessor.Options(1600, 0, false);
+    }
+}
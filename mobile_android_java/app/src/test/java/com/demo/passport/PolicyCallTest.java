@@ -0,0 +1,180 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolicyCallTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(PolicyCall.TIMEOUT_INTERCEPTOR)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void retriesPostThatFailedBeforeItsBodyWasSentWithSameIdempotencyKey() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("ok"));
+        AtomicReference<String> failedKey = new AtomicReference<>();
+        client = client.newBuilder()
+                .addInterceptor(chain -> {
+                    if (failedKey.compareAndSet(null, chain.request().header(EndpointPolicy.IDEMPOTENCY_KEY_HEADER))) {
+                        throw new IOException("Connection reset before the request was written");
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .build();
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 1000, 5000, 2, 10, true, 0);
+
+        Outcome outcome = run(policy, post());
+
+        assertNull(outcome.failure.get());
+        assertEquals("ok", outcome.body.get());
+        RecordedRequest retry = server.takeRequest();
+        assertNotNull(failedKey.get());
+        assertEquals(failedKey.get(), retry.getHeader(EndpointPolicy.IDEMPOTENCY_KEY_HEADER));
+    }
+
+    @Test
+    public void doesNotRetryPostDroppedAfterItsBodyWasSent() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("duplicate"));
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 1000, 5000, 2, 10, true, 0);
+
+        Outcome outcome = run(policy, post());
+
+        // The server may have stored the scan; a second upload would duplicate it.
+        assertNotNull(outcome.failure.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void deliversLastRetriableResponseWhenRetriesRunOut() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("busy 1"));
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("busy 2"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("late"));
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 1000, 5000, 1, 10, true, 0);
+
+        Outcome outcome = run(policy, post());
+
+        assertEquals(503, outcome.code.get());
+        assertEquals("busy 2", outcome.body.get());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void readTimeoutComesFromPolicy() throws Exception {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(2, TimeUnit.SECONDS));
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 200, 5000, 0, 10, true, 0);
+
+        long startedAt = System.nanoTime();
+        Outcome outcome = run(policy, post());
+
+        assertNotNull(outcome.failure.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 1500);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void hedgesSlowGetAfterLatencyPercentile() throws Exception {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(3, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 5000, 10_000, 0, 10, false, 0.95);
+        for (int i = 0; i < EndpointPolicy.MIN_HEDGE_SAMPLES; i++) {
+            policy.latency.record(50);
+        }
+
+        long startedAt = System.nanoTime();
+        Outcome outcome = run(policy, new Request.Builder().url(server.url("/face.jpg")).get().build());
+
+        assertEquals("fast", outcome.body.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 2000);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, outcome.deliveries.get());
+    }
+
+    @Test
+    public void backoffStaysWithinExponentialCeiling() {
+        EndpointPolicy policy = new EndpointPolicy("test", 1000, 1000, 5000, 3, 100, true, 0);
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoffDelayMs(0, random) <= 100);
+            assertTrue(policy.backoffDelayMs(2, random) <= 400);
+            assertTrue(policy.backoffDelayMs(10, random) <= 5000);
+        }
+        assertEquals(-1, policy.hedgeDelayMs());
+    }
+
+    private Request post() {
+        return new Request.Builder()
+                .url(server.url("/nfc"))
+                .post(RequestBody.create("{}", MediaType.parse("application/json")))
+                .build();
+    }
+
+    private Outcome run(EndpointPolicy policy, Request request) throws InterruptedException {
+        Outcome outcome = new Outcome();
+        new PolicyCall(client, policy.prepare(request), policy).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                outcome.failure.set(e);
+                outcome.deliveries.incrementAndGet();
+                outcome.done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                outcome.code.set(response.code());
+                outcome.body.set(response.body().string());
+                outcome.deliveries.incrementAndGet();
+                outcome.done.countDown();
+            }
+        });
+        assertTrue(outcome.done.await(10, TimeUnit.SECONDS));
+        // Give a losing hedge or stray retry the chance to (wrongly) deliver twice.
+        Thread.sleep(100);
+        return outcome;
+    }
+
+    private static final class Outcome {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final AtomicInteger code = new AtomicInteger();
+        final AtomicReference<String> body = new AtomicReference<>();
+        final AtomicInteger deliveries = new AtomicInteger();
+    }
+}
@@ -0,0 +1,105 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class ResponseAdaptersTest {
+    private final Gson gson = ResponseAdapters.register(new GsonBuilder()).create();
+
+    @Test
+    public void recognize_readsNestedAndFlatShapes() {
+        Models.RecognizeResponse nested = read(
+                "{\"mrz\":{\"document_number\":\"123\",\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\","
+                        + "\"extra\":[1,2]},\"document_number\":\"flat\",\"confidence\":0.9}",
+                Models.RecognizeResponse.class);
+        assertEquals("123", nested.mrz.document_number);
+        assertEquals("300101", nested.mrz.date_of_expiry);
+        assertNull(nested.error);
+
+        Models.RecognizeResponse flat = read(
+                "{\"document_number\":987,\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\",\"mrz\":null}",
+                Models.RecognizeResponse.class);
+        assertEquals("987", flat.mrz.document_number);
+    }
+
+    @Test
+    public void recognize_leavesMrzNullWhenNestedFieldsAreMissingAndKeepsError() {
+        Models.RecognizeResponse incomplete = read(
+                "{\"mrz\":{\"document_number\":\"123\",\"date_of_birth\":null},"
+                        + "\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\"}",
+                Models.RecognizeResponse.class);
+        assertNull(incomplete.mrz);
+
+        Models.RecognizeResponse error = read("{\"error\":{\"code\":\"blurry\"}}", Models.RecognizeResponse.class);
+        assertEquals("{\"code\":\"blurry\"}", error.error.toString());
+        assertNull(error.mrz);
+    }
+
+    @Test
+    public void recognize_readsCheckDigitsFromFieldsOrMrzLines() {
+        Models.RecognizeResponse explicit = read(
+                "{\"document_number\":\"L898902C3\",\"document_number_check_digit\":6,"
+                        + "\"date_of_birth\":\"740812\",\"date_of_expiry\":\"120415\"}",
+                Models.RecognizeResponse.class);
+        assertEquals("6", explicit.mrz.document_number_check_digit);
+        assertNull(explicit.mrz.date_of_birth_check_digit);
+
+        Models.RecognizeResponse fromLines = read(
+                "{\"mrz\":{\"lines\":[\"P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\","
+                        + "\"L898902C36UTO7408122F1204159ZE184226B<<<<<10\"],\"date_of_expiry_check_digit\":\"8\","
+                        + "\"document_number\":\"L898902C3\",\"date_of_birth\":\"740812\",\"date_of_expiry\":\"120415\"}}",
+                Models.RecognizeResponse.class);
+        assertEquals("6", fromLines.mrz.document_number_check_digit);
+        assertEquals("2", fromLines.mrz.date_of_birth_check_digit);
+        assertEquals("8", fromLines.mrz.date_of_expiry_check_digit);
+    }
+
+    @Test
+    public void nfcScan_readsFieldsAndKeepsPassportTree() {
+        Models.NfcScanResponse response = read(
+                "{\"scan_id\":\"scan-1\",\"face_image_url\":\"/api/nfc/scan-1/face.jpg\","
+                        + "\"passport\":{\"surname\":\"IVANOV\",\"names\":[\"IVAN\"]},\"timings\":{\"ms\":12}}",
+                Models.NfcScanResponse.class);
+        assertEquals("scan-1", response.scan_id);
+        assertEquals("/api/nfc/scan-1/face.jpg", response.face_image_url);
+        assertEquals("IVANOV", response.passport.get("surname").getAsString());
+
+        Models.NfcScanResponse missing = read("{\"scan_id\":\"scan-2\",\"passport\":[]}", Models.NfcScanResponse.class);
+        assertNull(missing.face_image_url);
+        assertNull(missing.passport);
+    }
+
+    @Test
+    public void write_roundTripsThroughTheSameAdapters() {
+        Models.RecognizeResponse recognize = read(
+                "{\"mrz\":{\"document_number\":\"123\",\"date_of_birth\":\"900101\",\"date_of_expiry\":\"300101\","
+                        + "\"date_of_birth_check_digit\":\"2\"},\"error\":{\"code\":\"blurry\"}}",
+                Models.RecognizeResponse.class);
+        Models.RecognizeResponse recognizeAgain = read(gson.toJson(recognize), Models.RecognizeResponse.class);
+        assertEquals("123", recognizeAgain.mrz.document_number);
+        assertEquals("300101", recognizeAgain.mrz.date_of_expiry);
+        assertEquals("2", recognizeAgain.mrz.date_of_birth_check_digit);
+        assertNull(recognizeAgain.mrz.document_number_check_digit);
+        assertEquals(recognize.error, recognizeAgain.error);
+
+        Models.NfcScanResponse scan = read(
+                "{\"scan_id\":\"scan-1\",\"face_image_url\":\"/f.jpg\",\"passport\":{\"names\":[\"IVAN\"]}}",
+                Models.NfcScanResponse.class);
+        Models.NfcScanResponse scanAgain = read(gson.toJson(scan), Models.NfcScanResponse.class);
+        assertEquals("scan-1", scanAgain.scan_id);
+        assertEquals("/f.jpg", scanAgain.face_image_url);
+        assertEquals(scan.passport, scanAgain.passport);
+        assertEquals("null", gson.toJson(null, Models.NfcScanResponse.class));
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        return gson.fromJson(new StringReader(json), type);
+    }
+}
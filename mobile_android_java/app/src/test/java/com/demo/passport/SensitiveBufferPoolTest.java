@@ -0,0 +1,43 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SensitiveBufferPoolTest {
+
+    @Test
+    public void releasedBuffersAreZeroedAndReused() {
+        SensitiveBufferPool pool = new SensitiveBufferPool(16, 1);
+        byte[] buffer = pool.acquire();
+        buffer[3] = 42;
+
+        pool.release(buffer);
+        byte[] again = pool.acquire();
+
+        assertSame(buffer, again);
+        assertEquals(0, again[3]);
+        assertEquals(1, pool.allocations());
+    }
+
+    @Test
+    public void extraBuffersBeyondCapacityAreZeroedAndDropped() {
+        SensitiveBufferPool pool = new SensitiveBufferPool(16, 1);
+        byte[] first = pool.acquire();
+        byte[] second = pool.acquire();
+        second[0] = 7;
+
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(0, second[0]);
+        assertSame(first, pool.acquire());
+        assertEquals(2, pool.allocations());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignBuffersAreRejected() {
+        new SensitiveBufferPool(16, 1).release(new byte[8]);
+    }
+}
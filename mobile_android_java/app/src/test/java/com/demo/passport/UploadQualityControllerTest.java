@@ -0,0 +1,78 @@
+package com.demo.passport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UploadQualityControllerTest {
+
+    @Test
+    public void currentOptions_usesDefaultTierWithoutMeasurements() {
+        UploadQualityController controller = new UploadQualityController();
+
+        assertSame(UploadQualityController.TIERS[UploadQualityController.DEFAULT_TIER].options,
+                controller.currentOptions());
+    }
+
+    @Test
+    public void currentOptions_picksLargestTierOnFastNetwork() {
+        UploadQualityController controller = new UploadQualityController();
+        controller.recordUpload(4 * 1024 * 1024, 200);
+        controller.recordRtt(5);
+
+        assertSame(UploadQualityController.TIERS[0].options, controller.currentOptions());
+    }
+
+    @Test
+    public void currentOptions_picksSmallestTierOnSlowNetwork() {
+        UploadQualityController controller = new UploadQualityController();
+        controller.recordUpload(512 * 1024, 10_000);
+        controller.recordRtt(300);
+
+        PhotoPreprocessor.Options options = controller.currentOptions();
+        assertSame(UploadQualityController.TIERS[UploadQualityController.TIERS.length - 1].options, options);
+        assertTrue(options.grayscale);
+    }
+
+    @Test
+    public void currentOptions_highRttDowngradesTier() {
+        UploadQualityController fast = new UploadQualityController();
+        fast.recordUpload(1024 * 1024, 1000);
+        fast.recordRtt(10);
+        UploadQualityController laggy = new UploadQualityController();
+        laggy.recordUpload(1024 * 1024, 1000);
+        laggy.recordRtt(1000);
+
+        assertTrue(laggy.currentOptions().longEdgePx < fast.currentOptions().longEdgePx);
+    }
+
+    @Test
+    public void recordUpload_ignoresSmallBodies() {
+        UploadQualityController controller = new UploadQualityController();
+        controller.recordUpload(UploadQualityController.MIN_SAMPLE_BYTES - 1, 1);
+
+        assertEquals(-1, controller.getThroughputBytesPerSec());
+    }
+
+    @Test
+    public void recordUpload_smoothsSamples() {
+        UploadQualityController controller = new UploadQualityController();
+        controller.recordUpload(1_000_000, 1000);
+        controller.recordUpload(2_000_000, 1000);
+
+        long throughput = controller.getThroughputBytesPerSec();
+        assertTrue(throughput > 1_000_000 && throughput < 2_000_000);
+    }
+
+    @Test
+    public void reset_forgetsMeasurements() {
+        UploadQualityController controller = new UploadQualityController();
+        controller.recordUpload(4 * 1024 * 1024, 200);
+        controller.reset();
+
+        assertSame(UploadQualityController.TIERS[UploadQualityController.DEFAULT_TIER].options,
+                controller.currentOptions());
+    }
+}